@@ -0,0 +1,66 @@
+package com.kyle.calendarprovider;
+
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * 日期计算与SimpleDateFormat/Calendar的耗时对比
+ */
+@RunWith(AndroidJUnit4.class)
+public class UtilBenchmarkTest {
+
+    private static final String TAG = "UtilBenchmark";
+
+    private TimeZone defaultZone;
+
+    @Before
+    public void setUp() {
+        defaultZone = TimeZone.getDefault();
+        TimeZone.setDefault(TimeZone.getTimeZone("America/New_York"));
+    }
+
+    @After
+    public void tearDown() {
+        TimeZone.setDefault(defaultZone);
+    }
+
+    @Test
+    public void againstSimpleDateFormat() {
+        int count = 200000;
+        long base = System.currentTimeMillis();
+        int sink = 0;
+
+        long legacy = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            Date date = new Date(base + i * 997 * 1000L);
+            sink += new SimpleDateFormat("yyyyMMdd", Locale.getDefault()).format(date).length();
+            Calendar calendar = Calendar.getInstance();
+            calendar.setTime(date);
+            sink += calendar.get(Calendar.DAY_OF_WEEK);
+        }
+        legacy = System.nanoTime() - legacy;
+
+        long current = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            long time = base + i * 997 * 1000L;
+            sink += Util.getFinalRRuleMode(time).length();
+            sink += Util.getDayOfWeek(time);
+        }
+        current = System.nanoTime() - current;
+
+        Log.i(TAG, count + " dates: SimpleDateFormat/Calendar " + legacy / 1000000
+                + " ms, Util " + current / 1000000 + " ms (" + sink + ")");
+    }
+
+}
@@ -0,0 +1,118 @@
+package com.kyle.calendarprovider.calendar;
+
+import android.Manifest;
+import android.content.Context;
+import android.provider.CalendarContract;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.rule.GrantPermissionRule;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 逐个添加与批量添加事件的耗时对比(写入系统日历)
+ * <p>
+ * 事件写入远离当前时间的时间段,每次添加后删除
+ */
+@RunWith(AndroidJUnit4.class)
+public class BatchInsertBenchmarkTest {
+
+    private static final String TAG = "BatchInsertBenchmark";
+    private static final long HOUR = 60 * 60 * 1000L;
+    /**
+     * 2036-01-01 00:00 UTC - 2046-01-01 00:00 UTC
+     */
+    private static final long RANGE_BEGIN = 2082758400000L;
+    private static final long RANGE_END = 2398377600000L;
+
+    @Rule
+    public GrantPermissionRule permissions = GrantPermissionRule.grant(
+            Manifest.permission.READ_CALENDAR, Manifest.permission.WRITE_CALENDAR);
+
+    private final Context context = InstrumentationRegistry.getTargetContext();
+    private long calID;
+
+    @Before
+    public void setUp() {
+        calID = CalendarProviderManager.obtainCalendarAccountID(context);
+        assertTrue(calID >= 0);
+        deleteEventsInRange();
+    }
+
+    @After
+    public void tearDown() {
+        deleteEventsInRange();
+    }
+
+    @Test
+    public void insert1k() {
+        compare(1000);
+    }
+
+    @Test
+    public void insert10k() {
+        compare(10000);
+    }
+
+    @Test
+    public void insert50k() {
+        compare(50000);
+    }
+
+    private static List<CalendarEvent> events(int count) {
+        List<CalendarEvent> events = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            long start = RANGE_BEGIN + i * HOUR;
+            events.add(new CalendarEvent("Benchmark " + i, "Batch insert benchmark event " + i,
+                    "Room " + i % 10, start, start + HOUR / 2, AdvanceTime.FIFTH_MINUTES, null));
+        }
+        return events;
+    }
+
+    private void compare(int count) {
+        List<CalendarEvent> events = events(count);
+
+        long single = System.nanoTime();
+        for (CalendarEvent event : events) {
+            assertEquals(0, CalendarProviderManager.addCalendarEvent(context, event));
+        }
+        single = (System.nanoTime() - single) / 1000000;
+        assertEquals(count, deleteEventsInRange());
+
+        long batched = System.nanoTime();
+        long[] eventIDs = CalendarProviderManager.addCalendarEvents(context, events);
+        batched = (System.nanoTime() - batched) / 1000000;
+        assertEquals(count, eventIDs.length);
+        for (long eventID : eventIDs) {
+            assertTrue(eventID >= 0);
+        }
+        assertEquals(count, deleteEventsInRange());
+
+        Log.i(TAG, count + " events: addCalendarEvent " + single + " ms, addCalendarEvents " + batched
+                + " ms (" + single / Math.max(1, batched) + "x)");
+    }
+
+    /**
+     * 删除测试时间段内的事件(提醒由系统日历一并删除)
+     *
+     * @return 删除的事件数
+     */
+    private int deleteEventsInRange() {
+        return context.getContentResolver().delete(CalendarContract.Events.CONTENT_URI,
+                CalendarContract.Events.CALENDAR_ID + "=? AND " + CalendarContract.Events.DTSTART
+                        + ">=? AND " + CalendarContract.Events.DTSTART + "<?",
+                new String[]{String.valueOf(calID), String.valueOf(RANGE_BEGIN), String.valueOf(RANGE_END)});
+    }
+
+}
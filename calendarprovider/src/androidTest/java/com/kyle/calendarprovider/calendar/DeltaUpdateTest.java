@@ -0,0 +1,127 @@
+package com.kyle.calendarprovider.calendar;
+
+import android.Manifest;
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.rule.GrantPermissionRule;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 只查询部分属性的旧事件做差异更新时,未查询的列不会写入
+ */
+@RunWith(AndroidJUnit4.class)
+public class DeltaUpdateTest {
+
+    private static final long HOUR = 60 * 60 * 1000L;
+    /**
+     * 2036-01-01 00:00 UTC - 2036-02-01 00:00 UTC
+     */
+    private static final long RANGE_BEGIN = 2082758400000L;
+    private static final long RANGE_END = 2085436800000L;
+
+    @Rule
+    public GrantPermissionRule permissions = GrantPermissionRule.grant(
+            Manifest.permission.READ_CALENDAR, Manifest.permission.WRITE_CALENDAR);
+
+    private final Context context = InstrumentationRegistry.getTargetContext();
+    private long calID;
+
+    @Before
+    public void setUp() {
+        calID = CalendarProviderManager.obtainCalendarAccountID(context);
+        assertTrue(calID >= 0);
+        CalendarProviderManager.deleteCalendarEventsInRange(context, calID, RANGE_BEGIN, RANGE_END);
+    }
+
+    @After
+    public void tearDown() {
+        CalendarProviderManager.deleteCalendarEventsInRange(context, calID, RANGE_BEGIN, RANGE_END);
+    }
+
+    private CalendarEvent addAndQuery(CalendarEvent calendarEvent) {
+        long[] eventIDs = CalendarProviderManager.addCalendarEvents(context,
+                Collections.singletonList(calendarEvent));
+        assertNotNull(eventIDs);
+        assertTrue(eventIDs[0] >= 0);
+
+        List<CalendarEvent> events = CalendarProviderManager.queryAccountEvent(context, calID,
+                EnumSet.of(EventField.ID, EventField.TITLE, EventField.START, EventField.END,
+                        EventField.REMINDERS));
+        assertNotNull(events);
+        for (CalendarEvent event : events) {
+            if (event.getId() == eventIDs[0]) {
+                return event;
+            }
+        }
+        throw new AssertionError("event " + eventIDs[0] + " not found");
+    }
+
+    @Test
+    public void noOpEditOfSummaryQueryWritesNothing() {
+        CalendarEvent newEvent = new CalendarEvent("Delta", null, null,
+                RANGE_BEGIN + HOUR, RANGE_BEGIN + 2 * HOUR, AdvanceTime.FIFTH_MINUTES, null);
+        CalendarEvent oldEvent = addAndQuery(newEvent);
+        // 时区、提醒开关等没有查询,不会被当作变化写入
+        assertEquals(0, CalendarProviderManager.updateCalendarEvent(context, oldEvent, newEvent));
+
+        CalendarEvent renamed = new CalendarEvent("Delta renamed", null, null,
+                RANGE_BEGIN + HOUR, RANGE_BEGIN + 2 * HOUR, AdvanceTime.FIFTH_MINUTES, null);
+        assertEquals(1, CalendarProviderManager.updateCalendarEvent(context, oldEvent, renamed));
+    }
+
+    @Test
+    public void emptyLoadedRemindersAreKnown() {
+        CalendarEvent newEvent = new CalendarEvent("Delta", null, null,
+                RANGE_BEGIN + HOUR, RANGE_BEGIN + 2 * HOUR, -2, null);
+        CalendarEvent oldEvent = addAndQuery(newEvent);
+        assertNotNull(oldEvent.getReminders());
+        assertTrue(oldEvent.getReminders().isEmpty());
+        assertEquals(0, CalendarProviderManager.updateCalendarEvent(context, oldEvent, newEvent));
+    }
+
+    @Test
+    public void atomicUpdateReplacesAllReminders() {
+        CalendarEvent newEvent = new CalendarEvent("Delta", null, null,
+                RANGE_BEGIN + HOUR, RANGE_BEGIN + 2 * HOUR, AdvanceTime.FIFTH_MINUTES, null);
+        CalendarEvent oldEvent = addAndQuery(newEvent);
+
+        CalendarEvent updated = new CalendarEvent("Delta", null, null,
+                RANGE_BEGIN + HOUR, RANGE_BEGIN + 2 * HOUR, AdvanceTime.ONE_HOUR, null);
+        EventUpdateResult result = CalendarProviderManager.updateCalendarEventAtomically(context,
+                oldEvent.getId(), updated);
+        assertTrue(result.isSuccess());
+        // 删除原有的一个提醒并插入一个新提醒
+        assertEquals(2, result.getReminderCount());
+
+        List<CalendarEvent.EventReminders> reminders = queryReminders(oldEvent.getId());
+        assertEquals(1, reminders.size());
+        assertEquals(AdvanceTime.ONE_HOUR, reminders.get(0).getReminderMinute());
+    }
+
+    private List<CalendarEvent.EventReminders> queryReminders(long eventID) {
+        List<CalendarEvent> events = CalendarProviderManager.queryAccountEvent(context, calID,
+                EnumSet.of(EventField.ID, EventField.REMINDERS));
+        assertNotNull(events);
+        for (CalendarEvent event : events) {
+            if (event.getId() == eventID) {
+                return event.getReminders();
+            }
+        }
+        throw new AssertionError("event " + eventID + " not found");
+    }
+
+}
@@ -0,0 +1,126 @@
+package com.kyle.calendarprovider.calendar;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.provider.CalendarContract;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 每行按列名查找索引(EventRowMapper之前的写法)与EventRowMapper的映射耗时对比
+ */
+@RunWith(AndroidJUnit4.class)
+public class EventRowMapperBenchmarkTest {
+
+    private static final String TAG = "EventRowMapperBenchmark";
+    private static final int ROWS = 100000;
+    private static final int ROUNDS = 3;
+
+    @Test
+    public void map100kRows() {
+        MatrixCursor cursor = TestCursors.events(ROWS);
+        List<CalendarEvent> legacy = null;
+        List<CalendarEvent> mapped = null;
+        // 第一轮作为预热,取之后几轮的最小值
+        long legacyTime = Long.MAX_VALUE;
+        long mapperTime = Long.MAX_VALUE;
+        for (int round = 0; round <= ROUNDS; round++) {
+            long time = System.nanoTime();
+            legacy = mapByColumnName(cursor);
+            time = System.nanoTime() - time;
+            if (round > 0) {
+                legacyTime = Math.min(legacyTime, time);
+            }
+
+            time = System.nanoTime();
+            mapped = mapByRowMapper(cursor);
+            time = System.nanoTime() - time;
+            if (round > 0) {
+                mapperTime = Math.min(mapperTime, time);
+            }
+        }
+        cursor.close();
+
+        assertEquals(ROWS, legacy.size());
+        assertEquals(ROWS, mapped.size());
+        for (int i = 0; i < ROWS; i += 997) {
+            assertEquals(legacy.get(i).toString(), mapped.get(i).toString());
+        }
+        Log.i(TAG, ROWS + " rows: getColumnIndex per row " + legacyTime / 1000000 + " ms, EventRowMapper "
+                + mapperTime / 1000000 + " ms");
+    }
+
+    private static List<CalendarEvent> mapByRowMapper(Cursor cursor) {
+        List<CalendarEvent> result = new ArrayList<>(cursor.getCount());
+        EventRowMapper mapper = new EventRowMapper(cursor);
+        cursor.moveToPosition(-1);
+        while (cursor.moveToNext()) {
+            result.add(mapper.map(cursor));
+        }
+        return result;
+    }
+
+    private static List<CalendarEvent> mapByColumnName(Cursor cursor) {
+        List<CalendarEvent> result = new ArrayList<>(cursor.getCount());
+        if (cursor.moveToFirst()) {
+            do {
+                CalendarEvent calendarEvent = new CalendarEvent();
+                result.add(calendarEvent);
+                calendarEvent.setId(cursor.getLong(cursor.getColumnIndex(
+                        CalendarContract.Events._ID)));
+                calendarEvent.setCalID(cursor.getLong(cursor.getColumnIndex(
+                        CalendarContract.Events.CALENDAR_ID)));
+                calendarEvent.setTitle(cursor.getString(cursor.getColumnIndex(
+                        CalendarContract.Events.TITLE)));
+                calendarEvent.setDescription(cursor.getString(cursor.getColumnIndex(
+                        CalendarContract.Events.DESCRIPTION)));
+                calendarEvent.setEventLocation(cursor.getString(cursor.getColumnIndex(
+                        CalendarContract.Events.EVENT_LOCATION)));
+                calendarEvent.setDisplayColor(cursor.getInt(cursor.getColumnIndex(
+                        CalendarContract.Events.DISPLAY_COLOR)));
+                calendarEvent.setStatus(cursor.getInt(cursor.getColumnIndex(
+                        CalendarContract.Events.STATUS)));
+                calendarEvent.setStart(cursor.getLong(cursor.getColumnIndex(
+                        CalendarContract.Events.DTSTART)));
+                calendarEvent.setEnd(cursor.getLong(cursor.getColumnIndex(
+                        CalendarContract.Events.DTEND)));
+                calendarEvent.setDuration(cursor.getString(cursor.getColumnIndex(
+                        CalendarContract.Events.DURATION)));
+                calendarEvent.setEventTimeZone(cursor.getString(cursor.getColumnIndex(
+                        CalendarContract.Events.EVENT_TIMEZONE)));
+                calendarEvent.setEventEndTimeZone(cursor.getString(cursor.getColumnIndex(
+                        CalendarContract.Events.EVENT_END_TIMEZONE)));
+                calendarEvent.setAllDay(cursor.getInt(cursor.getColumnIndex(
+                        CalendarContract.Events.ALL_DAY)));
+                calendarEvent.setAccessLevel(cursor.getInt(cursor.getColumnIndex(
+                        CalendarContract.Events.ACCESS_LEVEL)));
+                calendarEvent.setAvailability(cursor.getInt(cursor.getColumnIndex(
+                        CalendarContract.Events.AVAILABILITY)));
+                calendarEvent.setHasAlarm(cursor.getInt(cursor.getColumnIndex(
+                        CalendarContract.Events.HAS_ALARM)));
+                calendarEvent.setRRule(cursor.getString(cursor.getColumnIndex(
+                        CalendarContract.Events.RRULE)));
+                calendarEvent.setRDate(cursor.getString(cursor.getColumnIndex(
+                        CalendarContract.Events.RDATE)));
+                calendarEvent.setHasAttendeeData(cursor.getInt(cursor.getColumnIndex(
+                        CalendarContract.Events.HAS_ATTENDEE_DATA)));
+                calendarEvent.setLastDate(cursor.getInt(cursor.getColumnIndex(
+                        CalendarContract.Events.LAST_DATE)));
+                calendarEvent.setOrganizer(cursor.getString(cursor.getColumnIndex(
+                        CalendarContract.Events.ORGANIZER)));
+                calendarEvent.setIsOrganizer(cursor.getString(cursor.getColumnIndex(
+                        CalendarContract.Events.IS_ORGANIZER)));
+            } while (cursor.moveToNext());
+        }
+        return result;
+    }
+
+}
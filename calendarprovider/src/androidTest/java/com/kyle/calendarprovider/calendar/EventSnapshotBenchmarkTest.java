@@ -0,0 +1,108 @@
+package com.kyle.calendarprovider.calendar;
+
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 10万个事件的快照写入/读取速度和文件大小
+ */
+@RunWith(AndroidJUnit4.class)
+public class EventSnapshotBenchmarkTest {
+
+    private static final String TAG = "EventSnapshotBenchmark";
+    private static final String[] TIME_ZONES = {"Asia/Shanghai", "Europe/Berlin", "America/New_York"};
+    private static final String[] RULES = {null, null, "FREQ=WEEKLY;BYDAY=MO", "FREQ=DAILY;COUNT=10"};
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("snapshot", ".bin");
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    private static List<CalendarEvent> events(int count) {
+        List<CalendarEvent> events = new ArrayList<>(count);
+        long start = 1546300800000L;
+        for (int i = 0; i < count; i++) {
+            CalendarEvent event = new CalendarEvent();
+            event.setId(i);
+            event.setCalID(1);
+            event.setTitle("Shift " + i);
+            event.setDescription(i % 4 == 0 ? null : "Description of shift " + i);
+            event.setEventLocation("Building " + i % 5);
+            event.setStart(start + i * 1800000L);
+            event.setEnd(start + i * 1800000L + 3600000L);
+            event.setRRule(RULES[i % RULES.length]);
+            event.setEventTimeZone(TIME_ZONES[i % TIME_ZONES.length]);
+            event.setOrganizer("owner" + i % 3 + "@example.com");
+            event.setDisplayColor(0xFF3F51B5);
+            event.setAvailability(i % 2);
+
+            CalendarEvent.EventReminders reminder = new CalendarEvent.EventReminders();
+            reminder.setReminderMinute(i % 2 == 0 ? 15 : 60);
+            reminder.setReminderMethod(1);
+            event.setReminders(Collections.singletonList(reminder));
+            events.add(event);
+        }
+        return events;
+    }
+
+    @Test
+    public void writeAndVerify100kEvents() throws IOException {
+        int count = 100000;
+        List<CalendarEvent> events = events(count);
+
+        long writeTime = System.nanoTime();
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            assertEquals(count, EventSnapshot.write(events.iterator(), out.getChannel()));
+        }
+        writeTime = (System.nanoTime() - writeTime) / 1000000;
+
+        long readTime = System.nanoTime();
+        try (FileInputStream in = new FileInputStream(file)) {
+            FileChannel channel = in.getChannel();
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            // 跳过文件头
+            buffer.position(12);
+            assertEquals(count, EventSnapshot.verify(buffer, null));
+        }
+        readTime = (System.nanoTime() - readTime) / 1000000;
+
+        // 同样的事件导出为iCalendar时的大小
+        ByteArrayOutputStream ics = new ByteArrayOutputStream();
+        Writer writer = new OutputStreamWriter(ics, StandardCharsets.UTF_8);
+        new IcsExporter(writer).run(events.iterator());
+        writer.flush();
+
+        Log.i(TAG, count + " events, snapshot " + file.length() / 1024 + " KB (" + file.length() / count
+                + " bytes/event, ics " + ics.size() / count + " bytes/event), write " + writeTime
+                + " ms, verify " + readTime + " ms");
+    }
+
+}
@@ -0,0 +1,157 @@
+package com.kyle.calendarprovider.calendar;
+
+import android.Manifest;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.Context;
+import android.net.Uri;
+import android.provider.CalendarContract;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.rule.GrantPermissionRule;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 写入快照、删除事件后恢复,全天事件和非默认时区的重复事件的属性保持不变
+ */
+@RunWith(AndroidJUnit4.class)
+public class EventSnapshotRoundTripTest {
+
+    private static final long HOUR = 60 * 60 * 1000L;
+    private static final long DAY = 24 * HOUR;
+    /**
+     * 2036-03-01 00:00 UTC - 2036-04-01 00:00 UTC
+     */
+    private static final long RANGE_BEGIN = 2087683200000L;
+    private static final long RANGE_END = 2090361600000L;
+
+    @Rule
+    public GrantPermissionRule permissions = GrantPermissionRule.grant(
+            Manifest.permission.READ_CALENDAR, Manifest.permission.WRITE_CALENDAR);
+
+    private final Context context = InstrumentationRegistry.getTargetContext();
+    private long calID;
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        calID = CalendarProviderManager.obtainCalendarAccountID(context);
+        assertTrue(calID >= 0);
+        CalendarProviderManager.deleteCalendarEventsInRange(context, calID, RANGE_BEGIN, RANGE_END);
+        file = File.createTempFile("snapshot", ".bin", context.getCacheDir());
+    }
+
+    @After
+    public void tearDown() {
+        CalendarProviderManager.deleteCalendarEventsInRange(context, calID, RANGE_BEGIN, RANGE_END);
+        file.delete();
+    }
+
+    @Test
+    public void allDayAndForeignZoneEventsSurviveRestore() throws IOException {
+        String zone = "Europe/Berlin".equals(TimeZone.getDefault().getID()) ? "America/New_York" : "Europe/Berlin";
+
+        ContentValues allDay = new ContentValues();
+        allDay.put(CalendarContract.Events.CALENDAR_ID, calID);
+        allDay.put(CalendarContract.Events.TITLE, "All day");
+        allDay.put(CalendarContract.Events.DTSTART, RANGE_BEGIN + DAY);
+        allDay.put(CalendarContract.Events.DTEND, RANGE_BEGIN + 2 * DAY);
+        allDay.put(CalendarContract.Events.ALL_DAY, 1);
+        allDay.put(CalendarContract.Events.EVENT_TIMEZONE, "UTC");
+        allDay.put(CalendarContract.Events.AVAILABILITY, CalendarContract.Events.AVAILABILITY_FREE);
+        allDay.put(CalendarContract.Events.EVENT_COLOR, 0xFF00A000);
+        insert(allDay, AdvanceTime.ONE_DAY);
+
+        ContentValues foreign = new ContentValues();
+        foreign.put(CalendarContract.Events.CALENDAR_ID, calID);
+        foreign.put(CalendarContract.Events.TITLE, "Foreign zone");
+        foreign.put(CalendarContract.Events.DTSTART, RANGE_BEGIN + 2 * DAY + 8 * HOUR);
+        foreign.put(CalendarContract.Events.DURATION, "PT1H");
+        foreign.put(CalendarContract.Events.RRULE, "FREQ=WEEKLY;COUNT=4");
+        foreign.put(CalendarContract.Events.EVENT_TIMEZONE, zone);
+        foreign.put(CalendarContract.Events.STATUS, CalendarContract.Events.STATUS_TENTATIVE);
+        foreign.put(CalendarContract.Events.ACCESS_LEVEL, CalendarContract.Events.ACCESS_PRIVATE);
+        insert(foreign, AdvanceTime.FIFTH_MINUTES);
+
+        List<CalendarEvent> before = queryRange();
+        assertEquals(2, before.size());
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            assertEquals(2, EventSnapshot.write(before.iterator(), out.getChannel()));
+        }
+
+        CalendarProviderManager.deleteCalendarEventsInRange(context, calID, RANGE_BEGIN, RANGE_END);
+        assertEquals(2, EventSnapshot.restore(context, file));
+
+        List<CalendarEvent> after = queryRange();
+        assertEquals(2, after.size());
+        for (CalendarEvent expected : before) {
+            CalendarEvent actual = find(after, expected.getTitle());
+            String message = expected.getTitle();
+            assertEquals(message, expected.getStart(), actual.getStart());
+            assertEquals(message, expected.getEnd(), actual.getEnd());
+            assertEquals(message, expected.getAllDay(), actual.getAllDay());
+            assertEquals(message, expected.getEventTimeZone(), actual.getEventTimeZone());
+            assertEquals(message, expected.getRRule(), actual.getRRule());
+            assertEquals(message, expected.getDuration(), actual.getDuration());
+            assertEquals(message, expected.getStatus(), actual.getStatus());
+            assertEquals(message, expected.getAccessLevel(), actual.getAccessLevel());
+            assertEquals(message, expected.getAvailability(), actual.getAvailability());
+            assertEquals(message, expected.getDisplayColor(), actual.getDisplayColor());
+            assertEquals(message, 1, actual.getReminders().size());
+            assertEquals(message, expected.getReminders().get(0).getReminderMinute(),
+                    actual.getReminders().get(0).getReminderMinute());
+        }
+        assertEquals(zone, find(after, "Foreign zone").getEventTimeZone());
+        assertEquals(1, find(after, "All day").getAllDay());
+    }
+
+    private void insert(ContentValues event, int minutes) {
+        event.put(CalendarContract.Events.HAS_ALARM, 1);
+        Uri uri = context.getContentResolver().insert(CalendarContract.Events.CONTENT_URI, event);
+        assertNotNull(uri);
+
+        ContentValues reminder = new ContentValues();
+        reminder.put(CalendarContract.Reminders.EVENT_ID, ContentUris.parseId(uri));
+        reminder.put(CalendarContract.Reminders.MINUTES, minutes);
+        reminder.put(CalendarContract.Reminders.METHOD, CalendarContract.Reminders.METHOD_ALERT);
+        assertNotNull(context.getContentResolver().insert(CalendarContract.Reminders.CONTENT_URI, reminder));
+    }
+
+    private List<CalendarEvent> queryRange() {
+        List<CalendarEvent> events = CalendarProviderManager.queryAccountEvent(context, calID);
+        assertNotNull(events);
+        List<CalendarEvent> inRange = new ArrayList<>();
+        for (CalendarEvent event : events) {
+            if (event.getStart() >= RANGE_BEGIN && event.getStart() < RANGE_END) {
+                inRange.add(event);
+            }
+        }
+        return inRange;
+    }
+
+    private static CalendarEvent find(List<CalendarEvent> events, String title) {
+        for (CalendarEvent event : events) {
+            if (title.equals(event.getTitle())) {
+                return event;
+            }
+        }
+        throw new AssertionError(title + " not found");
+    }
+
+}
@@ -0,0 +1,118 @@
+package com.kyle.calendarprovider.calendar;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * EventTable与ArrayList&lt;CalendarEvent&gt;的内存占用和遍历耗时对比
+ */
+@RunWith(AndroidJUnit4.class)
+public class EventTableBenchmarkTest {
+
+    private static final String TAG = "EventTableBenchmark";
+    private static final int ROWS = 100000;
+    private static final int ROUNDS = 5;
+
+    @Test
+    public void footprintAndScan() {
+        MatrixCursor cursor = TestCursors.events(ROWS);
+        long begin = 1546300800000L + ROWS / 4 * 3600000L;
+        long end = begin + ROWS / 2 * 3600000L;
+
+        long base = usedMemory();
+        List<CalendarEvent> list = map(cursor);
+        long listBytes = usedMemory() - base;
+
+        cursor.moveToPosition(-1);
+        base = usedMemory();
+        EventTable table = EventTable.build(cursor);
+        long tableBytes = usedMemory() - base;
+        assertEquals(ROWS, table.size());
+
+        long listTime = Long.MAX_VALUE;
+        long tableTime = Long.MAX_VALUE;
+        int listCount = 0;
+        int tableCount = 0;
+        for (int round = 0; round <= ROUNDS; round++) {
+            long time = System.nanoTime();
+            listCount = scan(list, begin, end);
+            time = System.nanoTime() - time;
+            if (round > 0) {
+                listTime = Math.min(listTime, time);
+            }
+
+            time = System.nanoTime();
+            tableCount = scan(table, begin, end);
+            time = System.nanoTime() - time;
+            if (round > 0) {
+                tableTime = Math.min(tableTime, time);
+            }
+        }
+        cursor.close();
+
+        assertEquals(listCount, tableCount);
+        Log.i(TAG, ROWS + " events: ArrayList<CalendarEvent> " + listBytes / 1024 + " KB, scan "
+                + listTime / 1000 + " us; EventTable " + tableBytes / 1024 + " KB, scan " + tableTime / 1000 + " us");
+        assertTrue("list " + listBytes + " table " + tableBytes, tableBytes < listBytes);
+    }
+
+    private static List<CalendarEvent> map(Cursor cursor) {
+        List<CalendarEvent> result = new ArrayList<>(cursor.getCount());
+        EventRowMapper mapper = new EventRowMapper(cursor);
+        cursor.moveToPosition(-1);
+        while (cursor.moveToNext()) {
+            result.add(mapper.map(cursor));
+        }
+        return result;
+    }
+
+    /**
+     * 统计时间段内有提醒且不是全天的事件
+     */
+    private static int scan(List<CalendarEvent> events, long begin, long end) {
+        int count = 0;
+        for (int i = 0, size = events.size(); i < size; i++) {
+            CalendarEvent event = events.get(i);
+            if (event.getStart() < end && event.getEnd() > begin
+                    && 0 != event.getHasAlarm() && 0 == event.getAllDay()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static int scan(EventTable table, long begin, long end) {
+        int count = 0;
+        for (int i = 0, size = table.size(); i < size; i++) {
+            if (table.getStart(i) < end && table.getEnd(i) > begin
+                    && 0 != table.getHasAlarm(i) && 0 == table.getAllDay(i)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return GC之后已使用的堆内存
+     */
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            runtime.gc();
+            runtime.runFinalization();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+}
@@ -0,0 +1,103 @@
+package com.kyle.calendarprovider.calendar;
+
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Iterator;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 导出10万个事件为iCalendar的吞吐量
+ */
+@RunWith(AndroidJUnit4.class)
+public class IcsExporterBenchmarkTest {
+
+    private static final String TAG = "IcsExporterBenchmark";
+    private static final long HOUR = 60 * 60 * 1000L;
+
+    private static CalendarEvent event(long id, String title, String description, long start) {
+        CalendarEvent event = new CalendarEvent();
+        event.setId(id);
+        event.setCalID(1);
+        event.setTitle(title);
+        event.setDescription(description);
+        event.setEventLocation("Room " + id % 10);
+        event.setStart(start);
+        event.setEnd(start + HOUR);
+        event.setRRule(id % 3 == 0 ? "FREQ=WEEKLY;BYDAY=MO" : null);
+
+        CalendarEvent.EventReminders reminder = new CalendarEvent.EventReminders();
+        reminder.setReminderEventID(id);
+        reminder.setReminderMinute(15);
+        event.setReminders(Collections.singletonList(reminder));
+        return event;
+    }
+
+    @Test
+    public void export100kEvents() throws IOException {
+        final int count = 100000;
+        final long start = 1559361600000L;
+        final String description = "Description with, some; escapes\nand a second line";
+        // 按需创建事件,与逐批读取时一样不保留完整的事件列表
+        Iterator<CalendarEvent> events = new Iterator<CalendarEvent>() {
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                return index < count;
+            }
+
+            @Override
+            public CalendarEvent next() {
+                index++;
+                return event(index, "Event " + index, description, start + index * HOUR);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+        CountingOutputStream out = new CountingOutputStream();
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+
+        long time = System.nanoTime();
+        assertEquals(count, new IcsExporter(writer).run(events));
+        writer.flush();
+        time = (System.nanoTime() - time) / 1000000;
+
+        Log.i(TAG, count + " events, " + out.bytes / 1024 + " KB in " + time
+                + " ms (" + count * 1000L / Math.max(1, time) + " events/s)");
+    }
+
+    /**
+     * 只统计写入的字节数
+     */
+    private static class CountingOutputStream extends OutputStream {
+
+        long bytes;
+
+        @Override
+        public void write(int b) {
+            bytes++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            bytes += len;
+        }
+
+    }
+
+}
@@ -0,0 +1,70 @@
+package com.kyle.calendarprovider.calendar;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 延迟读取的日历事件
+ */
+@RunWith(AndroidJUnit4.class)
+public class LazyCalendarEventTest {
+
+    private static final int ROWS = 20000;
+
+    private final Context context = InstrumentationRegistry.getTargetContext();
+
+    @Test
+    public void fieldsMatchEagerMapping() {
+        MatrixCursor source = TestCursors.events(1000);
+        List<CalendarEvent> eager = mapEagerly(TestCursors.windowed(source));
+        for (Cursor cursor : new Cursor[]{TestCursors.windowed(source), TestCursors.events(1000)}) {
+            List<CalendarEvent> lazy = LazyCalendarEvent.wrap(context, cursor, false);
+            // Cursor关闭后仍然可以读取
+            cursor.close();
+
+            assertEquals(eager.size(), lazy.size());
+            for (int i = 0; i < eager.size(); i++) {
+                // toString包含所有属性
+                assertEquals(eager.get(i).toString(), lazy.get(i).toString());
+                assertNull(lazy.get(i).getReminders());
+            }
+        }
+    }
+
+    @Test
+    public void windowsAreReleasedWhenCursorCloses() {
+        TestCursors.WindowedCursor cursor = TestCursors.windowed(TestCursors.events(ROWS));
+        List<CalendarEvent> events = LazyCalendarEvent.wrap(context, cursor, false);
+        cursor.close();
+
+        // 事件不持有任何窗口
+        assertTrue(cursor.createdWindows > 1);
+        assertEquals(cursor.createdWindows, cursor.releasedWindows);
+        assertEquals(ROWS, events.size());
+        assertEquals("Shift " + (ROWS - 1), events.get(ROWS - 1).getTitle());
+    }
+
+    private static List<CalendarEvent> mapEagerly(Cursor cursor) {
+        List<CalendarEvent> events = new ArrayList<>(cursor.getCount());
+        EventRowMapper mapper = new EventRowMapper(cursor);
+        while (cursor.moveToNext()) {
+            events.add(mapper.map(cursor));
+        }
+        cursor.close();
+        return events;
+    }
+
+}
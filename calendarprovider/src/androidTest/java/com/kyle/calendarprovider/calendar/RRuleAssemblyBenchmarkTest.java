@@ -0,0 +1,103 @@
+package com.kyle.calendarprovider.calendar;
+
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 1、4、8个线程同时组装完整重复规则的吞吐量
+ */
+@RunWith(AndroidJUnit4.class)
+public class RRuleAssemblyBenchmarkTest {
+
+    private static final String TAG = "RRuleAssemblyBenchmark";
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+    /**
+     * 2019-01-01 00:00 UTC
+     */
+    private static final long BASE = 1546300800000L;
+
+    private static final String[] TEMPLATES = {
+            RRuleConstant.REPEAT_WEEKLY_BY_MO,
+            RRuleConstant.REPEAT_WEEKLY_BY_SU,
+            RRuleConstant.REPEAT_CYCLE_WEEKLY,
+            RRuleConstant.REPEAT_CYCLE_MONTHLY,
+            RRuleConstant.REPEAT_CYCLE_DAILY_FOREVER,
+    };
+
+    private static final int CASES = 4096;
+    private static final int ROUNDS = 200000;
+
+    private final String[] rules = new String[CASES];
+    private final long[] begins = new long[CASES];
+    private final long[] ends = new long[CASES];
+
+    @Test
+    public void assemble1To8Threads() throws Exception {
+        Random random = new Random(7);
+        for (int i = 0; i < CASES; i++) {
+            rules[i] = TEMPLATES[random.nextInt(TEMPLATES.length)];
+            begins[i] = BASE + (long) (random.nextDouble() * 365 * DAY);
+            ends[i] = begins[i] + (long) (random.nextDouble() * 3 * 365 * DAY);
+        }
+
+        // 预热
+        run(1);
+        for (int threads : new int[]{1, 4, 8}) {
+            long time = System.nanoTime();
+            assertEquals(ROUNDS * threads, run(threads));
+            time = System.nanoTime() - time;
+            Log.i(TAG, threads + " threads: " + ROUNDS * threads + " rules in " + time / 1000000 + " ms ("
+                    + ROUNDS * threads * 1000L / Math.max(1, time / 1000) + " rules/ms)");
+        }
+    }
+
+    /**
+     * 每个线程组装ROUNDS个规则
+     *
+     * @return 组装出的规则数
+     */
+    private long run(int threads) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Long>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                final int offset = t * 997;
+                results.add(executor.submit(new Callable<Long>() {
+                    @Override
+                    public Long call() {
+                        long count = 0;
+                        for (int i = 0; i < ROUNDS; i++) {
+                            int index = (i + offset) % CASES;
+                            if (null != CalendarProviderManager.getFullRRuleForRRule(
+                                    rules[index], begins[index], ends[index])) {
+                                count++;
+                            }
+                        }
+                        return count;
+                    }
+                }));
+            }
+            long count = 0;
+            for (Future<Long> result : results) {
+                count += result.get();
+            }
+            return count;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+}
@@ -0,0 +1,52 @@
+package com.kyle.calendarprovider.calendar;
+
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.kyle.calendarprovider.Util;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 一万个每天重复的事件在一年窗口内展开的耗时
+ */
+@RunWith(AndroidJUnit4.class)
+public class RecurrenceIteratorBenchmarkTest {
+
+    private static final String TAG = "RecurrenceIteratorBenchmark";
+    private static final long HOUR = 60 * 60 * 1000L;
+    private static final long DAY = 24 * HOUR;
+
+    /**
+     * 默认时区的本地时间
+     */
+    private static long local(int year, int month, int day, int hour) {
+        return RRule.toUtc(Util.epochDayFromCivil(year, month, day) * DAY + hour * HOUR);
+    }
+
+    @Test
+    public void dailyForeverForOneYearOf10kEvents() {
+        int events = 10000;
+        long from = local(2020, 1, 1, 0);
+        long to = local(2021, 1, 1, 0);
+        RRule rule = RRule.compile(RRuleConstant.REPEAT_CYCLE_DAILY_FOREVER);
+        RecurrenceIterator iterator = new RecurrenceIterator();
+
+        long time = System.nanoTime();
+        long occurrences = 0;
+        for (int i = 0; i < events; i++) {
+            iterator.reset(local(2019, 1, 1, 1) + i % 600 * 60000L, HOUR, rule, from, to);
+            while (iterator.next()) {
+                occurrences++;
+            }
+        }
+        time = (System.nanoTime() - time) / 1000000;
+
+        assertEquals(events * 366L, occurrences);
+        Log.i(TAG, events + " daily events, " + occurrences + " occurrences in " + time + " ms");
+    }
+
+}
@@ -0,0 +1,105 @@
+package com.kyle.calendarprovider.calendar;
+
+import android.database.AbstractWindowedCursor;
+import android.database.CursorWindow;
+import android.database.MatrixCursor;
+
+/**
+ * 测试用的事件查询结果
+ */
+final class TestCursors {
+
+    private static final String[] TIME_ZONES = {"Asia/Shanghai", "Europe/Berlin", "America/New_York"};
+
+    private TestCursors() {
+    }
+
+    /**
+     * 包含{@link EventRowMapper#EVENT_PROJECTION}所有列的事件,取值接近真实账户
+     * (少数几种时区和组织者,每个事件的标题和描述都不同)
+     */
+    static MatrixCursor events(int count) {
+        MatrixCursor cursor = new MatrixCursor(EventRowMapper.EVENT_PROJECTION, count);
+        long start = 1546300800000L;
+        for (int i = 0; i < count; i++) {
+            String timeZone = TIME_ZONES[i % TIME_ZONES.length];
+            cursor.addRow(new Object[]{
+                    1L,                                   // CALENDAR_ID
+                    "Shift " + i,                         // TITLE
+                    "Description of shift " + i,          // DESCRIPTION
+                    "Building " + (i % 5),                // EVENT_LOCATION
+                    0xFF3F51B5,                           // DISPLAY_COLOR
+                    1,                                    // STATUS
+                    start + i * 3600000L,                 // DTSTART
+                    start + i * 3600000L + 1800000L,      // DTEND
+                    null,                                 // DURATION
+                    timeZone,                             // EVENT_TIMEZONE
+                    timeZone,                             // EVENT_END_TIMEZONE
+                    0,                                    // ALL_DAY
+                    0,                                    // ACCESS_LEVEL
+                    0,                                    // AVAILABILITY
+                    1,                                    // HAS_ALARM
+                    null,                                 // RRULE
+                    null,                                 // RDATE
+                    1,                                    // HAS_ATTENDEE_DATA
+                    start + i * 3600000L + 1800000L,      // LAST_DATE
+                    "owner" + (i % 3) + "@example.com",   // ORGANIZER
+                    "1",                                  // IS_ORGANIZER
+                    (long) i                              // _ID
+            });
+        }
+        return cursor;
+    }
+
+    /**
+     * 与系统日历返回的Cursor一样按窗口读取数据,移出当前窗口时换成新的窗口
+     */
+    static WindowedCursor windowed(MatrixCursor source) {
+        return new WindowedCursor(source);
+    }
+
+    static final class WindowedCursor extends AbstractWindowedCursor {
+
+        private final MatrixCursor source;
+        /**
+         * 创建的窗口数和所有引用都已释放的窗口数
+         */
+        int createdWindows;
+        int releasedWindows;
+
+        WindowedCursor(MatrixCursor source) {
+            this.source = source;
+        }
+
+        @Override
+        public int getCount() {
+            return source.getCount();
+        }
+
+        @Override
+        public String[] getColumnNames() {
+            return source.getColumnNames();
+        }
+
+        @Override
+        public boolean onMove(int oldPosition, int newPosition) {
+            CursorWindow window = getWindow();
+            if (null == window || newPosition < window.getStartPosition()
+                    || newPosition >= window.getStartPosition() + window.getNumRows()) {
+                CursorWindow next = new CursorWindow("WindowedCursor") {
+                    @Override
+                    protected void onAllReferencesReleased() {
+                        releasedWindows++;
+                        super.onAllReferencesReleased();
+                    }
+                };
+                createdWindows++;
+                source.fillWindow(newPosition, next);
+                setWindow(next);
+            }
+            return true;
+        }
+
+    }
+
+}
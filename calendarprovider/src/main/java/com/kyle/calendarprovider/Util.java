@@ -2,25 +2,56 @@ package com.kyle.calendarprovider;
 
 import android.content.Context;
 
-import java.text.SimpleDateFormat;
-import java.util.Calendar;
-import java.util.Date;
-import java.util.Locale;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TimeZone;
 
 /**
  * Created by KYLE on 2019/3/6 - 13:53
  */
 public class Util {
 
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+
+    /**
+     * 默认时区的偏移量转换表(首次使用以及默认时区改变时创建)
+     */
+    private static volatile ZoneOffsets zoneOffsets;
+
+    /**
+     * 缓存的最大时区数(不包括默认时区)
+     */
+    private static final int ZONE_CACHE_SIZE = 8;
+
+    /**
+     * 按时区ID缓存的偏移量转换表
+     */
+    private static final Map<String, ZoneOffsets> ZONE_CACHE =
+            new LinkedHashMap<String, ZoneOffsets>(ZONE_CACHE_SIZE, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, ZoneOffsets> eldest) {
+                    return size() > ZONE_CACHE_SIZE;
+                }
+            };
+    /**
+     * 最近一次使用的指定时区的转换表(连续查询同一个时区时不需要加锁)
+     */
+    private static volatile ZoneOffsets lastZoneOffsets;
+
     /**
      * 获取日历事件结束日期
      *
      * @param time time in ms
      */
     private static String getEndDate(long time) {
-        Date date = new Date(time);
-        SimpleDateFormat format = new SimpleDateFormat("yyyyMMdd", Locale.getDefault());
-        return format.format(date);
+        int date = getCivilDate(time);
+        char[] chars = new char[8];
+        for (int i = 7; i >= 0; i--) {
+            chars[i] = (char) ('0' + date % 10);
+            date /= 10;
+        }
+        return new String(chars);
     }
 
     /**
@@ -63,14 +94,19 @@ public class Util {
      * @param time time in ms
      */
     public static String getWeekForDate(long time) {
-        Date date = new Date(time);
-        Calendar calendar = Calendar.getInstance();
-        calendar.setTime(date);
-        int week = calendar.get(Calendar.DAY_OF_WEEK) - 1;
-        if (week < 0) {
-            week = 0;
-        }
-        return formatWeek(week);
+        return formatWeek(getDayOfWeek(time));
+    }
+
+    /**
+     * 获取指定时间是星期几
+     *
+     * @param time time in ms
+     * @return 0: 周日  1: 周一 ... 6: 周六
+     */
+    public static int getDayOfWeek(long time) {
+        // 1970-01-01是周四
+        long days = getLocalEpochDay(time) + 4;
+        return (int) (days - floorDiv(days, 7) * 7);
     }
 
     /**
@@ -79,10 +115,117 @@ public class Util {
      * @param time time in ms
      */
     public static int getDayOfMonth(long time) {
-        Date date = new Date(time);
-        Calendar calendar = Calendar.getInstance();
-        calendar.setTime(date);
-        return calendar.get(Calendar.DAY_OF_MONTH);
+        return getCivilDate(time) % 100;
+    }
+
+    /**
+     * 获取指定时间在默认时区中的日期
+     *
+     * @param time time in ms
+     * @return yyyyMMdd格式的整数,例:20190306
+     */
+    public static int getCivilDate(long time) {
+        return civilFromEpochDay(getLocalEpochDay(time));
+    }
+
+    /**
+     * 获取指定时间在默认时区中距1970-01-01的天数
+     *
+     * @param time time in ms
+     */
+    public static long getLocalEpochDay(long time) {
+        return floorDiv(time + getOffset(time), DAY_MILLIS);
+    }
+
+    /**
+     * 将距1970-01-01的天数转换为日期
+     *
+     * @return yyyyMMdd格式的整数,例:20190306
+     */
+    public static int civilFromEpochDay(long epochDay) {
+        // 以3月1日作为一年的开始,2月(含闰日)位于一年的最后
+        long z = epochDay + 719468;
+        long era = floorDiv(z, 146097);
+        long doe = z - era * 146097;
+        long yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+        long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        long mp = (5 * doy + 2) / 153;
+        int day = (int) (doy - (153 * mp + 2) / 5 + 1);
+        int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+        int year = (int) (yoe + era * 400 + (month <= 2 ? 1 : 0));
+        return year * 10000 + month * 100 + day;
+    }
+
+    /**
+     * 将日期转换为距1970-01-01的天数
+     *
+     * @param month 1 - 12
+     */
+    public static long epochDayFromCivil(int year, int month, int day) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = floorDiv(y, 400);
+        long yoe = y - era * 400;
+        long doy = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        long doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * 146097 + doe - 719468;
+    }
+
+    /**
+     * 获取指定时间在默认时区中的偏移量
+     *
+     * @param time time in ms
+     * @return offset in ms
+     */
+    public static int getOffset(long time) {
+        TimeZone zone = TimeZone.getDefault();
+        ZoneOffsets offsets = zoneOffsets;
+        // 系统时区改变(Intent.ACTION_TIMEZONE_CHANGED)或调用TimeZone.setDefault()后重新创建转换表
+        if (null == offsets || !offsets.id.equals(zone.getID())) {
+            offsets = new ZoneOffsets(zone.getID(), zone, System.currentTimeMillis());
+            zoneOffsets = offsets;
+        }
+        return offsets.getOffset(time);
+    }
+
+    /**
+     * 获取指定时间在指定时区中的偏移量
+     *
+     * @param timeZoneID 时区ID(例:Asia/Shanghai、UTC),无法识别的ID按GMT计算
+     * @param time       time in ms
+     * @return offset in ms
+     */
+    public static int getOffset(String timeZoneID, long time) {
+        ZoneOffsets offsets = lastZoneOffsets;
+        if (null == offsets || !offsets.id.equals(timeZoneID)) {
+            synchronized (ZONE_CACHE) {
+                offsets = ZONE_CACHE.get(timeZoneID);
+                if (null == offsets) {
+                    offsets = new ZoneOffsets(timeZoneID, TimeZone.getTimeZone(timeZoneID),
+                            System.currentTimeMillis());
+                    ZONE_CACHE.put(timeZoneID, offsets);
+                }
+            }
+            lastZoneOffsets = offsets;
+        }
+        return offsets.getOffset(time);
+    }
+
+    /**
+     * 获取默认时区的ID,与{@link #getOffset(long)}使用同一个时区
+     */
+    public static String getTimeZoneID() {
+        return TimeZone.getDefault().getID();
+    }
+
+    /**
+     * 向下取整的除法
+     */
+    private static long floorDiv(long x, long y) {
+        long q = x / y;
+        if ((x % y != 0) && ((x ^ y) < 0)) {
+            q--;
+        }
+        return q;
     }
 
     /**
@@ -94,4 +237,84 @@ public class Util {
         }
     }
 
+    /**
+     * 时区偏移量转换表
+     * <p>
+     * 预先计算一段时间范围内所有的偏移量转换时刻,查询时二分查找,范围之外直接使用时区计算
+     */
+    private static class ZoneOffsets {
+
+        /**
+         * 转换表覆盖的年数(前后各30年)
+         */
+        private static final long RANGE = 30 * 366 * DAY_MILLIS;
+
+        private final TimeZone zone;
+        private final String id;
+        private final long from;
+        private final long to;
+        /**
+         * 偏移量转换时刻(升序)
+         */
+        private final long[] transitions;
+        /**
+         * offsets[i]为transitions[i - 1]到transitions[i]之间的偏移量
+         */
+        private final int[] offsets;
+
+        /**
+         * @param id 查找时使用的时区ID
+         */
+        ZoneOffsets(String id, TimeZone zone, long center) {
+            this.zone = zone;
+            this.id = id;
+            this.from = center - RANGE;
+            this.to = center + RANGE;
+
+            long[] transitions = new long[16];
+            int[] offsets = new int[17];
+            int count = 0;
+
+            int offset = zone.getOffset(from);
+            offsets[0] = offset;
+            for (long time = from + DAY_MILLIS; time < to; time += DAY_MILLIS) {
+                int next = zone.getOffset(time);
+                if (next == offset) {
+                    continue;
+                }
+                // 二分查找偏移量改变的时刻
+                long low = time - DAY_MILLIS;
+                long high = time;
+                while (high - low > 1) {
+                    long mid = (low + high) >>> 1;
+                    if (zone.getOffset(mid) == offset) {
+                        low = mid;
+                    } else {
+                        high = mid;
+                    }
+                }
+                if (count == transitions.length) {
+                    transitions = Arrays.copyOf(transitions, count * 2);
+                    offsets = Arrays.copyOf(offsets, count * 2 + 1);
+                }
+                transitions[count++] = high;
+                offsets[count] = next;
+                offset = next;
+            }
+
+            this.transitions = Arrays.copyOf(transitions, count);
+            this.offsets = Arrays.copyOf(offsets, count + 1);
+        }
+
+        int getOffset(long time) {
+            if (time < from || time >= to) {
+                return zone.getOffset(time);
+            }
+            int index = Arrays.binarySearch(transitions, time);
+            // 正好位于转换时刻时使用转换后的偏移量
+            return offsets[index >= 0 ? index + 1 : -index - 1];
+        }
+
+    }
+
 }
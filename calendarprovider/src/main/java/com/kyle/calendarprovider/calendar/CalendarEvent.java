@@ -1,12 +1,17 @@
 package com.kyle.calendarprovider.calendar;
 
+import android.provider.CalendarContract;
 import android.support.annotation.NonNull;
 
+import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
 
 /**
  * 日历事件
  * <p>
+ * 通过{@link Builder}创建的事件不可修改,可在多个线程中共享
+ * <p>
  * Created by KYLE on 2019/3/4 - 9:53
  */
 public class CalendarEvent {
@@ -49,12 +54,26 @@ public class CalendarEvent {
      * 这里只是为了方便构造方法提供事件提醒时间
      */
     private int advanceTime;
+    /**
+     * 注：此属性不属于CalendarEvent
+     * 添加事件时要写入的多个提醒,按(提前的分钟数, 提醒方式)成对存放
+     */
+    private int[] reminderValues;
+    private int reminderCount;
     // ----------------------------------------------------------------------------------------
 
 
     // ----------------------- 事件提醒属性 -----------------------
+    /**
+     * 事件现有的提醒,未查询提醒时为null
+     */
     private List<EventReminders> reminders;
 
+    /**
+     * 查询时组装了的属性,null表示所有属性都已知(事件不是查询得到的)
+     */
+    private Set<EventField> loadedFields;
+
     CalendarEvent() {
     }
 
@@ -85,10 +104,92 @@ public class CalendarEvent {
         return advanceTime;
     }
 
+    /**
+     * @throws IllegalStateException 事件不可修改
+     */
     public void setAdvanceTime(int advanceTime) {
         this.advanceTime = advanceTime;
     }
 
+    /**
+     * 添加一个事件提醒(创建的日历账户每个事件最多支持8个提醒),重复的提醒会被忽略
+     * <p>
+     * 添加了提醒时,写入事件时使用添加的提醒而不是advanceTime
+     *
+     * @param minutes 提醒提前的分钟数{@link AdvanceTime}
+     * @param method  提醒方式,例:{@link CalendarContract.Reminders#METHOD_ALERT}
+     * @throws IllegalStateException 事件不可修改
+     */
+    public void addReminder(int minutes, int method) {
+        for (int i = 0; i < reminderCount; i++) {
+            if (reminderValues[i * 2] == minutes && reminderValues[i * 2 + 1] == method) {
+                return;
+            }
+        }
+        if (null == reminderValues) {
+            reminderValues = new int[8];
+        } else if (reminderCount * 2 == reminderValues.length) {
+            reminderValues = Arrays.copyOf(reminderValues, reminderValues.length * 2);
+        }
+        reminderValues[reminderCount * 2] = minutes;
+        reminderValues[reminderCount * 2 + 1] = method;
+        reminderCount++;
+    }
+
+    /**
+     * 清除添加的事件提醒
+     *
+     * @throws IllegalStateException 事件不可修改
+     */
+    public void clearReminders() {
+        reminderCount = 0;
+    }
+
+    /**
+     * @return 添加的事件提醒数
+     */
+    public int getReminderCount() {
+        return reminderCount;
+    }
+
+    public int getReminderMinutes(int index) {
+        checkReminderIndex(index);
+        return reminderValues[index * 2];
+    }
+
+    public int getReminderMethod(int index) {
+        checkReminderIndex(index);
+        return reminderValues[index * 2 + 1];
+    }
+
+    /**
+     * @return 是否不可修改(通过{@link Builder}创建)
+     */
+    public boolean isFrozen() {
+        return false;
+    }
+
+    private void checkReminderIndex(int index) {
+        if (index < 0 || index >= reminderCount) {
+            throw new IndexOutOfBoundsException("index: " + index + ", size: " + reminderCount);
+        }
+    }
+
+    /**
+     * 写入事件时使用的提醒,按(提前的分钟数, 提醒方式)成对存放
+     * <p>
+     * 没有添加提醒时使用advanceTime(-2则没有提醒)
+     */
+    int[] getReminderValues() {
+        if (reminderCount > 0) {
+            return Arrays.copyOf(reminderValues, reminderCount * 2);
+        }
+        if (-2 == advanceTime) {
+            return new int[0];
+        }
+        return new int[]{advanceTime, CalendarContract.Reminders.METHOD_ALERT};
+    }
+
     public long getId() {
         return id;
     }
@@ -273,39 +374,147 @@ public class CalendarEvent {
         this.reminders = reminders;
     }
 
+    /**
+     * 属性是否已知(查询时包含了对应的列)
+     */
+    boolean isLoaded(EventField field) {
+        return null == loadedFields || loadedFields.contains(field);
+    }
+
+    void setLoadedFields(Set<EventField> loadedFields) {
+        this.loadedFields = loadedFields;
+    }
+
     @NonNull
     @Override
     public String toString() {
         return "CalendarEvent{" +
-                "\n id=" + id +
-                "\n calID=" + calID +
-                "\n title='" + title + '\'' +
-                "\n description='" + description + '\'' +
-                "\n eventLocation='" + eventLocation + '\'' +
-                "\n displayColor=" + displayColor +
-                "\n status=" + status +
-                "\n start=" + start +
-                "\n end=" + end +
-                "\n duration='" + duration + '\'' +
-                "\n eventTimeZone='" + eventTimeZone + '\'' +
-                "\n eventEndTimeZone='" + eventEndTimeZone + '\'' +
-                "\n allDay=" + allDay +
-                "\n accessLevel=" + accessLevel +
-                "\n availability=" + availability +
-                "\n hasAlarm=" + hasAlarm +
-                "\n rRule='" + rRule + '\'' +
-                "\n rDate='" + rDate + '\'' +
-                "\n hasAttendeeData=" + hasAttendeeData +
-                "\n lastDate=" + lastDate +
-                "\n organizer='" + organizer + '\'' +
-                "\n isOrganizer='" + isOrganizer + '\'' +
-                "\n reminders=" + reminders +
+                "\n id=" + getId() +
+                "\n calID=" + getCalID() +
+                "\n title='" + getTitle() + '\'' +
+                "\n description='" + getDescription() + '\'' +
+                "\n eventLocation='" + getEventLocation() + '\'' +
+                "\n displayColor=" + getDisplayColor() +
+                "\n status=" + getStatus() +
+                "\n start=" + getStart() +
+                "\n end=" + getEnd() +
+                "\n duration='" + getDuration() + '\'' +
+                "\n eventTimeZone='" + getEventTimeZone() + '\'' +
+                "\n eventEndTimeZone='" + getEventEndTimeZone() + '\'' +
+                "\n allDay=" + getAllDay() +
+                "\n accessLevel=" + getAccessLevel() +
+                "\n availability=" + getAvailability() +
+                "\n hasAlarm=" + getHasAlarm() +
+                "\n rRule='" + getRRule() + '\'' +
+                "\n rDate='" + getRDate() + '\'' +
+                "\n hasAttendeeData=" + getHasAttendeeData() +
+                "\n lastDate=" + getLastDate() +
+                "\n organizer='" + getOrganizer() + '\'' +
+                "\n isOrganizer='" + getIsOrganizer() + '\'' +
+                "\n reminders=" + getReminders() +
                 '}';
     }
 
     @Override
     public int hashCode() {
-        return (int) (id * 37 + calID);
+        return (int) (getId() * 37 + getCalID());
+    }
+
+    /**
+     * 日历事件构建器
+     * <p>
+     * 用于代替参数较多的构造方法,创建的事件不可修改
+     */
+    public static class Builder {
+
+        private String title;
+        private String description;
+        private String eventLocation;
+        private long start;
+        private long end;
+        private int advanceTime = -2;
+        private String rRule;
+        private int[] reminderValues = new int[8];
+        private int reminderCount;
+
+        /**
+         * @param title 事件标题
+         */
+        public Builder title(String title) {
+            this.title = title;
+            return this;
+        }
+
+        /**
+         * @param description 事件描述
+         */
+        public Builder description(String description) {
+            this.description = description;
+            return this;
+        }
+
+        /**
+         * @param eventLocation 事件地点
+         */
+        public Builder eventLocation(String eventLocation) {
+            this.eventLocation = eventLocation;
+            return this;
+        }
+
+        /**
+         * @param start 事件开始时间
+         * @param end   事件结束时间
+         */
+        public Builder time(long start, long end) {
+            this.start = start;
+            this.end = end;
+            return this;
+        }
+
+        /**
+         * @param advanceTime 事件提醒时间{@link AdvanceTime},默认没有提醒(-2)
+         */
+        public Builder advanceTime(int advanceTime) {
+            this.advanceTime = advanceTime;
+            return this;
+        }
+
+        /**
+         * @param rRule 事件重复规则  {@link RRuleConstant}
+         */
+        public Builder rRule(String rRule) {
+            this.rRule = rRule;
+            return this;
+        }
+
+        /**
+         * 添加一个事件提醒,添加了提醒时不再使用advanceTime
+         *
+         * @see CalendarEvent#addReminder(int, int)
+         */
+        public Builder reminder(int minutes, int method) {
+            for (int i = 0; i < reminderCount; i++) {
+                if (reminderValues[i * 2] == minutes && reminderValues[i * 2 + 1] == method) {
+                    return this;
+                }
+            }
+            if (reminderCount * 2 == reminderValues.length) {
+                reminderValues = Arrays.copyOf(reminderValues, reminderValues.length * 2);
+            }
+            reminderValues[reminderCount * 2] = minutes;
+            reminderValues[reminderCount * 2 + 1] = method;
+            reminderCount++;
+            return this;
+        }
+
+        /**
+         * @return 不可修改的日历事件,每次调用都会创建新的事件
+         */
+        public CalendarEvent build() {
+            return new ImmutableCalendarEvent(title, description, eventLocation, start, end,
+                    advanceTime, rRule, Arrays.copyOf(reminderValues, reminderCount * 2));
+        }
+
     }
 
     /**
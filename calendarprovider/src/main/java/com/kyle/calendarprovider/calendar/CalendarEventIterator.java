@@ -0,0 +1,109 @@
+package com.kyle.calendarprovider.calendar;
+
+import android.database.Cursor;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * 日历事件流式遍历
+ * <p>
+ * 从Cursor中按需逐批读取事件(需要提醒时每批读取后一次性查询该批事件的提醒),
+ * 内存中最多只保留一批事件,可随时停止遍历
+ * <p>
+ * TIP: 使用完毕后必须调用{@link #close()}(推荐使用try-with-resources),遍历结束时也会自动关闭
+ */
+public class CalendarEventIterator implements Iterator<CalendarEvent>, Closeable {
+
+    private final CalendarSession session;
+    private final Cursor cursor;
+    private final EventRowMapper mapper;
+    private final int batchSize;
+    private final boolean withReminders;
+
+    /**
+     * 当前批次的事件
+     */
+    private final List<CalendarEvent> batch;
+    private int position;
+    private int rowCount;
+    private boolean closed;
+
+    CalendarEventIterator(CalendarSession session, Cursor cursor, int batchSize, boolean withReminders) {
+        this.session = session;
+        this.cursor = cursor;
+        this.mapper = new EventRowMapper(cursor);
+        this.batchSize = batchSize;
+        this.withReminders = withReminders;
+        this.batch = new ArrayList<>(batchSize);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (position < batch.size()) {
+            return true;
+        }
+        if (closed) {
+            return false;
+        }
+
+        // 读取下一批事件
+        batch.clear();
+        position = 0;
+        while (batch.size() < batchSize && cursor.moveToNext()) {
+            batch.add(mapper.map(cursor));
+        }
+        rowCount += batch.size();
+        if (batch.isEmpty()) {
+            close();
+            return false;
+        }
+        if (withReminders) {
+            CalendarProviderManager.loadReminders(session, batch);
+        }
+        return true;
+    }
+
+    @Override
+    public CalendarEvent next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        // 释放已经返回的事件的引用
+        return batch.set(position++, null);
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("remove");
+    }
+
+    /**
+     * @return 截至目前的查询统计(读取的事件数以及字符串去重的结果)
+     */
+    public QueryStats getStats() {
+        QueryStats stats = new QueryStats();
+        recordStats(stats);
+        return stats;
+    }
+
+    void recordStats(QueryStats stats) {
+        stats.record(rowCount, mapper.getPool());
+    }
+
+    /**
+     * 关闭Cursor,可重复调用
+     */
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            batch.clear();
+            cursor.close();
+        }
+    }
+
+}
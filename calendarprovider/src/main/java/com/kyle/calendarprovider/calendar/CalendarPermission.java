@@ -0,0 +1,58 @@
+package com.kyle.calendarprovider.calendar;
+
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.os.Build;
+
+/**
+ * 日历读写权限检查
+ * <p>
+ * 权限被授予后会缓存授予状态,之后不再重复检查;未授予时每次都会重新检查
+ * 权限被撤销时进程通常会被系统结束,如果仍然遇到{@link SecurityException},
+ * 需要调用{@link #invalidate()}清除缓存
+ */
+public final class CalendarPermission {
+
+    public static final String READ = "android.permission.READ_CALENDAR";
+    public static final String WRITE = "android.permission.WRITE_CALENDAR";
+
+    private static volatile boolean readGranted;
+    private static volatile boolean writeGranted;
+
+    private CalendarPermission() {
+    }
+
+    /**
+     * @return 是否拥有读取日历权限
+     */
+    public static boolean canRead(Context context) {
+        if (!readGranted) {
+            readGranted = check(context, READ);
+        }
+        return readGranted;
+    }
+
+    /**
+     * @return 是否拥有写入日历权限
+     */
+    public static boolean canWrite(Context context) {
+        if (!writeGranted) {
+            writeGranted = check(context, WRITE);
+        }
+        return writeGranted;
+    }
+
+    /**
+     * 清除缓存的权限授予状态,下次使用时重新检查
+     */
+    public static void invalidate() {
+        readGranted = false;
+        writeGranted = false;
+    }
+
+    private static boolean check(Context context, String permission) {
+        return Build.VERSION.SDK_INT < Build.VERSION_CODES.M
+                || PackageManager.PERMISSION_GRANTED == context.checkSelfPermission(permission);
+    }
+
+}
@@ -1,20 +1,28 @@
 package com.kyle.calendarprovider.calendar;
 
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
 import android.content.Intent;
-import android.content.pm.PackageManager;
+import android.content.OperationApplicationException;
+import android.database.ContentObserver;
 import android.database.Cursor;
 import android.graphics.Color;
 import android.net.Uri;
-import android.os.Build;
+import android.os.RemoteException;
 import android.provider.CalendarContract;
+import android.text.TextUtils;
+import android.util.LongSparseArray;
 
 import com.kyle.calendarprovider.Util;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 import java.util.TimeZone;
 
 import static com.kyle.calendarprovider.Util.checkContextNull;
@@ -30,9 +38,6 @@ import static com.kyle.calendarprovider.Util.checkContextNull;
  */
 public class CalendarProviderManager {
 
-    private static StringBuilder builder = new StringBuilder();
-
-
     /*
        TIP: 要向系统日历插入事件,前提系统中必须存在至少1个日历账户
      */
@@ -44,21 +49,80 @@ public class CalendarProviderManager {
     private static String CALENDAR_DISPLAY_NAME = "KYLE的账户";
 
 
+    // ----------------------- 日历账户ID缓存 ---------------------------
+    private static final Object ACCOUNT_LOCK = new Object();
+    private static final String[] CALENDAR_ID_PROJECTION = new String[]{CalendarContract.Calendars._ID};
+    private static long cachedCalID = -1;
+    private static String cachedAccountName;
+    private static ContentObserver calendarsObserver;
+
+
+    // ----------------------- 重复规则组装 ---------------------------
+    private static final String RRULE_UNTIL = ";UNTIL=";
+    // 重复规则前缀之后追加内容的最大长度(BYDAY/BYMONTHDAY + UNTIL + 终止时间)
+    private static final int RRULE_UNTIL_SUFFIX_LENGTH = 2 + RRULE_UNTIL.length() + "yyyyMMddT235959Z".length();
+
+
+    // ----------------------- 批量操作时每批提交的事件数 ---------------------------
+    static final int BATCH_SIZE = 100;
+    // 批量查询时每条 IN (...) 语句的参数个数(SQLite默认最多999个参数)
+    static final int BATCH_QUERY_SIZE = 500;
+
+
+    // ----------------------- 事件实例默认查询的列 ---------------------------
+    public static final String[] INSTANCE_PROJECTION = new String[]{
+            CalendarContract.Instances.EVENT_ID,                // 在表中的列索引0
+            CalendarContract.Instances.BEGIN,                   // 在表中的列索引1
+            CalendarContract.Instances.END,                     // 在表中的列索引2
+            CalendarContract.Instances.TITLE,                   // 在表中的列索引3
+    };
+
+
+    // ----------------------- 事件提醒查询的列 ---------------------------
+    private static final String[] REMINDER_PROJECTION = new String[]{
+            CalendarContract.Reminders._ID,                     // 在表中的列索引0
+            CalendarContract.Reminders.EVENT_ID,                // 在表中的列索引1
+            CalendarContract.Reminders.MINUTES,                 // 在表中的列索引2
+            CalendarContract.Reminders.METHOD,                  // 在表中的列索引3
+    };
+
+
     // ------------------------------- 日历账户 -----------------------------------
 
     /**
      * 获取日历账户ID(若没有则会自动创建一个)
+     * <p>
+     * 获取到的账户ID会按账户名缓存,在删除账户或系统日历账户表变化时失效
      *
      * @return success: 日历账户ID  failed : -1  permission deny : -2
      */
     @SuppressWarnings("WeakerAccess")
     public static long obtainCalendarAccountID(Context context) {
-        long calID = checkCalendarAccount(context);
+        return obtainCalendarAccountID(CalendarSession.wrap(context));
+    }
+
+    /**
+     * 在会话中获取日历账户ID(若没有则会自动创建一个)
+     *
+     * @return success: 日历账户ID  failed : -1  permission deny : -2
+     * @see #obtainCalendarAccountID(Context)
+     */
+    public static long obtainCalendarAccountID(CalendarSession session) {
+        synchronized (ACCOUNT_LOCK) {
+            if (cachedCalID >= 0 && CALENDAR_ACCOUNT_NAME.equals(cachedAccountName)) {
+                return cachedCalID;
+            }
+        }
+
+        long calID = checkCalendarAccount(session);
+        if (calID < 0) {
+            calID = createCalendarAccount(session);
+        }
+
         if (calID >= 0) {
-            return calID;
-        } else {
-            return createCalendarAccount(context);
+            cacheCalendarAccountID(session.context, calID);
         }
+        return calID;
     }
 
     /**
@@ -66,30 +130,61 @@ public class CalendarProviderManager {
      *
      * @return 存在：日历账户ID  不存在：-1
      */
-    private static long checkCalendarAccount(Context context) {
-        try (Cursor cursor = context.getContentResolver().query(CalendarContract.Calendars.CONTENT_URI,
-                null, null, null, null)) {
-            // 不存在日历账户
-            if (null == cursor) {
-                return -1;
-            }
-            int count = cursor.getCount();
+    private static long checkCalendarAccount(CalendarSession session) {
+        String selection = "((" + CalendarContract.Calendars.ACCOUNT_NAME + " = ?) AND ("
+                + CalendarContract.Calendars.ACCOUNT_TYPE + " = ?))";
+        String[] selectionArgs = new String[]{CALENDAR_ACCOUNT_NAME, CalendarContract.ACCOUNT_TYPE_LOCAL};
+
+        try (Cursor cursor = session.query(CalendarContract.Calendars.CONTENT_URI,
+                CALENDAR_ID_PROJECTION, selection, selectionArgs, null)) {
             // 存在日历账户，获取第一个账户的ID
-            if (count > 0) {
-                cursor.moveToFirst();
-                return cursor.getInt(cursor.getColumnIndex(CalendarContract.Calendars._ID));
+            if (null != cursor && cursor.moveToFirst()) {
+                return cursor.getLong(0);
             } else {
                 return -1;
             }
         }
     }
 
+    /**
+     * 缓存日历账户ID,首次缓存时注册系统日历账户表的监听
+     */
+    private static void cacheCalendarAccountID(Context context, long calID) {
+        synchronized (ACCOUNT_LOCK) {
+            cachedCalID = calID;
+            cachedAccountName = CALENDAR_ACCOUNT_NAME;
+
+            if (null == calendarsObserver) {
+                // 系统日历修改任意数据时通知的都是CalendarContract.CONTENT_URI,无法按uri区分账户表的修改,
+                // 所以收到任何通知都清除缓存
+                calendarsObserver = new ContentObserver(null) {
+                    @Override
+                    public void onChange(boolean selfChange) {
+                        invalidateCalendarAccountID();
+                    }
+                };
+                context.getContentResolver().registerContentObserver(
+                        CalendarContract.Calendars.CONTENT_URI, true, calendarsObserver);
+            }
+        }
+    }
+
+    /**
+     * 清除缓存的日历账户ID
+     */
+    public static void invalidateCalendarAccountID() {
+        synchronized (ACCOUNT_LOCK) {
+            cachedCalID = -1;
+            cachedAccountName = null;
+        }
+    }
+
     /**
      * 创建一个新的日历账户
      *
      * @return success：ACCOUNT ID , create failed：-1 , permission deny：-2
      */
-    private static long createCalendarAccount(Context context) {
+    private static long createCalendarAccount(CalendarSession session) {
         // 系统日历表
         Uri uri = CalendarContract.Calendars.CONTENT_URI;
 
@@ -145,16 +240,14 @@ public class CalendarProviderManager {
                         CalendarContract.Calendars.CALENDAR_LOCATION)
                 .build();
 
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-            // 检查日历权限
-            if (PackageManager.PERMISSION_GRANTED == context.checkSelfPermission(
-                    "android.permission.WRITE_CALENDAR")) {
-                accountUri = context.getContentResolver().insert(uri, account);
-            } else {
-                return -2;
-            }
-        } else {
-            accountUri = context.getContentResolver().insert(uri, account);
+        if (!CalendarPermission.canWrite(session.context)) {
+            return -2;
+        }
+        try {
+            accountUri = session.insert(uri, account);
+        } catch (SecurityException e) {
+            CalendarPermission.invalidate();
+            return -2;
         }
 
         return accountUri == null ? -1 : ContentUris.parseId(accountUri);
@@ -175,15 +268,16 @@ public class CalendarProviderManager {
                 + CalendarContract.Calendars.ACCOUNT_TYPE + " = ?))";
         String[] selectionArgs = new String[]{CALENDAR_ACCOUNT_NAME, CalendarContract.ACCOUNT_TYPE_LOCAL};
 
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-            if (PackageManager.PERMISSION_GRANTED == context.checkSelfPermission(
-                    "android.permission.WRITE_CALENDAR")) {
-                deleteCount = context.getContentResolver().delete(uri, selection, selectionArgs);
-            } else {
-                return -2;
-            }
-        } else {
+        invalidateCalendarAccountID();
+
+        if (!CalendarPermission.canWrite(context)) {
+            return -2;
+        }
+        try {
             deleteCount = context.getContentResolver().delete(uri, selection, selectionArgs);
+        } catch (SecurityException e) {
+            CalendarPermission.invalidate();
+            return -2;
         }
 
         return deleteCount;
@@ -197,8 +291,22 @@ public class CalendarProviderManager {
      *
      * @param calendarEvent 日历事件(详细参数说明请参看{@link CalendarEvent}构造方法)
      * @return 0: success  -1: failed  -2: permission deny
+     * @throws IllegalArgumentException 事件的重复规则格式错误
      */
     public static int addCalendarEvent(Context context, CalendarEvent calendarEvent) {
+        checkContextNull(context);
+
+        return addCalendarEvent(CalendarSession.wrap(context), calendarEvent);
+    }
+
+    /**
+     * 在会话中添加日历事件
+     *
+     * @return 0: success  -1: failed  -2: permission deny
+     * @throws IllegalArgumentException 事件的重复规则格式错误
+     * @see #addCalendarEvent(Context, CalendarEvent)
+     */
+    public static int addCalendarEvent(CalendarSession session, CalendarEvent calendarEvent) {
          /*
             TIP: 插入一个新事件的规则：
              1.  必须包含CALENDAR_ID和DTSTART字段
@@ -207,65 +315,201 @@ public class CalendarProviderManager {
              4.  对重复发生的事件,必须包含一个附加了RRULE或RDATE字段的DURATION字段
          */
 
-        checkContextNull(context);
-
         // 获取日历账户ID，也就是要将事件插入到的账户
-        long calID = obtainCalendarAccountID(context);
+        long calID = obtainCalendarAccountID(session);
 
         // 系统日历事件表
         Uri uri1 = CalendarContract.Events.CONTENT_URI;
-        // 创建的日历事件
-        Uri eventUri;
-
         // 系统日历事件提醒表
         Uri uri2 = CalendarContract.Reminders.CONTENT_URI;
-        // 创建的日历事件提醒
-        Uri reminderUri;
 
-        // 开始组装事件数据
-        ContentValues event = new ContentValues();
-        // 事件要插入到的日历账户
-        event.put(CalendarContract.Events.CALENDAR_ID, calID);
+        // 开始组装事件数据(事件要插入到的日历账户以及不随事件变化的列来自模板)
+        ContentValues event = EventValuesTemplate.forInsert(calID).newValues();
         setupEvent(calendarEvent, event);
 
+        // 事件和提醒在同一个批次中插入,提醒的EVENT_ID引用事件插入的结果
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        operations.add(ContentProviderOperation.newInsert(uri1)
+                .withValues(event)
+                .build());
+        addReminderOperations(uri2, 0, calendarEvent, operations);
 
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-            // 判断权限
-            if (PackageManager.PERMISSION_GRANTED == context.checkSelfPermission(
-                    "android.permission.WRITE_CALENDAR")) {
-                eventUri = context.getContentResolver().insert(uri1, event);
-            } else {
-                return -2;
+
+        if (!CalendarPermission.canWrite(session.context)) {
+            return -2;
+        }
+        try {
+            ContentProviderResult[] results = session.applyBatch(operations);
+            if (null == results[0].uri) {
+                // 缓存的日历账户可能已经不存在
+                invalidateCalendarAccountID();
+                return -1;
             }
-        } else {
-            eventUri = context.getContentResolver().insert(uri1, event);
+        } catch (RemoteException | OperationApplicationException e) {
+            // 缓存的日历账户可能已经不存在
+            invalidateCalendarAccountID();
+            return -1;
+        } catch (SecurityException e) {
+            CalendarPermission.invalidate();
+            return -2;
         }
 
-        if (null == eventUri) {
-            return -1;
+        return 0;
+    }
+
+    /**
+     * 组装事件所有提醒的插入操作,提醒的EVENT_ID通过back-reference引用事件插入操作的结果
+     *
+     * @param eventIndex 事件插入操作在批次中的下标
+     */
+    private static void addReminderOperations(Uri uri, int eventIndex, CalendarEvent calendarEvent,
+                                              ArrayList<ContentProviderOperation> operations) {
+        int[] reminders = calendarEvent.getReminderValues();
+        for (int i = 0; i < reminders.length; i += 2) {
+            operations.add(ContentProviderOperation.newInsert(uri)
+                    .withValueBackReference(CalendarContract.Reminders.EVENT_ID, eventIndex)
+                    .withValue(CalendarContract.Reminders.MINUTES, reminders[i])
+                    .withValue(CalendarContract.Reminders.METHOD, reminders[i + 1])
+                    .build());
         }
+    }
 
+    /**
+     * 批量添加日历事件
+     * <p>
+     * 事件及其提醒通过applyBatch分批提交(每批{@link #BATCH_SIZE}个事件),
+     * 提醒的EVENT_ID通过back-reference引用同一批次中事件插入的结果
+     * 每批在一个事务中提交,某一批失败时该批的事件都不会写入(对应的事件ID为-1),可以安全地重试
+     *
+     * @param calendarEvents 日历事件(详细参数说明请参看{@link CalendarEvent}构造方法)
+     * @return 与传入顺序一致的事件ID(插入失败的事件为-1)  permission deny : null
+     * @throws IllegalArgumentException 任一事件的重复规则格式错误(此时不会写入任何事件)
+     */
+    public static long[] addCalendarEvents(Context context, List<CalendarEvent> calendarEvents) {
+        checkContextNull(context);
 
-        if (-2 != calendarEvent.getAdvanceTime()) {
-            // 获取事件ID
-            long eventID = ContentUris.parseId(eventUri);
+        return addCalendarEvents(CalendarSession.wrap(context), calendarEvents);
+    }
 
-            // 开始组装事件提醒数据
-            ContentValues reminders = new ContentValues();
-            // 此提醒所对应的事件ID
-            reminders.put(CalendarContract.Reminders.EVENT_ID, eventID);
-            // 设置提醒提前的时间(0：准时  -1：使用系统默认)
-            reminders.put(CalendarContract.Reminders.MINUTES, calendarEvent.getAdvanceTime());
-            // 设置事件提醒方式为通知警报
-            reminders.put(CalendarContract.Reminders.METHOD, CalendarContract.Reminders.METHOD_ALERT);
-            reminderUri = context.getContentResolver().insert(uri2, reminders);
+    /**
+     * 在会话中批量添加日历事件
+     *
+     * @return 与传入顺序一致的事件ID(插入失败的事件为-1)  permission deny : null
+     * @throws IllegalArgumentException 任一事件的重复规则格式错误(此时不会写入任何事件)
+     * @see #addCalendarEvents(Context, List)
+     */
+    public static long[] addCalendarEvents(CalendarSession session, List<CalendarEvent> calendarEvents) {
+        if (!CalendarPermission.canWrite(session.context)) {
+            return null;
+        }
 
-            if (null == reminderUri) {
-                return -1;
+        // 提前检查所有事件的重复规则,避免部分批次已经写入后才发现错误
+        for (CalendarEvent calendarEvent : calendarEvents) {
+            if (null != calendarEvent.getRRule()) {
+                checkRRule(calendarEvent);
             }
         }
 
-        return 0;
+        return insertCalendarEvents(session, calendarEvents, false);
+    }
+
+    /**
+     * 在会话中批量写入事件快照中恢复的事件
+     * <p>
+     * 与{@link #addCalendarEvents(CalendarSession, List)}的批次和返回值相同,但按事件自己的属性写入
+     * (全天、时区、重复日期、状态、访问级别、忙碌状态和颜色),重复事件写入持续时间而不是结束时间,
+     * 重复规则已经是完整的规则,原样写入
+     *
+     * @return 与传入顺序一致的事件ID(插入失败的事件为-1)  permission deny : null
+     * @see EventSnapshot#restore(CalendarSession, java.io.File)
+     */
+    static long[] restoreCalendarEvents(CalendarSession session, List<CalendarEvent> calendarEvents) {
+        if (!CalendarPermission.canWrite(session.context)) {
+            return null;
+        }
+
+        return insertCalendarEvents(session, calendarEvents, true);
+    }
+
+    /**
+     * 分批写入事件及其提醒
+     *
+     * @param restore true: 按事件自己的属性写入(见{@link #setupRestoredEvent})
+     *                false: 不随事件变化的列来自{@link EventValuesTemplate}
+     */
+    private static long[] insertCalendarEvents(CalendarSession session, List<CalendarEvent> calendarEvents,
+                                               boolean restore) {
+        int size = calendarEvents.size();
+        long[] eventIDs = new long[size];
+        Arrays.fill(eventIDs, -1);
+
+        // 获取日历账户ID，整批事件只获取一次
+        long calID = obtainCalendarAccountID(session);
+        if (calID < 0) {
+            return eventIDs;
+        }
+
+        Uri uri1 = CalendarContract.Events.CONTENT_URI;
+        Uri uri2 = CalendarContract.Reminders.CONTENT_URI;
+
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        // 批次中每个事件插入操作的下标
+        int[] eventIndexes = new int[BATCH_SIZE];
+        // 整批事件共用一个模板
+        EventValuesTemplate template = EventValuesTemplate.forInsert(calID);
+        // 恢复时与日历账户颜色相同的事件不单独写入颜色
+        Integer calendarColor = null;
+        if (restore) {
+            try {
+                calendarColor = queryCalendarColor(session, calID);
+            } catch (SecurityException e) {
+                CalendarPermission.invalidate();
+                return null;
+            }
+        }
+
+        for (int from = 0; from < size; from += BATCH_SIZE) {
+            int to = Math.min(size, from + BATCH_SIZE);
+            operations.clear();
+
+            for (int i = from; i < to; i++) {
+                CalendarEvent calendarEvent = calendarEvents.get(i);
+
+                ContentValues event;
+                if (restore) {
+                    event = new ContentValues();
+                    setupRestoredEvent(calID, calendarColor, calendarEvent, event);
+                } else {
+                    event = template.newValues();
+                    setupEvent(calendarEvent, event);
+                }
+
+                eventIndexes[i - from] = operations.size();
+                operations.add(ContentProviderOperation.newInsert(uri1)
+                        .withValues(event)
+                        .build());
+
+                addReminderOperations(uri2, eventIndexes[i - from], calendarEvent, operations);
+            }
+
+            try {
+                ContentProviderResult[] results = session.applyBatch(operations);
+                for (int i = from; i < to; i++) {
+                    Uri eventUri = results[eventIndexes[i - from]].uri;
+                    if (null != eventUri) {
+                        eventIDs[i] = ContentUris.parseId(eventUri);
+                    }
+                }
+            } catch (RemoteException | OperationApplicationException e) {
+                // 此批次插入失败,对应的事件ID保持为-1,缓存的日历账户可能已经不存在
+                invalidateCalendarAccountID();
+            } catch (SecurityException e) {
+                CalendarPermission.invalidate();
+                return null;
+            }
+        }
+
+        return eventIDs;
     }
 
 
@@ -275,234 +519,384 @@ public class CalendarProviderManager {
      * 更新指定ID的日历事件
      *
      * @param newCalendarEvent 更新的日历事件
-     * @return -2: permission deny  else success
+     * @return -2: permission deny  0: not found or failed  else success
+     * @see #updateCalendarEventAtomically(Context, long, CalendarEvent)
      */
     public static int updateCalendarEvent(Context context, long eventID, CalendarEvent newCalendarEvent) {
         checkContextNull(context);
 
-        int updatedCount1;
+        return updateCalendarEvent(CalendarSession.wrap(context), eventID, newCalendarEvent);
+    }
 
-        Uri uri1 = CalendarContract.Events.CONTENT_URI;
-        Uri uri2 = CalendarContract.Reminders.CONTENT_URI;
+    /**
+     * 在会话中更新指定ID的日历事件
+     *
+     * @return -2: permission deny  0: not found or failed  else success
+     * @see #updateCalendarEvent(Context, long, CalendarEvent)
+     */
+    public static int updateCalendarEvent(CalendarSession session, long eventID, CalendarEvent newCalendarEvent) {
+        return toUpdateCount(updateCalendarEventAtomically(session, eventID, newCalendarEvent));
+    }
 
-        ContentValues event = new ContentValues();
+    /**
+     * 在同一个批次中更新指定ID的日历事件及其提醒
+     * <p>
+     * 事件不存在时整个批次不会生效,提醒也不会被更新,其他读取方不会看到只更新了一半的事件
+     *
+     * @param newCalendarEvent 更新的日历事件
+     * @return 事件和提醒各自的更新数量
+     * @throws IllegalArgumentException 事件的重复规则格式错误
+     */
+    public static EventUpdateResult updateCalendarEventAtomically(Context context, long eventID,
+                                                                  CalendarEvent newCalendarEvent) {
+        checkContextNull(context);
+
+        return updateCalendarEventAtomically(CalendarSession.wrap(context), eventID, newCalendarEvent);
+    }
+
+    /**
+     * 在会话中于同一个批次中更新指定ID的日历事件及其提醒
+     *
+     * @return 事件和提醒各自的更新数量
+     * @throws IllegalArgumentException 事件的重复规则格式错误
+     * @see #updateCalendarEventAtomically(Context, long, CalendarEvent)
+     */
+    public static EventUpdateResult updateCalendarEventAtomically(CalendarSession session, long eventID,
+                                                                  CalendarEvent newCalendarEvent) {
+        ContentValues event = EventValuesTemplate.forUpdate().newValues();
         setupEvent(newCalendarEvent, event);
 
+        return applyEventUpdate(session, eventID, event, null, newCalendarEvent.getReminderValues());
+    }
+
+    /**
+     * 只更新与上一次已知状态相比发生变化的列
+     * <p>
+     * 与{@link #updateCalendarEvent(Context, long, CalendarEvent)}写入的内容相同,但没有变化的列不会写入,
+     * 提醒没有变化时也不会更新提醒,没有任何变化时不会访问系统日历
+     * 旧事件查询时未包含的列不会比较也不会写入,只能修改查询过的属性
+     * 旧事件未查询提醒时在同一批次中删除事件的全部提醒后重新插入(查询过但没有提醒时只插入新增的提醒)
+     *
+     * @param oldCalendarEvent 事件上一次已知的状态(通常来自{@link #queryAccountEvent(Context, long)}),
+     *                         使用其ID作为要更新的事件
+     * @param newCalendarEvent 更新的日历事件
+     * @return -2: permission deny  0: nothing changed or not found  else success
+     * @throws IllegalArgumentException 事件的重复规则格式错误
+     */
+    public static int updateCalendarEvent(Context context, CalendarEvent oldCalendarEvent,
+                                          CalendarEvent newCalendarEvent) {
+        checkContextNull(context);
+
+        return updateCalendarEvent(CalendarSession.wrap(context), oldCalendarEvent, newCalendarEvent);
+    }
+
+    /**
+     * 在会话中只更新与上一次已知状态相比发生变化的列
+     *
+     * @return -2: permission deny  0: nothing changed or not found  else success
+     * @throws IllegalArgumentException 事件的重复规则格式错误
+     * @see #updateCalendarEvent(Context, CalendarEvent, CalendarEvent)
+     */
+    public static int updateCalendarEvent(CalendarSession session, CalendarEvent oldCalendarEvent,
+                                          CalendarEvent newCalendarEvent) {
+        ContentValues event = new ContentValues();
+        diffEvent(oldCalendarEvent, newCalendarEvent, event);
+
+        List<CalendarEvent.EventReminders> existing = oldCalendarEvent.getReminders();
+        int[] reminders = newCalendarEvent.getReminderValues();
+        if (null != existing && isSameReminders(existing, reminders)) {
+            reminders = null;
+        }
+
+        if (event.size() == 0 && null == reminders) {
+            return 0;
+        }
+
+        return toUpdateCount(applyEventUpdate(session, oldCalendarEvent.getId(), event, existing, reminders));
+    }
+
+    /**
+     * 在同一个批次中更新事件及其提醒
+     * <p>
+     * 事件的更新要求恰好匹配一行(没有需要更新的列时改为检查事件是否存在),否则整个批次回滚
+     * 已知现有的提醒时逐个比较,只删除不再需要的提醒、插入新增的提醒;
+     * 未知时删除事件的全部提醒后重新插入
+     *
+     * @param event     要更新的事件列,可以为空
+     * @param existing  事件现有的提醒,null则未知
+     * @param reminders 新的提醒(提前的分钟数, 提醒方式)对,null则不更新提醒
+     */
+    private static EventUpdateResult applyEventUpdate(CalendarSession session, long eventID, ContentValues event,
+                                                      List<CalendarEvent.EventReminders> existing,
+                                                      int[] reminders) {
+        if (!CalendarPermission.canWrite(session.context)) {
+            return EventUpdateResult.PERMISSION_DENY;
+        }
+
         // 更新匹配条件
-        String selection1 = "(" + CalendarContract.Events._ID + " = ?)";
-        String[] selectionArgs1 = new String[]{String.valueOf(eventID)};
+        String selection = "(" + CalendarContract.Events._ID + " = ?)";
+        String[] selectionArgs = new String[]{String.valueOf(eventID)};
 
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-            if (PackageManager.PERMISSION_GRANTED == context.checkSelfPermission(
-                    "android.permission.WRITE_CALENDAR")) {
-                updatedCount1 = context.getContentResolver().update(uri1, event, selection1, selectionArgs1);
-            } else {
-                return -2;
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        ContentProviderOperation.Builder eventOperation = event.size() > 0
+                ? ContentProviderOperation.newUpdate(CalendarContract.Events.CONTENT_URI).withValues(event)
+                : ContentProviderOperation.newAssertQuery(CalendarContract.Events.CONTENT_URI);
+        operations.add(eventOperation
+                .withSelection(selection, selectionArgs)
+                .withExpectedCount(1)
+                .build());
+
+        try {
+            if (null != reminders) {
+                if (null == existing) {
+                    replaceReminders(eventID, reminders, operations);
+                } else {
+                    diffReminders(eventID, existing, reminders, operations);
+                }
             }
-        } else {
-            updatedCount1 = context.getContentResolver().update(uri1, event, selection1, selectionArgs1);
+            if (event.size() == 0 && 1 == operations.size()) {
+                return EventUpdateResult.NOTHING_CHANGED;
+            }
+
+            ContentProviderResult[] results = session.applyBatch(operations);
+            int reminderCount = 0;
+            for (int i = 1; i < results.length; i++) {
+                reminderCount += getCount(results[i]);
+            }
+            return new EventUpdateResult(0, getCount(results[0]), reminderCount);
+        } catch (OperationApplicationException e) {
+            // 事件不存在,整个批次已回滚
+            return EventUpdateResult.FAILED;
+        } catch (RemoteException e) {
+            return EventUpdateResult.FAILED;
+        } catch (SecurityException e) {
+            CalendarPermission.invalidate();
+            return EventUpdateResult.PERMISSION_DENY;
+        }
+    }
+
+    /**
+     * 组装替换事件全部提醒的操作
+     * <p>
+     * 先按事件ID删除现有的提醒,再插入新的提醒,与事件的更新在同一个批次中生效,不需要先查询现有的提醒
+     */
+    private static void replaceReminders(long eventID, int[] reminders,
+                                         ArrayList<ContentProviderOperation> operations) {
+        operations.add(ContentProviderOperation.newDelete(CalendarContract.Reminders.CONTENT_URI)
+                .withSelection("(" + CalendarContract.Reminders.EVENT_ID + " = ?)",
+                        new String[]{String.valueOf(eventID)})
+                .build());
+        for (int i = 0; i < reminders.length; i += 2) {
+            operations.add(ContentProviderOperation.newInsert(CalendarContract.Reminders.CONTENT_URI)
+                    .withValue(CalendarContract.Reminders.EVENT_ID, eventID)
+                    .withValue(CalendarContract.Reminders.MINUTES, reminders[i])
+                    .withValue(CalendarContract.Reminders.METHOD, reminders[i + 1])
+                    .build());
         }
+    }
 
+    /**
+     * 组装提醒的差异更新操作
+     * <p>
+     * 新的提醒中与现有提醒相同的保留,其余插入;现有提醒中不再需要的一次性删除
+     */
+    private static void diffReminders(long eventID, List<CalendarEvent.EventReminders> existing, int[] reminders,
+                                      ArrayList<ContentProviderOperation> operations) {
+        boolean[] kept = new boolean[existing.size()];
+
+        for (int i = 0; i < reminders.length; i += 2) {
+            int match = indexOfReminder(existing, kept, reminders[i], reminders[i + 1]);
+            if (match >= 0) {
+                kept[match] = true;
+            } else {
+                operations.add(ContentProviderOperation.newInsert(CalendarContract.Reminders.CONTENT_URI)
+                        .withValue(CalendarContract.Reminders.EVENT_ID, eventID)
+                        .withValue(CalendarContract.Reminders.MINUTES, reminders[i])
+                        .withValue(CalendarContract.Reminders.METHOD, reminders[i + 1])
+                        .build());
+            }
+        }
 
-        ContentValues reminders = new ContentValues();
-        reminders.put(CalendarContract.Reminders.MINUTES, newCalendarEvent.getAdvanceTime());
-        reminders.put(CalendarContract.Reminders.METHOD, CalendarContract.Reminders.METHOD_ALERT);
+        StringBuilder selection = new StringBuilder();
+        List<String> selectionArgs = new ArrayList<>();
+        for (int i = 0; i < kept.length; i++) {
+            if (!kept[i]) {
+                selection.append(selectionArgs.isEmpty() ? "?" : ",?");
+                selectionArgs.add(String.valueOf(existing.get(i).getReminderId()));
+            }
+        }
+        if (!selectionArgs.isEmpty()) {
+            operations.add(ContentProviderOperation.newDelete(CalendarContract.Reminders.CONTENT_URI)
+                    .withSelection("(" + CalendarContract.Reminders._ID + " IN (" + selection + "))",
+                            selectionArgs.toArray(new String[selectionArgs.size()]))
+                    .build());
+        }
+    }
 
-        // 更新匹配条件
-        String selection2 = "(" + CalendarContract.Reminders.EVENT_ID + " = ?)";
-        String[] selectionArgs2 = new String[]{String.valueOf(eventID)};
+    /**
+     * 查找尚未匹配的相同提醒
+     *
+     * @return 提醒在existing中的下标,不存在返回-1
+     */
+    private static int indexOfReminder(List<CalendarEvent.EventReminders> existing, boolean[] kept,
+                                       int minutes, int method) {
+        for (int i = 0; i < kept.length; i++) {
+            CalendarEvent.EventReminders reminder = existing.get(i);
+            if (!kept[i] && reminder.getReminderMinute() == minutes && reminder.getReminderMethod() == method) {
+                return i;
+            }
+        }
+        return -1;
+    }
 
-        int updatedCount2 = context.getContentResolver().update(uri2, reminders, selection2, selectionArgs2);
+    /**
+     * 批量操作影响的行数(插入操作成功时为1)
+     */
+    private static int getCount(ContentProviderResult result) {
+        if (null != result.count) {
+            return result.count;
+        }
+        return null == result.uri ? 0 : 1;
+    }
 
-        return (updatedCount1 + updatedCount2) / 2;
+    /**
+     * 转换为int类型的更新结果(-2: permission deny  else: 更新的事件数)
+     */
+    private static int toUpdateCount(EventUpdateResult result) {
+        return -2 == result.getCode() ? -2 : result.getEventCount();
     }
 
     /**
      * 更新指定ID事件的开始时间
      *
-     * @return If successfully returns 1
+     * @return If successfully returns 1  -2: permission deny
      */
     public static int updateCalendarEventbeginTime(Context context, long eventID, long newBeginTime) {
         checkContextNull(context);
 
-        Uri uri = CalendarContract.Events.CONTENT_URI;
-
         // 新的数据
         ContentValues event = new ContentValues();
         event.put(CalendarContract.Events.DTSTART, newBeginTime);
 
-        // 匹配条件
-        String selection = "(" + CalendarContract.Events._ID + " = ?)";
-        String[] selectionArgs = new String[]{String.valueOf(eventID)};
-
-        return context.getContentResolver().update(uri, event, selection, selectionArgs);
+        return updateEvent(CalendarSession.wrap(context), eventID, event);
     }
 
     /**
      * 更新指定ID事件的结束时间
      *
-     * @return If successfully returns 1
+     * @return If successfully returns 1  -2: permission deny
      */
     public static int updateCalendarEventEndTime(Context context, long eventID, long newEndTime) {
         checkContextNull(context);
 
-        Uri uri = CalendarContract.Events.CONTENT_URI;
-
         // 新的数据
         ContentValues event = new ContentValues();
         event.put(CalendarContract.Events.DTEND, newEndTime);
 
-
-        // 匹配条件
-        String selection = "(" + CalendarContract.Events._ID + " = ?)";
-        String[] selectionArgs = new String[]{String.valueOf(eventID)};
-
-        return context.getContentResolver().update(uri, event, selection, selectionArgs);
+        return updateEvent(CalendarSession.wrap(context), eventID, event);
     }
 
     /**
      * 更新指定ID事件的起始时间
      *
-     * @return If successfully returns 1
+     * @return If successfully returns 1  -2: permission deny
      */
     public static int updateCalendarEventTime(Context context, long eventID, long newBeginTime,
                                               long newEndTime) {
         checkContextNull(context);
 
-        Uri uri = CalendarContract.Events.CONTENT_URI;
-
         // 新的数据
         ContentValues event = new ContentValues();
         event.put(CalendarContract.Events.DTSTART, newBeginTime);
         event.put(CalendarContract.Events.DTEND, newEndTime);
 
-
-        // 匹配条件
-        String selection = "(" + CalendarContract.Events._ID + " = ?)";
-        String[] selectionArgs = new String[]{String.valueOf(eventID)};
-
-        return context.getContentResolver().update(uri, event, selection, selectionArgs);
+        return updateEvent(CalendarSession.wrap(context), eventID, event);
     }
 
     /**
      * 更新指定ID事件的标题
      *
-     * @return If successfully returns 1
+     * @return If successfully returns 1  -2: permission deny
      */
     public static int updateCalendarEventTitle(Context context, long eventID, String newTitle) {
         checkContextNull(context);
 
-        Uri uri = CalendarContract.Events.CONTENT_URI;
-
         // 新的数据
         ContentValues event = new ContentValues();
         event.put(CalendarContract.Events.TITLE, newTitle);
 
-
-        // 匹配条件
-        String selection = "(" + CalendarContract.Events._ID + " = ?)";
-        String[] selectionArgs = new String[]{String.valueOf(eventID)};
-
-        return context.getContentResolver().update(uri, event, selection, selectionArgs);
+        return updateEvent(CalendarSession.wrap(context), eventID, event);
     }
 
     /**
      * 更新指定ID事件的描述
      *
-     * @return If successfully returns 1
+     * @return If successfully returns 1  -2: permission deny
      */
     public static int updateCalendarEventDes(Context context, long eventID, String newEventDes) {
         checkContextNull(context);
 
-        Uri uri = CalendarContract.Events.CONTENT_URI;
-
         // 新的数据
         ContentValues event = new ContentValues();
         event.put(CalendarContract.Events.DESCRIPTION, newEventDes);
 
-
-        // 匹配条件
-        String selection = "(" + CalendarContract.Events._ID + " = ?)";
-        String[] selectionArgs = new String[]{String.valueOf(eventID)};
-
-        return context.getContentResolver().update(uri, event, selection, selectionArgs);
+        return updateEvent(CalendarSession.wrap(context), eventID, event);
     }
 
     /**
      * 更新指定ID事件的地点
      *
-     * @return If successfully returns 1
+     * @return If successfully returns 1  -2: permission deny
      */
     public static int updateCalendarEventLocation(Context context, long eventID, String newEventLocation) {
         checkContextNull(context);
 
-        Uri uri = CalendarContract.Events.CONTENT_URI;
-
         // 新的数据
         ContentValues event = new ContentValues();
         event.put(CalendarContract.Events.EVENT_LOCATION, newEventLocation);
 
-
-        // 匹配条件
-        String selection = "(" + CalendarContract.Events._ID + " = ?)";
-        String[] selectionArgs = new String[]{String.valueOf(eventID)};
-
-        return context.getContentResolver().update(uri, event, selection, selectionArgs);
+        return updateEvent(CalendarSession.wrap(context), eventID, event);
     }
 
     /**
      * 更新指定ID事件的标题和描述
      *
-     * @return If successfully returns 1
+     * @return If successfully returns 1  -2: permission deny
      */
     public static int updateCalendarEventTitAndDes(Context context, long eventID, String newEventTitle,
                                                    String newEventDes) {
         checkContextNull(context);
 
-        Uri uri = CalendarContract.Events.CONTENT_URI;
-
         // 新的数据
         ContentValues event = new ContentValues();
         event.put(CalendarContract.Events.TITLE, newEventTitle);
         event.put(CalendarContract.Events.DESCRIPTION, newEventDes);
 
-
-        // 匹配条件
-        String selection = "(" + CalendarContract.Events._ID + " = ?)";
-        String[] selectionArgs = new String[]{String.valueOf(eventID)};
-
-        return context.getContentResolver().update(uri, event, selection, selectionArgs);
+        return updateEvent(CalendarSession.wrap(context), eventID, event);
     }
 
     /**
      * 更新指定ID事件的常用信息(标题、描述、地点)
      *
-     * @return If successfully returns 1
+     * @return If successfully returns 1  -2: permission deny
      */
     public static int updateCalendarEventCommonInfo(Context context, long eventID, String newEventTitle,
                                                     String newEventDes, String newEventLocation) {
         checkContextNull(context);
 
-        Uri uri = CalendarContract.Events.CONTENT_URI;
-
         // 新的数据
         ContentValues event = new ContentValues();
         event.put(CalendarContract.Events.TITLE, newEventTitle);
         event.put(CalendarContract.Events.DESCRIPTION, newEventDes);
         event.put(CalendarContract.Events.EVENT_LOCATION, newEventLocation);
 
-
-        // 匹配条件
-        String selection = "(" + CalendarContract.Events._ID + " = ?)";
-        String[] selectionArgs = new String[]{String.valueOf(eventID)};
-
-        return context.getContentResolver().update(uri, event, selection, selectionArgs);
+        return updateEvent(CalendarSession.wrap(context), eventID, event);
     }
 
     /**
      * 更新指定ID事件的提醒方式
      *
-     * @return If successfully returns 1
+     * @return If successfully returns 1  -2: permission deny
      */
     private static int updateCalendarEventReminder(Context context, long eventID, long newAdvanceTime) {
         checkContextNull(context);
@@ -516,28 +910,51 @@ public class CalendarProviderManager {
         String selection2 = "(" + CalendarContract.Reminders.EVENT_ID + " = ?)";
         String[] selectionArgs2 = new String[]{String.valueOf(eventID)};
 
-        return context.getContentResolver().update(uri, reminders, selection2, selectionArgs2);
+        if (!CalendarPermission.canWrite(context)) {
+            return -2;
+        }
+        try {
+            return CalendarSession.wrap(context).update(uri, reminders, selection2, selectionArgs2);
+        } catch (SecurityException e) {
+            CalendarPermission.invalidate();
+            return -2;
+        }
+    }
+
+    /**
+     * 更新指定ID事件的部分属性
+     *
+     * @return If successfully returns 1  -2: permission deny
+     */
+    private static int updateEvent(CalendarSession session, long eventID, ContentValues event) {
+        // 匹配条件
+        String selection = "(" + CalendarContract.Events._ID + " = ?)";
+        String[] selectionArgs = new String[]{String.valueOf(eventID)};
+
+        if (!CalendarPermission.canWrite(session.context)) {
+            return -2;
+        }
+        try {
+            return session.update(CalendarContract.Events.CONTENT_URI, event, selection, selectionArgs);
+        } catch (SecurityException e) {
+            CalendarPermission.invalidate();
+            return -2;
+        }
     }
 
     /**
      * 更新指定ID事件的提醒重复规则
      *
-     * @return If successfully returns 1
+     * @return If successfully returns 1  -2: permission deny
      */
     private static int updateCalendarEventRRule(Context context, long eventID, String newRRule) {
         checkContextNull(context);
 
-        Uri uri = CalendarContract.Events.CONTENT_URI;
-
         // 新的数据
         ContentValues event = new ContentValues();
         event.put(CalendarContract.Events.RRULE, newRRule);
 
-        // 匹配条件
-        String selection = "(" + CalendarContract.Events._ID + " = ?)";
-        String[] selectionArgs = new String[]{String.valueOf(eventID)};
-
-        return context.getContentResolver().update(uri, event, selection, selectionArgs);
+        return updateEvent(CalendarSession.wrap(context), eventID, event);
     }
 
 
@@ -545,6 +962,8 @@ public class CalendarProviderManager {
 
     /**
      * 删除日历事件
+     * <p>
+     * 事件的提醒由系统日历在删除事件时一并删除
      *
      * @param eventID 事件ID
      * @return -2: permission deny  else success
@@ -552,32 +971,141 @@ public class CalendarProviderManager {
     public static int deleteCalendarEvent(Context context, long eventID) {
         checkContextNull(context);
 
-        int deletedCount1;
-        Uri uri1 = CalendarContract.Events.CONTENT_URI;
-        Uri uri2 = CalendarContract.Reminders.CONTENT_URI;
+        return deleteCalendarEvent(CalendarSession.wrap(context), eventID);
+    }
+
+    /**
+     * 在会话中删除日历事件
+     *
+     * @return -2: permission deny  else success
+     * @see #deleteCalendarEvent(Context, long)
+     */
+    public static int deleteCalendarEvent(CalendarSession session, long eventID) {
+        Uri uri = CalendarContract.Events.CONTENT_URI;
 
         // 删除匹配条件
         String selection = "(" + CalendarContract.Events._ID + " = ?)";
         String[] selectionArgs = new String[]{String.valueOf(eventID)};
 
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-            if (PackageManager.PERMISSION_GRANTED == context.checkSelfPermission(
-                    "android.permission.WRITE_CALENDAR")) {
-                deletedCount1 = context.getContentResolver().delete(uri1, selection, selectionArgs);
-            } else {
-                return -2;
+        if (!CalendarPermission.canWrite(session.context)) {
+            return -2;
+        }
+        try {
+            return session.delete(uri, selection, selectionArgs);
+        } catch (SecurityException e) {
+            CalendarPermission.invalidate();
+            return -2;
+        }
+    }
+
+    /**
+     * 批量删除日历事件
+     * <p>
+     * 事件ID按每组{@link #BATCH_QUERY_SIZE}个分组,每组一个 _ID IN (...) 删除操作,
+     * 所有分组通过一次applyBatch在同一个事务中提交(失败时不会删除任何事件)
+     * 事件的提醒由系统日历在删除事件时一并删除
+     *
+     * @param eventIDs 事件ID
+     * @return 删除的事件数  failed : -1  permission deny : -2
+     */
+    public static int deleteCalendarEvents(Context context, long[] eventIDs) {
+        checkContextNull(context);
+
+        return deleteCalendarEvents(CalendarSession.wrap(context), eventIDs);
+    }
+
+    /**
+     * 在会话中批量删除日历事件
+     *
+     * @return 删除的事件数  failed : -1  permission deny : -2
+     * @see #deleteCalendarEvents(Context, long[])
+     */
+    public static int deleteCalendarEvents(CalendarSession session, long[] eventIDs) {
+        if (!CalendarPermission.canWrite(session.context)) {
+            return -2;
+        }
+        if (0 == eventIDs.length) {
+            return 0;
+        }
+
+        Uri uri = CalendarContract.Events.CONTENT_URI;
+
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        StringBuilder selection = new StringBuilder();
+
+        for (int from = 0; from < eventIDs.length; from += BATCH_QUERY_SIZE) {
+            int to = Math.min(eventIDs.length, from + BATCH_QUERY_SIZE);
+
+            selection.setLength(0);
+            selection.append('(').append(CalendarContract.Events._ID).append(" IN (");
+            String[] selectionArgs = new String[to - from];
+            for (int i = from; i < to; i++) {
+                selectionArgs[i - from] = String.valueOf(eventIDs[i]);
+                selection.append(i == from ? "?" : ",?");
             }
-        } else {
-            deletedCount1 = context.getContentResolver().delete(uri1, selection, selectionArgs);
+            selection.append("))");
+
+            operations.add(ContentProviderOperation.newDelete(uri)
+                    .withSelection(selection.toString(), selectionArgs)
+                    .build());
         }
 
-        // 删除匹配条件
-        String selection2 = "(" + CalendarContract.Reminders.EVENT_ID + " = ?)";
-        String[] selectionArgs2 = new String[]{String.valueOf(eventID)};
+        try {
+            int deletedCount = 0;
+            for (ContentProviderResult result : session.applyBatch(operations)) {
+                deletedCount += getCount(result);
+            }
+            return deletedCount;
+        } catch (RemoteException | OperationApplicationException e) {
+            return -1;
+        } catch (SecurityException e) {
+            CalendarPermission.invalidate();
+            return -2;
+        }
+    }
+
+    /**
+     * 删除指定日历账户下完全处于时间段内的事件
+     * <p>
+     * 只删除开始时间不早于begin且最后一次发生的结束时间不晚于end的事件,没有结束日期的重复事件不会被删除
+     * 事件的提醒由系统日历在删除事件时一并删除
+     *
+     * @param calID 日历账户ID
+     * @param begin 时间段开始时间
+     * @param end   时间段结束时间
+     * @return 删除的事件数  permission deny : -2
+     */
+    public static int deleteCalendarEventsInRange(Context context, long calID, long begin, long end) {
+        checkContextNull(context);
+
+        return deleteCalendarEventsInRange(CalendarSession.wrap(context), calID, begin, end);
+    }
+
+    /**
+     * 在会话中删除指定日历账户下完全处于时间段内的事件
+     *
+     * @return 删除的事件数  permission deny : -2
+     * @see #deleteCalendarEventsInRange(Context, long, long, long)
+     */
+    public static int deleteCalendarEventsInRange(CalendarSession session, long calID, long begin, long end) {
+        Uri uri = CalendarContract.Events.CONTENT_URI;
 
-        int deletedCount2 = context.getContentResolver().delete(uri2, selection2, selectionArgs2);
+        // 删除匹配条件(非重复事件的LAST_DATE即为结束时间)
+        String selection = "((" + CalendarContract.Events.CALENDAR_ID + " = ?) AND ("
+                + CalendarContract.Events.DTSTART + " >= ?) AND ("
+                + CalendarContract.Events.LAST_DATE + " IS NOT NULL) AND ("
+                + CalendarContract.Events.LAST_DATE + " <= ?))";
+        String[] selectionArgs = new String[]{String.valueOf(calID), String.valueOf(begin), String.valueOf(end)};
 
-        return (deletedCount1 + deletedCount2) / 2;
+        if (!CalendarPermission.canWrite(session.context)) {
+            return -2;
+        }
+        try {
+            return session.delete(uri, selection, selectionArgs);
+        } catch (SecurityException e) {
+            CalendarPermission.invalidate();
+            return -2;
+        }
     }
 
 
@@ -589,149 +1117,307 @@ public class CalendarProviderManager {
      * @return If failed return null else return List<CalendarEvent>
      */
     public static List<CalendarEvent> queryAccountEvent(Context context, long calID) {
+        return queryAccountEvent(context, calID, EventField.ALL);
+    }
+
+    /**
+     * 查询指定日历账户下的所有事件,只查询指定的属性
+     *
+     * @param fields 要查询的属性,例:{@link EventField#SUMMARY}
+     * @return If failed return null else return List<CalendarEvent>
+     */
+    public static List<CalendarEvent> queryAccountEvent(Context context, long calID, Set<EventField> fields) {
         checkContextNull(context);
 
-        final String[] EVENT_PROJECTION = new String[]{
-                CalendarContract.Events.CALENDAR_ID,             // 在表中的列索引0
-                CalendarContract.Events.TITLE,                   // 在表中的列索引1
-                CalendarContract.Events.DESCRIPTION,             // 在表中的列索引2
-                CalendarContract.Events.EVENT_LOCATION,          // 在表中的列索引3
-                CalendarContract.Events.DISPLAY_COLOR,           // 在表中的列索引4
-                CalendarContract.Events.STATUS,                  // 在表中的列索引5
-                CalendarContract.Events.DTSTART,                 // 在表中的列索引6
-                CalendarContract.Events.DTEND,                   // 在表中的列索引7
-                CalendarContract.Events.DURATION,                // 在表中的列索引8
-                CalendarContract.Events.EVENT_TIMEZONE,          // 在表中的列索引9
-                CalendarContract.Events.EVENT_END_TIMEZONE,      // 在表中的列索引10
-                CalendarContract.Events.ALL_DAY,                 // 在表中的列索引11
-                CalendarContract.Events.ACCESS_LEVEL,            // 在表中的列索引12
-                CalendarContract.Events.AVAILABILITY,            // 在表中的列索引13
-                CalendarContract.Events.HAS_ALARM,               // 在表中的列索引14
-                CalendarContract.Events.RRULE,                   // 在表中的列索引15
-                CalendarContract.Events.RDATE,                   // 在表中的列索引16
-                CalendarContract.Events.HAS_ATTENDEE_DATA,       // 在表中的列索引17
-                CalendarContract.Events.LAST_DATE,               // 在表中的列索引18
-                CalendarContract.Events.ORGANIZER,               // 在表中的列索引19
-                CalendarContract.Events.IS_ORGANIZER,            // 在表中的列索引20
-                CalendarContract.Events._ID                      // 在表中的列索引21
-        };
+        return queryAccountEvent(CalendarSession.wrap(context), calID, fields);
+    }
+
+    /**
+     * 在会话中查询指定日历账户下的所有事件,只查询指定的属性
+     *
+     * @return If failed return null else return List<CalendarEvent>
+     * @see #queryAccountEvent(Context, long, Set)
+     */
+    public static List<CalendarEvent> queryAccountEvent(CalendarSession session, long calID,
+                                                        Set<EventField> fields) {
+        return queryAccountEvent(session, calID, fields, null);
+    }
+
+    /**
+     * 在会话中查询指定日历账户下的所有事件,只查询指定的属性,并记录查询统计
+     *
+     * @param stats 查询成功后填充读取的事件数以及字符串去重节省的内存,可以为null
+     * @return If failed return null else return List<CalendarEvent>
+     * @see #queryAccountEvent(Context, long, Set)
+     */
+    public static List<CalendarEvent> queryAccountEvent(CalendarSession session, long calID,
+                                                        Set<EventField> fields, QueryStats stats) {
+        // 查询结果
+        List<CalendarEvent> result = new ArrayList<>();
+
+        try (CalendarEventIterator iterator = queryAccountEventIterator(session, calID, fields)) {
+            if (null == iterator) {
+                return null;
+            }
+            while (iterator.hasNext()) {
+                result.add(iterator.next());
+            }
+            if (null != stats) {
+                iterator.recordStats(stats);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * 流式查询指定日历账户下的所有事件
+     * <p>
+     * 事件从Cursor中按需分批读取,可随时停止遍历,适用于事件数量很多的账户
+     * TIP: 使用完毕后必须关闭返回的迭代器(推荐使用try-with-resources)
+     *
+     * @return If failed return null else return {@link CalendarEventIterator}
+     */
+    public static CalendarEventIterator queryAccountEventIterator(Context context, long calID) {
+        return queryAccountEventIterator(context, calID, EventField.ALL);
+    }
+
+    /**
+     * 流式查询指定日历账户下的所有事件,只查询指定的属性
+     * <p>
+     * TIP: 使用完毕后必须关闭返回的迭代器(推荐使用try-with-resources)
+     *
+     * @param fields 要查询的属性,例:{@link EventField#SUMMARY}
+     * @return If failed return null else return {@link CalendarEventIterator}
+     */
+    public static CalendarEventIterator queryAccountEventIterator(Context context, long calID,
+                                                                  Set<EventField> fields) {
+        checkContextNull(context);
 
+        return queryAccountEventIterator(CalendarSession.wrap(context), calID, fields);
+    }
+
+    /**
+     * 在会话中流式查询指定日历账户下的所有事件,只查询指定的属性
+     * <p>
+     * TIP: 返回的迭代器需要在会话关闭前关闭
+     *
+     * @return If failed return null else return {@link CalendarEventIterator}
+     * @see #queryAccountEventIterator(Context, long, Set)
+     */
+    public static CalendarEventIterator queryAccountEventIterator(CalendarSession session, long calID,
+                                                                  Set<EventField> fields) {
         // 事件匹配
         Uri uri = CalendarContract.Events.CONTENT_URI;
-        Uri uri2 = CalendarContract.Reminders.CONTENT_URI;
+        String[] projection = EventField.projection(fields);
 
         String selection = "(" + CalendarContract.Events.CALENDAR_ID + " = ?)";
         String[] selectionArgs = new String[]{String.valueOf(calID)};
 
         Cursor cursor;
 
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-            if (PackageManager.PERMISSION_GRANTED == context.checkSelfPermission(
-                    "android.permission.READ_CALENDAR")) {
-                cursor = context.getContentResolver().query(uri, EVENT_PROJECTION, selection,
-                        selectionArgs, null);
-            } else {
-                return null;
-            }
-        } else {
-            cursor = context.getContentResolver().query(uri, EVENT_PROJECTION, selection,
-                    selectionArgs, null);
+        if (!CalendarPermission.canRead(session.context)) {
+            return null;
+        }
+        try {
+            cursor = session.query(uri, projection, selection, selectionArgs, null);
+        } catch (SecurityException e) {
+            CalendarPermission.invalidate();
+            return null;
         }
 
         if (null == cursor) {
             return null;
         }
 
-        // 查询结果
-        List<CalendarEvent> result = new ArrayList<>();
+        return new CalendarEventIterator(session, cursor, BATCH_QUERY_SIZE,
+                fields.contains(EventField.REMINDERS));
+    }
 
-        // 开始查询数据
-        if (cursor.moveToFirst()) {
-            do {
-                CalendarEvent calendarEvent = new CalendarEvent();
-                result.add(calendarEvent);
-                calendarEvent.setId(cursor.getLong(cursor.getColumnIndex(
-                        CalendarContract.Events._ID)));
-                calendarEvent.setCalID(cursor.getLong(cursor.getColumnIndex(
-                        CalendarContract.Events.CALENDAR_ID)));
-                calendarEvent.setTitle(cursor.getString(cursor.getColumnIndex(
-                        CalendarContract.Events.TITLE)));
-                calendarEvent.setDescription(cursor.getString(cursor.getColumnIndex(
-                        CalendarContract.Events.DESCRIPTION)));
-                calendarEvent.setEventLocation(cursor.getString(cursor.getColumnIndex(
-                        CalendarContract.Events.EVENT_LOCATION)));
-                calendarEvent.setDisplayColor(cursor.getInt(cursor.getColumnIndex(
-                        CalendarContract.Events.DISPLAY_COLOR)));
-                calendarEvent.setStatus(cursor.getInt(cursor.getColumnIndex(
-                        CalendarContract.Events.STATUS)));
-                calendarEvent.setStart(cursor.getLong(cursor.getColumnIndex(
-                        CalendarContract.Events.DTSTART)));
-                calendarEvent.setEnd(cursor.getLong(cursor.getColumnIndex(
-                        CalendarContract.Events.DTEND)));
-                calendarEvent.setDuration(cursor.getString(cursor.getColumnIndex(
-                        CalendarContract.Events.DURATION)));
-                calendarEvent.setEventTimeZone(cursor.getString(cursor.getColumnIndex(
-                        CalendarContract.Events.EVENT_TIMEZONE)));
-                calendarEvent.setEventEndTimeZone(cursor.getString(cursor.getColumnIndex(
-                        CalendarContract.Events.EVENT_END_TIMEZONE)));
-                calendarEvent.setAllDay(cursor.getInt(cursor.getColumnIndex(
-                        CalendarContract.Events.ALL_DAY)));
-                calendarEvent.setAccessLevel(cursor.getInt(cursor.getColumnIndex(
-                        CalendarContract.Events.ACCESS_LEVEL)));
-                calendarEvent.setAvailability(cursor.getInt(cursor.getColumnIndex(
-                        CalendarContract.Events.AVAILABILITY)));
-                calendarEvent.setHasAlarm(cursor.getInt(cursor.getColumnIndex(
-                        CalendarContract.Events.HAS_ALARM)));
-                calendarEvent.setRRule(cursor.getString(cursor.getColumnIndex(
-                        CalendarContract.Events.RRULE)));
-                calendarEvent.setRDate(cursor.getString(cursor.getColumnIndex(
-                        CalendarContract.Events.RDATE)));
-                calendarEvent.setHasAttendeeData(cursor.getInt(cursor.getColumnIndex(
-                        CalendarContract.Events.HAS_ATTENDEE_DATA)));
-                calendarEvent.setLastDate(cursor.getInt(cursor.getColumnIndex(
-                        CalendarContract.Events.LAST_DATE)));
-                calendarEvent.setOrganizer(cursor.getString(cursor.getColumnIndex(
-                        CalendarContract.Events.ORGANIZER)));
-                calendarEvent.setIsOrganizer(cursor.getString(cursor.getColumnIndex(
-                        CalendarContract.Events.IS_ORGANIZER)));
-
-
-                // ----------------------- 开始查询事件提醒 ------------------------------
-                String[] REMINDER_PROJECTION = new String[]{
-                        CalendarContract.Reminders._ID,                     // 在表中的列索引0
-                        CalendarContract.Reminders.EVENT_ID,                // 在表中的列索引1
-                        CalendarContract.Reminders.MINUTES,                 // 在表中的列索引2
-                        CalendarContract.Reminders.METHOD,                  // 在表中的列索引3
-                };
-                String selection2 = "(" + CalendarContract.Reminders.EVENT_ID + " = ?)";
-                String[] selectionArgs2 = new String[]{String.valueOf(calendarEvent.getId())};
-
-                try (Cursor reminderCursor = context.getContentResolver().query(uri2, REMINDER_PROJECTION,
-                        selection2, selectionArgs2, null)) {
-                    if (null != reminderCursor) {
-                        if (reminderCursor.moveToFirst()) {
-                            List<CalendarEvent.EventReminders> reminders = new ArrayList<>();
-                            do {
-                                CalendarEvent.EventReminders reminders1 = new CalendarEvent.EventReminders();
-                                reminders.add(reminders1);
-                                reminders1.setReminderId(reminderCursor.getLong(
-                                        reminderCursor.getColumnIndex(CalendarContract.Reminders._ID)));
-                                reminders1.setReminderEventID(reminderCursor.getLong(
-                                        reminderCursor.getColumnIndex(CalendarContract.Reminders.EVENT_ID)));
-                                reminders1.setReminderMinute(reminderCursor.getInt(
-                                        reminderCursor.getColumnIndex(CalendarContract.Reminders.MINUTES)));
-                                reminders1.setReminderMethod(reminderCursor.getInt(
-                                        reminderCursor.getColumnIndex(CalendarContract.Reminders.METHOD)));
-                            } while (reminderCursor.moveToNext());
-                            calendarEvent.setReminders(reminders);
-                        }
-                    }
-                }
-            } while (cursor.moveToNext());
+    /**
+     * 查询指定日历账户下的所有事件,以列式存储返回
+     * <p>
+     * 事件按开始时间升序排列,不包含事件提醒,适用于需要在内存中长期持有大量事件的场景
+     *
+     * @return If failed return null else return {@link EventTable}
+     */
+    public static EventTable queryAccountEventTable(Context context, long calID) {
+        return queryAccountEventTable(context, calID, EventField.ALL);
+    }
+
+    /**
+     * 查询指定日历账户下的所有事件,只查询指定的属性,以列式存储返回
+     *
+     * @param fields 要查询的属性,例:{@link EventField#SUMMARY}
+     * @return If failed return null else return {@link EventTable}
+     */
+    public static EventTable queryAccountEventTable(Context context, long calID, Set<EventField> fields) {
+        checkContextNull(context);
+
+        return queryAccountEventTable(CalendarSession.wrap(context), calID, fields);
+    }
+
+    /**
+     * 在会话中查询指定日历账户下的所有事件,只查询指定的属性,以列式存储返回
+     *
+     * @return If failed return null else return {@link EventTable}
+     * @see #queryAccountEventTable(Context, long, Set)
+     */
+    public static EventTable queryAccountEventTable(CalendarSession session, long calID,
+                                                    Set<EventField> fields) {
+        Uri uri = CalendarContract.Events.CONTENT_URI;
+        String[] projection = EventField.projection(fields);
+
+        String selection = "(" + CalendarContract.Events.CALENDAR_ID + " = ?)";
+        String[] selectionArgs = new String[]{String.valueOf(calID)};
+        String sortOrder = CalendarContract.Events.DTSTART + " ASC";
+
+        Cursor cursor;
+
+        if (!CalendarPermission.canRead(session.context)) {
+            return null;
+        }
+        try {
+            cursor = session.query(uri, projection, selection, selectionArgs, sortOrder);
+        } catch (SecurityException e) {
+            CalendarPermission.invalidate();
+            return null;
+        }
+
+        if (null == cursor) {
+            return null;
+        }
+
+        try {
+            return EventTable.build(cursor);
+        } finally {
             cursor.close();
         }
+    }
 
-        return result;
+    /**
+     * 延迟读取指定日历账户下的所有事件
+     * <p>
+     * 查询结果复制到{@link EventTable}中后立即关闭Cursor,返回的事件只引用表中的一行,每个属性在第一次调用getter时才读取,
+     * 事件提醒在第一次调用getReminders()时才分批查询,适用于只需要少数属性的大量事件
+     * TIP: 返回的事件只能在一个线程中使用
+     *
+     * @return If failed return null else return List<CalendarEvent>
+     */
+    public static List<CalendarEvent> queryAccountEventLazily(Context context, long calID) {
+        return queryAccountEventLazily(context, calID, EventField.ALL);
+    }
+
+    /**
+     * 延迟读取指定日历账户下的所有事件,只查询指定的属性
+     *
+     * @param fields 要查询的属性,例:{@link EventField#SUMMARY}
+     * @return If failed return null else return List<CalendarEvent>
+     */
+    public static List<CalendarEvent> queryAccountEventLazily(Context context, long calID,
+                                                              Set<EventField> fields) {
+        checkContextNull(context);
+
+        return queryAccountEventLazily(CalendarSession.wrap(context), calID, fields);
+    }
+
+    /**
+     * 在会话中延迟读取指定日历账户下的所有事件,只查询指定的属性
+     * <p>
+     * 事件提醒不通过会话查询,会话关闭后仍然可以读取
+     *
+     * @return If failed return null else return List<CalendarEvent>
+     * @see #queryAccountEventLazily(Context, long, Set)
+     */
+    public static List<CalendarEvent> queryAccountEventLazily(CalendarSession session, long calID,
+                                                              Set<EventField> fields) {
+        Uri uri = CalendarContract.Events.CONTENT_URI;
+        String[] projection = EventField.projection(fields);
+
+        String selection = "(" + CalendarContract.Events.CALENDAR_ID + " = ?)";
+        String[] selectionArgs = new String[]{String.valueOf(calID)};
+
+        Cursor cursor;
+
+        if (!CalendarPermission.canRead(session.context)) {
+            return null;
+        }
+        try {
+            cursor = session.query(uri, projection, selection, selectionArgs, null);
+        } catch (SecurityException e) {
+            CalendarPermission.invalidate();
+            return null;
+        }
+
+        if (null == cursor) {
+            return null;
+        }
+
+        try {
+            return LazyCalendarEvent.wrap(session.context, cursor, fields.contains(EventField.REMINDERS));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * 分批查询事件的提醒并填充到对应事件中
+     * <p>
+     * 每批使用一次 EVENT_ID IN (...) 查询,避免逐个事件查询提醒
+     */
+    static void loadReminders(CalendarSession session, List<CalendarEvent> events) {
+        Uri uri = CalendarContract.Reminders.CONTENT_URI;
+
+        // 事件ID -> 事件
+        LongSparseArray<CalendarEvent> eventMap = new LongSparseArray<>(Math.min(events.size(), BATCH_QUERY_SIZE));
+        StringBuilder selection = new StringBuilder();
+
+        for (int from = 0; from < events.size(); from += BATCH_QUERY_SIZE) {
+            int to = Math.min(events.size(), from + BATCH_QUERY_SIZE);
+
+            eventMap.clear();
+            selection.setLength(0);
+            selection.append('(').append(CalendarContract.Reminders.EVENT_ID).append(" IN (");
+            String[] selectionArgs = new String[to - from];
+            for (int i = from; i < to; i++) {
+                CalendarEvent event = events.get(i);
+                eventMap.put(event.getId(), event);
+                selectionArgs[i - from] = String.valueOf(event.getId());
+                selection.append(i == from ? "?" : ",?");
+            }
+            selection.append("))");
+
+            try (Cursor reminderCursor = session.query(uri, REMINDER_PROJECTION,
+                    selection.toString(), selectionArgs, null)) {
+                if (null == reminderCursor) {
+                    continue;
+                }
+                while (reminderCursor.moveToNext()) {
+                    CalendarEvent.EventReminders reminder = new CalendarEvent.EventReminders();
+                    reminder.setReminderId(reminderCursor.getLong(0));
+                    reminder.setReminderEventID(reminderCursor.getLong(1));
+                    reminder.setReminderMinute(reminderCursor.getInt(2));
+                    reminder.setReminderMethod(reminderCursor.getInt(3));
+
+                    CalendarEvent event = eventMap.get(reminder.getReminderEventID());
+                    if (null == event) {
+                        continue;
+                    }
+                    List<CalendarEvent.EventReminders> reminders = event.getReminders();
+                    if (null == reminders) {
+                        reminders = new ArrayList<>();
+                        event.setReminders(reminders);
+                    }
+                    reminders.add(reminder);
+                }
+                // 查询成功后没有提醒的事件使用空列表,与未查询提醒(null)区分
+                for (int i = from; i < to; i++) {
+                    if (null == events.get(i).getReminders()) {
+                        events.get(i).setReminders(Collections.<CalendarEvent.EventReminders>emptyList());
+                    }
+                }
+            }
+        }
     }
 
     /**
@@ -748,19 +1434,149 @@ public class CalendarProviderManager {
                 CalendarContract.Instances.TITLE
         };
 
-        Cursor cursor = CalendarContract.Instances.query(
-                context.getContentResolver(), projection, begin, end, title);
+        if (!CalendarPermission.canRead(context)) {
+            return false;
+        }
+
+        Cursor cursor;
+        try {
+            cursor = CalendarContract.Instances.query(
+                    context.getContentResolver(), projection, begin, end, title);
+        } catch (SecurityException e) {
+            CalendarPermission.invalidate();
+            return false;
+        }
+
+        if (null == cursor) {
+            return false;
+        }
+        try {
+            return cursor.moveToFirst()
+                    && cursor.getString(
+                    cursor.getColumnIndex(CalendarContract.Instances.TITLE)).equals(title);
+        } finally {
+            cursor.close();
+        }
+    }
+
+
+    /**
+     * 批量判断日历中是否已经存在这些事件(开始时间、结束时间和标题都相同)
+     * <p>
+     * 只查询一次覆盖所有事件的时间段,之后通过{@link EventIntervalIndex}在内存中判断
+     *
+     * @return 与传入顺序一致的判断结果  If failed or permission deny return null
+     */
+    public static boolean[] findExisting(Context context, List<CalendarEvent> calendarEvents) {
+        checkContextNull(context);
+
+        return findExisting(CalendarSession.wrap(context), calendarEvents);
+    }
+
+    /**
+     * 在会话中批量判断日历中是否已经存在这些事件
+     *
+     * @return 与传入顺序一致的判断结果  If failed or permission deny return null
+     * @see #findExisting(Context, List)
+     */
+    public static boolean[] findExisting(CalendarSession session, List<CalendarEvent> calendarEvents) {
+        boolean[] result = new boolean[calendarEvents.size()];
+        if (calendarEvents.isEmpty()) {
+            return result;
+        }
+
+        long begin = Long.MAX_VALUE;
+        long end = Long.MIN_VALUE;
+        for (CalendarEvent calendarEvent : calendarEvents) {
+            begin = Math.min(begin, calendarEvent.getStart());
+            end = Math.max(end, Math.max(calendarEvent.getStart(), calendarEvent.getEnd()));
+        }
+
+        EventIntervalIndex index;
+        try (Cursor cursor = queryInstances(session, null, begin, end, INSTANCE_PROJECTION)) {
+            if (null == cursor) {
+                return null;
+            }
+            index = EventIntervalIndex.build(cursor);
+        }
 
-        return null != cursor && cursor.moveToFirst()
-                && cursor.getString(
-                cursor.getColumnIndex(CalendarContract.Instances.TITLE)).equals(title);
+        for (int i = 0; i < result.length; i++) {
+            CalendarEvent calendarEvent = calendarEvents.get(i);
+            result[i] = index.containsDuplicate(calendarEvent.getStart(), calendarEvent.getEnd(),
+                    calendarEvent.getTitle());
+        }
+        return result;
+    }
+
+    /**
+     * 查询指定时间段内展开后的事件实例(重复事件会展开为多个实例)
+     * <p>
+     * TIP: 返回的Cursor按实例开始时间升序排列,使用完毕后必须关闭
+     *
+     * @param calIDs     要查询的日历账户ID,{@code null}或空数组表示所有账户
+     * @param begin      时间段开始时间
+     * @param end        时间段结束时间
+     * @param projection 要查询的列(CalendarContract.Instances中的列),{@code null}则使用{@link #INSTANCE_PROJECTION}
+     * @return If failed or permission deny return null else return Cursor
+     */
+    public static Cursor queryInstances(Context context, long[] calIDs, long begin, long end,
+                                        String[] projection) {
+        checkContextNull(context);
+
+        return queryInstances(CalendarSession.wrap(context), calIDs, begin, end, projection);
+    }
+
+    /**
+     * 在会话中查询指定时间段内展开后的事件实例
+     * <p>
+     * TIP: 返回的Cursor需要在会话关闭前关闭
+     *
+     * @return If failed or permission deny return null else return Cursor
+     * @see #queryInstances(Context, long[], long, long, String[])
+     */
+    public static Cursor queryInstances(CalendarSession session, long[] calIDs, long begin, long end,
+                                        String[] projection) {
+        Uri.Builder builder = CalendarContract.Instances.CONTENT_URI.buildUpon();
+        ContentUris.appendId(builder, begin);
+        ContentUris.appendId(builder, end);
+        Uri uri = builder.build();
+
+        if (null == projection) {
+            projection = INSTANCE_PROJECTION;
+        }
+
+        String selection = null;
+        String[] selectionArgs = null;
+        if (null != calIDs && calIDs.length > 0) {
+            StringBuilder where = new StringBuilder();
+            where.append('(').append(CalendarContract.Instances.CALENDAR_ID).append(" IN (");
+            selectionArgs = new String[calIDs.length];
+            for (int i = 0; i < calIDs.length; i++) {
+                selectionArgs[i] = String.valueOf(calIDs[i]);
+                where.append(i == 0 ? "?" : ",?");
+            }
+            where.append("))");
+            selection = where.toString();
+        }
+
+        String sortOrder = CalendarContract.Instances.BEGIN + " ASC";
+
+        if (!CalendarPermission.canRead(session.context)) {
+            return null;
+        }
+        try {
+            return session.query(uri, projection, selection, selectionArgs, sortOrder);
+        } catch (SecurityException e) {
+            CalendarPermission.invalidate();
+            return null;
+        }
     }
 
 
     // ------------------------------- 日历事件相关 -----------------------------------
 
     /**
-     * 组装日历事件
+     * 组装日历事件自己的列(不随事件变化的列来自{@link EventValuesTemplate})
      */
     private static void setupEvent(CalendarEvent calendarEvent, ContentValues event) {
         // 事件开始时间
@@ -773,24 +1589,150 @@ public class CalendarProviderManager {
         event.put(CalendarContract.Events.DESCRIPTION, calendarEvent.getDescription());
         // 事件地点
         event.put(CalendarContract.Events.EVENT_LOCATION, calendarEvent.getEventLocation());
-        // 事件时区
-        event.put(CalendarContract.Events.EVENT_TIMEZONE, TimeZone.getDefault().getID());
-        // 定义事件的显示，默认即可
-        event.put(CalendarContract.Events.ACCESS_LEVEL, CalendarContract.Events.ACCESS_DEFAULT);
-        // 事件的状态
-        event.put(CalendarContract.Events.STATUS, 0);
-        // 设置事件提醒警报可用
-        event.put(CalendarContract.Events.HAS_ALARM, 1);
-        // 设置事件忙
-        event.put(CalendarContract.Events.AVAILABILITY, CalendarContract.Events.AVAILABILITY_BUSY);
         if (null != calendarEvent.getRRule()) {
             // 设置事件重复规则
-            event.put(CalendarContract.Events.RRULE,
-                    getFullRRuleForRRule(calendarEvent.getRRule(),
-                            calendarEvent.getStart(), calendarEvent.getEnd()));
+            event.put(CalendarContract.Events.RRULE, checkRRule(calendarEvent));
+        }
+    }
+
+    /**
+     * 组装快照中恢复的事件的所有列
+     * <p>
+     * 重复事件(有RRULE或RDATE)在系统日历中保存持续时间,DTEND必须为空;
+     * 显示颜色与日历账户颜色相同时不写入事件颜色,之后仍跟随日历账户的颜色
+     *
+     * @param calendarColor 日历账户的颜色,null则未知
+     */
+    private static void setupRestoredEvent(long calID, Integer calendarColor, CalendarEvent calendarEvent,
+                                           ContentValues event) {
+        // 事件要插入到的日历账户
+        event.put(CalendarContract.Events.CALENDAR_ID, calID);
+        event.put(CalendarContract.Events.DTSTART, calendarEvent.getStart());
+        event.put(CalendarContract.Events.TITLE, calendarEvent.getTitle());
+        event.put(CalendarContract.Events.DESCRIPTION, calendarEvent.getDescription());
+        event.put(CalendarContract.Events.EVENT_LOCATION, calendarEvent.getEventLocation());
+        event.put(CalendarContract.Events.ORGANIZER, calendarEvent.getOrganizer());
+        // 全天事件的时区为UTC,开始和结束时间为UTC的零点,快照中的值取自系统日历,原样写入
+        event.put(CalendarContract.Events.ALL_DAY, calendarEvent.getAllDay());
+        event.put(CalendarContract.Events.EVENT_TIMEZONE, null != calendarEvent.getEventTimeZone()
+                ? calendarEvent.getEventTimeZone() : Util.getTimeZoneID());
+        event.put(CalendarContract.Events.EVENT_END_TIMEZONE, calendarEvent.getEventEndTimeZone());
+        event.put(CalendarContract.Events.STATUS, calendarEvent.getStatus());
+        event.put(CalendarContract.Events.ACCESS_LEVEL, calendarEvent.getAccessLevel());
+        event.put(CalendarContract.Events.AVAILABILITY, calendarEvent.getAvailability());
+        event.put(CalendarContract.Events.HAS_ALARM, calendarEvent.getReminderValues().length > 0 ? 1 : 0);
+        if (null == calendarColor || calendarColor != calendarEvent.getDisplayColor()) {
+            event.put(CalendarContract.Events.EVENT_COLOR, calendarEvent.getDisplayColor());
+        }
+
+        if (null != calendarEvent.getRRule() || null != calendarEvent.getRDate()) {
+            event.put(CalendarContract.Events.RRULE, calendarEvent.getRRule());
+            event.put(CalendarContract.Events.RDATE, calendarEvent.getRDate());
+            String duration = calendarEvent.getDuration();
+            if (null == duration) {
+                duration = "P" + Math.max(0, calendarEvent.getEnd() - calendarEvent.getStart()) / 1000 + "S";
+            }
+            event.put(CalendarContract.Events.DURATION, duration);
+        } else {
+            event.put(CalendarContract.Events.DTEND, calendarEvent.getEnd());
         }
     }
 
+    /**
+     * 查询日历账户的颜色
+     *
+     * @return If failed return null
+     */
+    private static Integer queryCalendarColor(CalendarSession session, long calID) {
+        try (Cursor cursor = session.query(
+                ContentUris.withAppendedId(CalendarContract.Calendars.CONTENT_URI, calID),
+                new String[]{CalendarContract.Calendars.CALENDAR_COLOR}, null, null, null)) {
+            if (null != cursor && cursor.moveToFirst() && !cursor.isNull(0)) {
+                return cursor.getInt(0);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * 组装与旧事件相比发生变化的列(对应{@link #setupEvent}和{@link EventValuesTemplate}写入的列)
+     * <p>
+     * 旧事件查询时未包含的列(值未知)既不比较也不写入
+     */
+    private static void diffEvent(CalendarEvent oldEvent, CalendarEvent newEvent, ContentValues event) {
+        if (oldEvent.isLoaded(EventField.START) && oldEvent.getStart() != newEvent.getStart()) {
+            event.put(CalendarContract.Events.DTSTART, newEvent.getStart());
+        }
+        if (oldEvent.isLoaded(EventField.END) && oldEvent.getEnd() != newEvent.getEnd()) {
+            event.put(CalendarContract.Events.DTEND, newEvent.getEnd());
+        }
+        if (oldEvent.isLoaded(EventField.TITLE) && !TextUtils.equals(oldEvent.getTitle(), newEvent.getTitle())) {
+            event.put(CalendarContract.Events.TITLE, newEvent.getTitle());
+        }
+        if (oldEvent.isLoaded(EventField.DESCRIPTION)
+                && !TextUtils.equals(oldEvent.getDescription(), newEvent.getDescription())) {
+            event.put(CalendarContract.Events.DESCRIPTION, newEvent.getDescription());
+        }
+        if (oldEvent.isLoaded(EventField.EVENT_LOCATION)
+                && !TextUtils.equals(oldEvent.getEventLocation(), newEvent.getEventLocation())) {
+            event.put(CalendarContract.Events.EVENT_LOCATION, newEvent.getEventLocation());
+        }
+        String timeZone = Util.getTimeZoneID();
+        if (oldEvent.isLoaded(EventField.EVENT_TIMEZONE) && !timeZone.equals(oldEvent.getEventTimeZone())) {
+            event.put(CalendarContract.Events.EVENT_TIMEZONE, timeZone);
+        }
+        if (oldEvent.isLoaded(EventField.ACCESS_LEVEL)
+                && oldEvent.getAccessLevel() != CalendarContract.Events.ACCESS_DEFAULT) {
+            event.put(CalendarContract.Events.ACCESS_LEVEL, CalendarContract.Events.ACCESS_DEFAULT);
+        }
+        if (oldEvent.isLoaded(EventField.STATUS) && oldEvent.getStatus() != 0) {
+            event.put(CalendarContract.Events.STATUS, 0);
+        }
+        if (oldEvent.isLoaded(EventField.HAS_ALARM) && oldEvent.getHasAlarm() != 1) {
+            event.put(CalendarContract.Events.HAS_ALARM, 1);
+        }
+        if (oldEvent.isLoaded(EventField.AVAILABILITY)
+                && oldEvent.getAvailability() != CalendarContract.Events.AVAILABILITY_BUSY) {
+            event.put(CalendarContract.Events.AVAILABILITY, CalendarContract.Events.AVAILABILITY_BUSY);
+        }
+        if (oldEvent.isLoaded(EventField.RRULE) && null != newEvent.getRRule()) {
+            String rRule = checkRRule(newEvent);
+            if (!rRule.equals(oldEvent.getRRule())) {
+                event.put(CalendarContract.Events.RRULE, rRule);
+            }
+        }
+    }
+
+    /**
+     * 旧事件的提醒是否与新的提醒相同(不考虑顺序)
+     */
+    private static boolean isSameReminders(List<CalendarEvent.EventReminders> existing, int[] reminders) {
+        if (existing.size() * 2 != reminders.length) {
+            return false;
+        }
+        boolean[] kept = new boolean[existing.size()];
+        for (int i = 0; i < reminders.length; i += 2) {
+            int match = indexOfReminder(existing, kept, reminders[i], reminders[i + 1]);
+            if (match < 0) {
+                return false;
+            }
+            kept[match] = true;
+        }
+        return true;
+    }
+
+    /**
+     * 获取事件完整的重复规则并检查其格式
+     *
+     * @throws IllegalArgumentException 重复规则格式错误
+     */
+    private static String checkRRule(CalendarEvent calendarEvent) {
+        String rRule = getFullRRuleForRRule(calendarEvent.getRRule(),
+                calendarEvent.getStart(), calendarEvent.getEnd());
+        RRule.compile(rRule);
+        return rRule;
+    }
+
     /**
      * 获取完整的重复规则(包含终止时间)
      *
@@ -798,9 +1740,8 @@ public class CalendarProviderManager {
      * @param beginTime 开始时间
      * @param endTime   结束时间
      */
-    private static String getFullRRuleForRRule(String rRule, long beginTime, long endTime) {
-        builder.delete(0, builder.length());
-
+    static String getFullRRuleForRRule(String rRule, long beginTime, long endTime) {
+        // 每次调用只使用局部变量,可在多个线程中同时调用
         switch (rRule) {
             case RRuleConstant.REPEAT_WEEKLY_BY_MO:
             case RRuleConstant.REPEAT_WEEKLY_BY_TU:
@@ -809,13 +1750,15 @@ public class CalendarProviderManager {
             case RRuleConstant.REPEAT_WEEKLY_BY_FR:
             case RRuleConstant.REPEAT_WEEKLY_BY_SA:
             case RRuleConstant.REPEAT_WEEKLY_BY_SU:
-                return builder.append(rRule).append(Util.getFinalRRuleMode(endTime)).toString();
+                return rRule.concat(Util.getFinalRRuleMode(endTime));
             case RRuleConstant.REPEAT_CYCLE_WEEKLY:
-                return builder.append(rRule).append(Util.getWeekForDate(beginTime)).append("; UNTIL = ")
+                return new StringBuilder(rRule.length() + RRULE_UNTIL_SUFFIX_LENGTH)
+                        .append(rRule).append(Util.getWeekForDate(beginTime)).append(RRULE_UNTIL)
                         .append(Util.getFinalRRuleMode(endTime)).toString();
             case RRuleConstant.REPEAT_CYCLE_MONTHLY:
-                return builder.append(rRule).append(Util.getDayOfMonth(beginTime))
-                        .append("; UNTIL = ").append(Util.getFinalRRuleMode(endTime)).toString();
+                return new StringBuilder(rRule.length() + RRULE_UNTIL_SUFFIX_LENGTH)
+                        .append(rRule).append(Util.getDayOfMonth(beginTime)).append(RRULE_UNTIL)
+                        .append(Util.getFinalRRuleMode(endTime)).toString();
             default:
                 return rRule;
         }
@@ -863,7 +1806,7 @@ public class CalendarProviderManager {
     public static void startCalendarForIntentToInsert(Context context, long beginTime, long endTime,
                                                       String title, String des, String location,
                                                       boolean isAllDay) {
-        checkCalendarAccount(context);
+        checkCalendarAccount(CalendarSession.wrap(context));
 
 
         // FIXME: 2019/3/6 VIVO手机无法打开界面，找不到对应的Activity  com.bbk.calendar
@@ -888,7 +1831,7 @@ public class CalendarProviderManager {
      * @param eventID 要编辑的事件ID
      */
     public static void startCalendarForIntentToEdit(Context context, long eventID) {
-        checkCalendarAccount(context);
+        checkCalendarAccount(CalendarSession.wrap(context));
 
         Uri uri = ContentUris.withAppendedId(CalendarContract.Events.CONTENT_URI, eventID);
         Intent intent = new Intent(Intent.ACTION_EDIT).setData(uri);
@@ -904,7 +1847,7 @@ public class CalendarProviderManager {
      * @param eventID 要查看的事件ID
      */
     public static void startCalendarForIntentToView(Context context, long eventID) {
-        checkCalendarAccount(context);
+        checkCalendarAccount(CalendarSession.wrap(context));
 
         Uri uri = ContentUris.withAppendedId(CalendarContract.Events.CONTENT_URI, eventID);
         Intent intent = new Intent(Intent.ACTION_VIEW).setData(uri);
@@ -0,0 +1,178 @@
+package com.kyle.calendarprovider.calendar;
+
+import android.content.ContentProviderClient;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.OperationApplicationException;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Build;
+import android.os.DeadObjectException;
+import android.os.RemoteException;
+import android.provider.CalendarContract;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+
+import static com.kyle.calendarprovider.Util.checkContextNull;
+
+/**
+ * 日历操作会话
+ * <p>
+ * 会话只获取一次系统日历的ContentProviderClient,之后会话中的所有查询、插入、更新和删除都通过它完成,
+ * 避免大量连续操作时每次都重新查找系统日历提供者
+ * 会话中的操作通过{@link CalendarProviderManager}中以CalendarSession为参数的方法进行
+ * <p>
+ * TIP: 使用完毕后必须调用{@link #close()}(推荐使用try-with-resources),
+ * 会话不是线程安全的,关闭后不能再使用,通过会话查询得到的Cursor和迭代器需要在会话关闭前关闭
+ */
+public final class CalendarSession implements Closeable {
+
+    final Context context;
+    private final ContentResolver resolver;
+    /**
+     * 是否使用ContentProviderClient,为false时直接使用ContentResolver
+     */
+    private final boolean pooled;
+    private ContentProviderClient client;
+    private boolean closed;
+
+    private CalendarSession(Context context, boolean pooled) {
+        this.context = context;
+        this.resolver = context.getContentResolver();
+        this.pooled = pooled;
+    }
+
+    /**
+     * 开启一个会话
+     */
+    public static CalendarSession open(Context context) {
+        checkContextNull(context);
+        return new CalendarSession(context, true);
+    }
+
+    /**
+     * 单次操作使用的会话,直接使用ContentResolver,不需要关闭
+     */
+    static CalendarSession wrap(Context context) {
+        return new CalendarSession(context, false);
+    }
+
+    /**
+     * 获取会话的ContentProviderClient,无法获取时返回null(此时使用ContentResolver)
+     */
+    private ContentProviderClient client() {
+        if (closed) {
+            throw new IllegalStateException("CalendarSession is closed");
+        }
+        if (pooled && null == client) {
+            // 系统日历进程结束时不会连带结束本进程,之后的操作抛出DeadObjectException并重新获取
+            client = resolver.acquireUnstableContentProviderClient(CalendarContract.AUTHORITY);
+        }
+        return client;
+    }
+
+    /**
+     * 日历提供者进程已经结束,释放当前的ContentProviderClient,下次操作时重新获取
+     */
+    @SuppressWarnings("deprecation")
+    private void releaseClient() {
+        if (null != client) {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+                client.close();
+            } else {
+                // close()在API 24才加入,minSdk为21,低版本只能使用release()
+                client.release();
+            }
+            client = null;
+        }
+    }
+
+    Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs, String sortOrder) {
+        ContentProviderClient client = client();
+        if (null != client) {
+            try {
+                return client.query(uri, projection, selection, selectionArgs, sortOrder);
+            } catch (DeadObjectException e) {
+                releaseClient();
+            } catch (RemoteException e) {
+                return null;
+            }
+        }
+        return resolver.query(uri, projection, selection, selectionArgs, sortOrder);
+    }
+
+    Uri insert(Uri uri, ContentValues values) {
+        ContentProviderClient client = client();
+        if (null != client) {
+            try {
+                return client.insert(uri, values);
+            } catch (DeadObjectException e) {
+                releaseClient();
+            } catch (RemoteException e) {
+                return null;
+            }
+        }
+        return resolver.insert(uri, values);
+    }
+
+    int update(Uri uri, ContentValues values, String selection, String[] selectionArgs) {
+        ContentProviderClient client = client();
+        if (null != client) {
+            try {
+                return client.update(uri, values, selection, selectionArgs);
+            } catch (DeadObjectException e) {
+                releaseClient();
+            } catch (RemoteException e) {
+                return -1;
+            }
+        }
+        return resolver.update(uri, values, selection, selectionArgs);
+    }
+
+    int delete(Uri uri, String selection, String[] selectionArgs) {
+        ContentProviderClient client = client();
+        if (null != client) {
+            try {
+                return client.delete(uri, selection, selectionArgs);
+            } catch (DeadObjectException e) {
+                releaseClient();
+            } catch (RemoteException e) {
+                return -1;
+            }
+        }
+        return resolver.delete(uri, selection, selectionArgs);
+    }
+
+    /**
+     * 批量操作不会自动重试(批量操作可能已经部分完成)
+     */
+    ContentProviderResult[] applyBatch(ArrayList<ContentProviderOperation> operations)
+            throws RemoteException, OperationApplicationException {
+        ContentProviderClient client = client();
+        if (null == client) {
+            return resolver.applyBatch(CalendarContract.AUTHORITY, operations);
+        }
+        try {
+            return client.applyBatch(operations);
+        } catch (DeadObjectException e) {
+            releaseClient();
+            throw e;
+        }
+    }
+
+    /**
+     * 释放会话的ContentProviderClient,可重复调用
+     */
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            releaseClient();
+        }
+    }
+
+}
@@ -0,0 +1,93 @@
+package com.kyle.calendarprovider.calendar;
+
+import android.provider.CalendarContract;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * 查询日历事件时可选择的属性
+ * <p>
+ * 查询时只有选择的属性对应的列会被查询和组装,未选择的属性保持默认值
+ * 事件ID总是会被查询
+ *
+ * @see CalendarProviderManager#queryAccountEvent(android.content.Context, long, Set)
+ */
+public enum EventField {
+
+    ID(CalendarContract.Events._ID),
+    CALENDAR_ID(CalendarContract.Events.CALENDAR_ID),
+    TITLE(CalendarContract.Events.TITLE),
+    DESCRIPTION(CalendarContract.Events.DESCRIPTION),
+    EVENT_LOCATION(CalendarContract.Events.EVENT_LOCATION),
+    DISPLAY_COLOR(CalendarContract.Events.DISPLAY_COLOR),
+    STATUS(CalendarContract.Events.STATUS),
+    START(CalendarContract.Events.DTSTART),
+    END(CalendarContract.Events.DTEND),
+    DURATION(CalendarContract.Events.DURATION),
+    EVENT_TIMEZONE(CalendarContract.Events.EVENT_TIMEZONE),
+    EVENT_END_TIMEZONE(CalendarContract.Events.EVENT_END_TIMEZONE),
+    ALL_DAY(CalendarContract.Events.ALL_DAY),
+    ACCESS_LEVEL(CalendarContract.Events.ACCESS_LEVEL),
+    AVAILABILITY(CalendarContract.Events.AVAILABILITY),
+    HAS_ALARM(CalendarContract.Events.HAS_ALARM),
+    RRULE(CalendarContract.Events.RRULE),
+    RDATE(CalendarContract.Events.RDATE),
+    HAS_ATTENDEE_DATA(CalendarContract.Events.HAS_ATTENDEE_DATA),
+    LAST_DATE(CalendarContract.Events.LAST_DATE),
+    ORGANIZER(CalendarContract.Events.ORGANIZER),
+    IS_ORGANIZER(CalendarContract.Events.IS_ORGANIZER),
+    /**
+     * 事件提醒(通过额外的批量查询获取)
+     */
+    REMINDERS(null);
+
+    /**
+     * 所有属性
+     */
+    public static final Set<EventField> ALL = Collections.unmodifiableSet(EnumSet.allOf(EventField.class));
+
+    /**
+     * 列表显示常用的属性
+     */
+    public static final Set<EventField> SUMMARY = Collections.unmodifiableSet(EnumSet.of(ID, TITLE, START, END));
+
+    private final String column;
+
+    EventField(String column) {
+        this.column = column;
+    }
+
+    /**
+     * @return 对应的列名,{@link #REMINDERS}为null
+     */
+    public String getColumn() {
+        return column;
+    }
+
+    /**
+     * 组装选择的属性对应的查询列(总是包含事件ID)
+     */
+    static String[] projection(Set<EventField> fields) {
+        if (fields.containsAll(ALL)) {
+            return EventRowMapper.EVENT_PROJECTION;
+        }
+        int count = 1;
+        for (EventField field : fields) {
+            if (null != field.column && field != ID) {
+                count++;
+            }
+        }
+        String[] projection = new String[count];
+        projection[0] = ID.column;
+        int index = 1;
+        for (EventField field : fields) {
+            if (null != field.column && field != ID) {
+                projection[index++] = field.column;
+            }
+        }
+        return projection;
+    }
+
+}
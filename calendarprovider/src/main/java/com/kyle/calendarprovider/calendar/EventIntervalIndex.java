@@ -0,0 +1,215 @@
+package com.kyle.calendarprovider.calendar;
+
+import android.database.Cursor;
+import android.provider.CalendarContract;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * 事件时间段索引
+ * <p>
+ * 一次性从事件实例查询结果中建立,之后在内存中查询重叠的事件和重复的事件
+ * 实例按开始时间排序存放在数组中,并以隐式平衡二叉树的形式记录每棵子树的最大结束时间,
+ * 查询复杂度为O(log n + k)
+ *
+ * @see CalendarProviderManager#queryInstances
+ */
+public final class EventIntervalIndex {
+
+    private final int size;
+    private final long[] begins;
+    private final long[] ends;
+    private final long[] eventIDs;
+    private final String[] titles;
+    /**
+     * 以mid = (lo + hi) / 2为根的子树[lo, hi]中的最大结束时间
+     */
+    private final long[] maxEnds;
+
+    private EventIntervalIndex(int size, long[] begins, long[] ends, long[] eventIDs, String[] titles) {
+        this.size = size;
+        this.begins = begins;
+        this.ends = ends;
+        this.eventIDs = eventIDs;
+        this.titles = titles;
+        this.maxEnds = new long[size];
+        buildMaxEnds(0, size - 1);
+    }
+
+    /**
+     * 从事件实例查询结果中建立索引
+     * <p>
+     * Cursor中需要包含{@link CalendarContract.Instances#BEGIN}、{@link CalendarContract.Instances#END},
+     * 可选包含{@link CalendarContract.Instances#EVENT_ID}、{@link CalendarContract.Instances#TITLE}
+     * 此方法不会关闭Cursor
+     */
+    public static EventIntervalIndex build(Cursor cursor) {
+        int beginIndex = cursor.getColumnIndexOrThrow(CalendarContract.Instances.BEGIN);
+        int endIndex = cursor.getColumnIndexOrThrow(CalendarContract.Instances.END);
+        int eventIDIndex = cursor.getColumnIndex(CalendarContract.Instances.EVENT_ID);
+        int titleIndex = cursor.getColumnIndex(CalendarContract.Instances.TITLE);
+
+        int count = Math.max(0, cursor.getCount());
+        long[] begins = new long[count];
+        long[] ends = new long[count];
+        long[] eventIDs = new long[count];
+        String[] titles = new String[count];
+
+        int size = 0;
+        cursor.moveToPosition(-1);
+        while (cursor.moveToNext() && size < count) {
+            begins[size] = cursor.getLong(beginIndex);
+            ends[size] = cursor.getLong(endIndex);
+            eventIDs[size] = eventIDIndex >= 0 ? cursor.getLong(eventIDIndex) : -1;
+            titles[size] = titleIndex >= 0 ? cursor.getString(titleIndex) : null;
+            size++;
+        }
+        return build(size, begins, ends, eventIDs, titles);
+    }
+
+    /**
+     * 从事件实例的数组中建立索引,数组会被排序并由索引持有
+     *
+     * @param size 前size个元素为有效的事件实例
+     */
+    static EventIntervalIndex build(int size, long[] begins, long[] ends, long[] eventIDs, String[] titles) {
+        sort(size, begins, ends, eventIDs, titles);
+        return new EventIntervalIndex(size, begins, ends, eventIDs, titles);
+    }
+
+    /**
+     * 按开始时间排序(查询结果通常已经有序,此时不需要额外开销)
+     */
+    private static void sort(int size, long[] begins, long[] ends, long[] eventIDs, String[] titles) {
+        boolean sorted = true;
+        for (int i = 1; i < size && sorted; i++) {
+            sorted = begins[i - 1] <= begins[i];
+        }
+        if (sorted) {
+            return;
+        }
+
+        // 按开始时间对下标排序,然后重新排列各数组
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        final long[] keys = begins.clone();
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return keys[a] < keys[b] ? -1 : (keys[a] == keys[b] ? 0 : 1);
+            }
+        });
+        long[] endsCopy = ends.clone();
+        long[] eventIDsCopy = eventIDs.clone();
+        String[] titlesCopy = titles.clone();
+        for (int i = 0; i < size; i++) {
+            int from = order[i];
+            begins[i] = keys[from];
+            ends[i] = endsCopy[from];
+            eventIDs[i] = eventIDsCopy[from];
+            titles[i] = titlesCopy[from];
+        }
+    }
+
+    private long buildMaxEnds(int lo, int hi) {
+        if (lo > hi) {
+            return Long.MIN_VALUE;
+        }
+        int mid = (lo + hi) >>> 1;
+        long max = Math.max(ends[mid], Math.max(buildMaxEnds(lo, mid - 1), buildMaxEnds(mid + 1, hi)));
+        maxEnds[mid] = max;
+        return max;
+    }
+
+    /**
+     * @return 索引中的事件实例数
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 是否存在开始时间、结束时间和标题都相同的事件实例
+     */
+    public boolean containsDuplicate(long begin, long end, String title) {
+        // 找到第一个开始时间 >= begin 的实例
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (begins[mid] < begin) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        for (int i = lo; i < size && begins[i] == begin; i++) {
+            if (ends[i] == end && (null == title ? null == titles[i] : title.equals(titles[i]))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 查询与时间段[begin, end)重叠的事件实例
+     *
+     * @return 重叠的事件实例的事件ID,按实例开始时间排序
+     */
+    public long[] findOverlapping(long begin, long end) {
+        Result result = new Result();
+        collectOverlapping(0, size - 1, begin, end, result);
+        return Arrays.copyOf(result.eventIDs, result.count);
+    }
+
+    /**
+     * 是否存在与时间段[begin, end)重叠的事件实例
+     */
+    public boolean hasOverlapping(long begin, long end) {
+        Result result = new Result();
+        result.limit = 1;
+        collectOverlapping(0, size - 1, begin, end, result);
+        return result.count > 0;
+    }
+
+    private void collectOverlapping(int lo, int hi, long begin, long end, Result result) {
+        while (lo <= hi && result.count < result.limit) {
+            int mid = (lo + hi) >>> 1;
+            // 子树中所有实例都在begin之前结束
+            if (maxEnds[mid] <= begin) {
+                return;
+            }
+            collectOverlapping(lo, mid - 1, begin, end, result);
+            // 右侧实例都在end之后开始
+            if (begins[mid] >= end) {
+                return;
+            }
+            if (ends[mid] > begin && result.count < result.limit) {
+                result.add(eventIDs[mid]);
+            }
+            lo = mid + 1;
+        }
+    }
+
+    /**
+     * 查询结果
+     */
+    private static class Result {
+
+        long[] eventIDs = new long[8];
+        int count;
+        int limit = Integer.MAX_VALUE;
+
+        void add(long eventID) {
+            if (count == eventIDs.length) {
+                eventIDs = Arrays.copyOf(eventIDs, count * 2);
+            }
+            eventIDs[count++] = eventID;
+        }
+
+    }
+
+}
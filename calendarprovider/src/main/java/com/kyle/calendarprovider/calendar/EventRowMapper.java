@@ -0,0 +1,196 @@
+package com.kyle.calendarprovider.calendar;
+
+import android.database.Cursor;
+import android.provider.CalendarContract;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * 日历事件行映射
+ * <p>
+ * 每个Cursor只解析一次列索引,之后按索引直接读取每一行并组装{@link CalendarEvent}
+ * 查询结果中不存在的列(索引为-1)会被跳过,对应属性保持默认值
+ * 取值重复度高的列(地点、时区、组织者)通过{@link StringPool}去重
+ */
+class EventRowMapper {
+
+    /**
+     * 事件查询的完整列
+     */
+    static final String[] EVENT_PROJECTION = new String[]{
+            CalendarContract.Events.CALENDAR_ID,             // 在表中的列索引0
+            CalendarContract.Events.TITLE,                   // 在表中的列索引1
+            CalendarContract.Events.DESCRIPTION,             // 在表中的列索引2
+            CalendarContract.Events.EVENT_LOCATION,          // 在表中的列索引3
+            CalendarContract.Events.DISPLAY_COLOR,           // 在表中的列索引4
+            CalendarContract.Events.STATUS,                  // 在表中的列索引5
+            CalendarContract.Events.DTSTART,                 // 在表中的列索引6
+            CalendarContract.Events.DTEND,                   // 在表中的列索引7
+            CalendarContract.Events.DURATION,                // 在表中的列索引8
+            CalendarContract.Events.EVENT_TIMEZONE,          // 在表中的列索引9
+            CalendarContract.Events.EVENT_END_TIMEZONE,      // 在表中的列索引10
+            CalendarContract.Events.ALL_DAY,                 // 在表中的列索引11
+            CalendarContract.Events.ACCESS_LEVEL,            // 在表中的列索引12
+            CalendarContract.Events.AVAILABILITY,            // 在表中的列索引13
+            CalendarContract.Events.HAS_ALARM,               // 在表中的列索引14
+            CalendarContract.Events.RRULE,                   // 在表中的列索引15
+            CalendarContract.Events.RDATE,                   // 在表中的列索引16
+            CalendarContract.Events.HAS_ATTENDEE_DATA,       // 在表中的列索引17
+            CalendarContract.Events.LAST_DATE,               // 在表中的列索引18
+            CalendarContract.Events.ORGANIZER,               // 在表中的列索引19
+            CalendarContract.Events.IS_ORGANIZER,            // 在表中的列索引20
+            CalendarContract.Events._ID                      // 在表中的列索引21
+    };
+
+    // ----------------------- 各列的索引,不存在时为-1 -----------------------
+    final int idIndex;
+    final int calIDIndex;
+    final int titleIndex;
+    final int descriptionIndex;
+    final int eventLocationIndex;
+    final int displayColorIndex;
+    final int statusIndex;
+    final int startIndex;
+    final int endIndex;
+    final int durationIndex;
+    final int eventTimeZoneIndex;
+    final int eventEndTimeZoneIndex;
+    final int allDayIndex;
+    final int accessLevelIndex;
+    final int availabilityIndex;
+    final int hasAlarmIndex;
+    final int rRuleIndex;
+    final int rDateIndex;
+    final int hasAttendeeDataIndex;
+    final int lastDateIndex;
+    final int organizerIndex;
+    final int isOrganizerIndex;
+
+    /**
+     * 查询结果中包含的属性,组装的每个事件共用
+     */
+    final Set<EventField> fields;
+
+    private final StringPool pool = new StringPool();
+
+    /**
+     * 解析Cursor中各列的索引
+     */
+    EventRowMapper(Cursor cursor) {
+        idIndex = cursor.getColumnIndex(CalendarContract.Events._ID);
+        calIDIndex = cursor.getColumnIndex(CalendarContract.Events.CALENDAR_ID);
+        titleIndex = cursor.getColumnIndex(CalendarContract.Events.TITLE);
+        descriptionIndex = cursor.getColumnIndex(CalendarContract.Events.DESCRIPTION);
+        eventLocationIndex = cursor.getColumnIndex(CalendarContract.Events.EVENT_LOCATION);
+        displayColorIndex = cursor.getColumnIndex(CalendarContract.Events.DISPLAY_COLOR);
+        statusIndex = cursor.getColumnIndex(CalendarContract.Events.STATUS);
+        startIndex = cursor.getColumnIndex(CalendarContract.Events.DTSTART);
+        endIndex = cursor.getColumnIndex(CalendarContract.Events.DTEND);
+        durationIndex = cursor.getColumnIndex(CalendarContract.Events.DURATION);
+        eventTimeZoneIndex = cursor.getColumnIndex(CalendarContract.Events.EVENT_TIMEZONE);
+        eventEndTimeZoneIndex = cursor.getColumnIndex(CalendarContract.Events.EVENT_END_TIMEZONE);
+        allDayIndex = cursor.getColumnIndex(CalendarContract.Events.ALL_DAY);
+        accessLevelIndex = cursor.getColumnIndex(CalendarContract.Events.ACCESS_LEVEL);
+        availabilityIndex = cursor.getColumnIndex(CalendarContract.Events.AVAILABILITY);
+        hasAlarmIndex = cursor.getColumnIndex(CalendarContract.Events.HAS_ALARM);
+        rRuleIndex = cursor.getColumnIndex(CalendarContract.Events.RRULE);
+        rDateIndex = cursor.getColumnIndex(CalendarContract.Events.RDATE);
+        hasAttendeeDataIndex = cursor.getColumnIndex(CalendarContract.Events.HAS_ATTENDEE_DATA);
+        lastDateIndex = cursor.getColumnIndex(CalendarContract.Events.LAST_DATE);
+        organizerIndex = cursor.getColumnIndex(CalendarContract.Events.ORGANIZER);
+        isOrganizerIndex = cursor.getColumnIndex(CalendarContract.Events.IS_ORGANIZER);
+
+        EnumSet<EventField> fields = EnumSet.noneOf(EventField.class);
+        for (EventField field : EventField.values()) {
+            if (null != field.getColumn() && cursor.getColumnIndex(field.getColumn()) >= 0) {
+                fields.add(field);
+            }
+        }
+        this.fields = Collections.unmodifiableSet(fields);
+    }
+
+    /**
+     * 将Cursor当前行组装为日历事件
+     */
+    CalendarEvent map(Cursor cursor) {
+        CalendarEvent calendarEvent = new CalendarEvent();
+        calendarEvent.setLoadedFields(fields);
+        if (idIndex >= 0) {
+            calendarEvent.setId(cursor.getLong(idIndex));
+        }
+        if (calIDIndex >= 0) {
+            calendarEvent.setCalID(cursor.getLong(calIDIndex));
+        }
+        if (titleIndex >= 0) {
+            calendarEvent.setTitle(cursor.getString(titleIndex));
+        }
+        if (descriptionIndex >= 0) {
+            calendarEvent.setDescription(cursor.getString(descriptionIndex));
+        }
+        if (eventLocationIndex >= 0) {
+            calendarEvent.setEventLocation(pool.intern(cursor.getString(eventLocationIndex)));
+        }
+        if (displayColorIndex >= 0) {
+            calendarEvent.setDisplayColor(cursor.getInt(displayColorIndex));
+        }
+        if (statusIndex >= 0) {
+            calendarEvent.setStatus(cursor.getInt(statusIndex));
+        }
+        if (startIndex >= 0) {
+            calendarEvent.setStart(cursor.getLong(startIndex));
+        }
+        if (endIndex >= 0) {
+            calendarEvent.setEnd(cursor.getLong(endIndex));
+        }
+        if (durationIndex >= 0) {
+            calendarEvent.setDuration(cursor.getString(durationIndex));
+        }
+        if (eventTimeZoneIndex >= 0) {
+            calendarEvent.setEventTimeZone(pool.intern(cursor.getString(eventTimeZoneIndex)));
+        }
+        if (eventEndTimeZoneIndex >= 0) {
+            calendarEvent.setEventEndTimeZone(pool.intern(cursor.getString(eventEndTimeZoneIndex)));
+        }
+        if (allDayIndex >= 0) {
+            calendarEvent.setAllDay(cursor.getInt(allDayIndex));
+        }
+        if (accessLevelIndex >= 0) {
+            calendarEvent.setAccessLevel(cursor.getInt(accessLevelIndex));
+        }
+        if (availabilityIndex >= 0) {
+            calendarEvent.setAvailability(cursor.getInt(availabilityIndex));
+        }
+        if (hasAlarmIndex >= 0) {
+            calendarEvent.setHasAlarm(cursor.getInt(hasAlarmIndex));
+        }
+        if (rRuleIndex >= 0) {
+            calendarEvent.setRRule(cursor.getString(rRuleIndex));
+        }
+        if (rDateIndex >= 0) {
+            calendarEvent.setRDate(cursor.getString(rDateIndex));
+        }
+        if (hasAttendeeDataIndex >= 0) {
+            calendarEvent.setHasAttendeeData(cursor.getInt(hasAttendeeDataIndex));
+        }
+        if (lastDateIndex >= 0) {
+            calendarEvent.setLastDate(cursor.getInt(lastDateIndex));
+        }
+        if (organizerIndex >= 0) {
+            calendarEvent.setOrganizer(pool.intern(cursor.getString(organizerIndex)));
+        }
+        if (isOrganizerIndex >= 0) {
+            calendarEvent.setIsOrganizer(pool.intern(cursor.getString(isOrganizerIndex)));
+        }
+        return calendarEvent;
+    }
+
+    /**
+     * @return 本次查询的字符串去重字典
+     */
+    StringPool getPool() {
+        return pool;
+    }
+
+}
@@ -0,0 +1,524 @@
+package com.kyle.calendarprovider.calendar;
+
+import android.content.Context;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import static com.kyle.calendarprovider.Util.checkContextNull;
+
+/**
+ * 日历账户事件快照(二进制格式),用于快速备份和恢复
+ * <p>
+ * 文件格式：文件头(魔数、版本、事件数)之后是若干个数据块,每块最多{@link #BLOCK_SIZE}个事件,以事件数为0的块结束
+ * 块内按列存放：时间使用varint编码(开始时间存放与上一个事件的差值,结束时间存放与开始时间的差值),
+ * 时区、组织者、重复规则等重复率高的字符串使用字典编码(首次出现时写入字典),
+ * 块的最后是带长度前缀的提醒部分
+ * <p>
+ * 写入时通过{@link CalendarEventIterator}逐批读取事件,读取时使用内存映射文件,
+ * 恢复时每读取一块就分批写入(与{@link CalendarProviderManager#addCalendarEvents(CalendarSession, List)}相同的批次)
+ * TIP: 恢复的事件写入{@link CalendarProviderManager#obtainCalendarAccountID(Context)}对应的日历账户,
+ * 快照中的属性(包括全天、时区、重复日期、状态、访问级别、忙碌状态和颜色)全部恢复,重复事件恢复其持续时间
+ */
+public final class EventSnapshot {
+
+    private static final int MAGIC = 0x4B435331;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 12;
+    private static final int BLOCK_SIZE = 500;
+
+    private EventSnapshot() {
+    }
+
+
+    // ------------------------------- 写入快照 -----------------------------------
+
+    /**
+     * 将指定日历账户下的所有事件写入快照文件(覆盖已有文件)
+     * <p>
+     * 先写入同一目录下的临时文件,全部写入成功后才替换已有文件,失败时已有的快照保持不变
+     *
+     * @return 写入的事件数  failed : -1  permission deny : -2
+     * @throws IOException 写入失败
+     */
+    public static int write(Context context, long calID, File file) throws IOException {
+        checkContextNull(context);
+
+        try (CalendarSession session = CalendarSession.open(context)) {
+            return write(session, calID, file);
+        }
+    }
+
+    /**
+     * 在会话中将指定日历账户下的所有事件写入快照文件(覆盖已有文件)
+     *
+     * @return 写入的事件数  failed : -1  permission deny : -2
+     * @throws IOException 写入失败
+     * @see #write(Context, long, File)
+     */
+    public static int write(CalendarSession session, long calID, File file) throws IOException {
+        if (!CalendarPermission.canRead(session.context)) {
+            return -2;
+        }
+        try (CalendarEventIterator iterator = CalendarProviderManager.queryAccountEventIterator(
+                session, calID, EventField.ALL)) {
+            if (null == iterator) {
+                return -1;
+            }
+
+            File temp = File.createTempFile("snapshot", ".tmp", file.getAbsoluteFile().getParentFile());
+            boolean success = false;
+            try {
+                int count;
+                try (FileOutputStream out = new FileOutputStream(temp)) {
+                    count = write(iterator, out.getChannel());
+                    out.getFD().sync();
+                }
+                if (!temp.renameTo(file)) {
+                    throw new IOException("Failed to replace " + file);
+                }
+                success = true;
+                return count;
+            } finally {
+                if (!success) {
+                    temp.delete();
+                }
+            }
+        }
+    }
+
+    /**
+     * 写入文件头和所有数据块
+     *
+     * @return 写入的事件数
+     */
+    static int write(Iterator<CalendarEvent> iterator, FileChannel channel) throws IOException {
+        Encoder encoder = new Encoder();
+        encoder.writeInt(MAGIC);
+        encoder.writeInt(VERSION);
+        encoder.writeInt(0);
+
+        List<CalendarEvent> block = new ArrayList<>(BLOCK_SIZE);
+        int count = 0;
+        while (iterator.hasNext()) {
+            block.add(iterator.next());
+            if (block.size() == BLOCK_SIZE) {
+                count += block.size();
+                encoder.writeBlock(block);
+                encoder.drainTo(channel);
+                block.clear();
+            }
+        }
+        count += block.size();
+        encoder.writeBlock(block);
+        encoder.writeVarint(0);
+        encoder.drainTo(channel);
+
+        // 补写事件数
+        ByteBuffer header = ByteBuffer.allocate(4);
+        header.putInt(0, count);
+        channel.write(header, 8);
+        return count;
+    }
+
+
+    // ------------------------------- 恢复快照 -----------------------------------
+
+    /**
+     * 从快照文件恢复事件
+     * <p>
+     * 写入事件前先完整解码一遍并与文件头中的事件数比较,文件被截断或损坏时不会写入任何事件
+     *
+     * @return 恢复的事件数  permission deny : -2
+     * @throws IOException 读取失败或文件格式错误
+     */
+    public static int restore(Context context, File file) throws IOException {
+        checkContextNull(context);
+
+        try (CalendarSession session = CalendarSession.open(context)) {
+            return restore(session, file);
+        }
+    }
+
+    /**
+     * 在会话中从快照文件恢复事件
+     *
+     * @return 恢复的事件数  permission deny : -2
+     * @throws IOException 读取失败或文件格式错误
+     * @see #restore(Context, File)
+     */
+    public static int restore(CalendarSession session, File file) throws IOException {
+        if (!CalendarPermission.canWrite(session.context)) {
+            return -2;
+        }
+        try (FileInputStream in = new FileInputStream(file)) {
+            FileChannel channel = in.getChannel();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("Invalid snapshot " + file);
+            }
+            int count = buffer.getInt();
+            if (count != verify(buffer.duplicate(), null)) {
+                throw new IOException("Truncated snapshot " + file);
+            }
+
+            Decoder decoder = new Decoder(buffer);
+            int restored = 0;
+            List<CalendarEvent> block;
+            while (!(block = decoder.readBlock()).isEmpty()) {
+                long[] eventIDs = CalendarProviderManager.restoreCalendarEvents(session, block);
+                if (null == eventIDs) {
+                    return -2;
+                }
+                for (long eventID : eventIDs) {
+                    if (eventID >= 0) {
+                        restored++;
+                    }
+                }
+            }
+            return restored;
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException("Invalid snapshot " + file, e);
+        }
+    }
+
+
+    /**
+     * 解码所有数据块(不写入事件)
+     *
+     * @param buffer 位于第一个数据块
+     * @param events 不为null时保存解码的事件
+     * @return 解码的事件数,结束块之后还有数据时返回-1
+     */
+    static int verify(ByteBuffer buffer, List<CalendarEvent> events) throws IOException {
+        Decoder decoder = new Decoder(buffer);
+        int count = 0;
+        List<CalendarEvent> block;
+        while (!(block = decoder.readBlock()).isEmpty()) {
+            count += block.size();
+            if (null != events) {
+                events.addAll(block);
+            }
+        }
+        return buffer.hasRemaining() ? -1 : count;
+    }
+
+
+    // ------------------------------- 编码 -----------------------------------
+
+    /**
+     * 快照编码,数据先写入内存中的缓冲区,每块写完后写入文件
+     */
+    private static class Encoder {
+
+        private byte[] bytes = new byte[64 * 1024];
+        private int size;
+        private long previousStart;
+        /**
+         * 字符串 -> 字典中的编号(从1开始,0表示null)
+         */
+        private final Map<String, Integer> dictionary = new HashMap<>();
+
+        void writeBlock(List<CalendarEvent> block) {
+            int count = block.size();
+            if (0 == count) {
+                return;
+            }
+            writeVarint(count);
+
+            for (CalendarEvent event : block) {
+                writeString(event.getTitle());
+            }
+            for (CalendarEvent event : block) {
+                writeString(event.getDescription());
+            }
+            for (CalendarEvent event : block) {
+                writeString(event.getEventLocation());
+            }
+            for (CalendarEvent event : block) {
+                writeVarint(zigzag(event.getStart() - previousStart));
+                previousStart = event.getStart();
+            }
+            for (CalendarEvent event : block) {
+                writeVarint(zigzag(event.getEnd() - event.getStart()));
+            }
+            for (CalendarEvent event : block) {
+                writeDictionary(event.getDuration());
+            }
+            for (CalendarEvent event : block) {
+                writeDictionary(event.getRRule());
+            }
+            for (CalendarEvent event : block) {
+                writeString(event.getRDate());
+            }
+            for (CalendarEvent event : block) {
+                writeDictionary(event.getEventTimeZone());
+            }
+            for (CalendarEvent event : block) {
+                writeDictionary(event.getEventEndTimeZone());
+            }
+            for (CalendarEvent event : block) {
+                writeDictionary(event.getOrganizer());
+            }
+            for (CalendarEvent event : block) {
+                writeVarint(zigzag(event.getDisplayColor()));
+            }
+            for (CalendarEvent event : block) {
+                writeVarint(event.getAllDay());
+                writeVarint(event.getStatus());
+                writeVarint(event.getAccessLevel());
+                writeVarint(event.getAvailability());
+            }
+
+            // 提醒部分:长度前缀 + 每个事件的提醒数及(提前的分钟数, 提醒方式)
+            int lengthPosition = size;
+            ensureCapacity(5);
+            size += 5;
+            for (CalendarEvent event : block) {
+                List<CalendarEvent.EventReminders> reminders = event.getReminders();
+                int reminderCount = null == reminders ? 0 : reminders.size();
+                writeVarint(reminderCount);
+                for (int i = 0; i < reminderCount; i++) {
+                    writeVarint(zigzag(reminders.get(i).getReminderMinute()));
+                    writeVarint(reminders.get(i).getReminderMethod());
+                }
+            }
+            writeFixedVarint(lengthPosition, size - lengthPosition - 5);
+        }
+
+        void writeInt(int value) {
+            ensureCapacity(4);
+            bytes[size++] = (byte) (value >>> 24);
+            bytes[size++] = (byte) (value >>> 16);
+            bytes[size++] = (byte) (value >>> 8);
+            bytes[size++] = (byte) value;
+        }
+
+        void writeVarint(long value) {
+            ensureCapacity(10);
+            while ((value & ~0x7FL) != 0) {
+                bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        /**
+         * 在指定位置写入固定5个字节的varint
+         */
+        private void writeFixedVarint(int position, int value) {
+            for (int i = 0; i < 4; i++) {
+                bytes[position + i] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[position + 4] = (byte) value;
+        }
+
+        /**
+         * 写入字符串(长度+1,0表示null)
+         */
+        private void writeString(String value) {
+            if (null == value) {
+                writeVarint(0);
+                return;
+            }
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            writeVarint(utf8.length + 1);
+            ensureCapacity(utf8.length);
+            System.arraycopy(utf8, 0, bytes, size, utf8.length);
+            size += utf8.length;
+        }
+
+        /**
+         * 写入字典编码的字符串(0表示null,已存在的字符串写入其编号,新字符串写入下一个编号和字符串本身)
+         */
+        private void writeDictionary(String value) {
+            if (null == value) {
+                writeVarint(0);
+                return;
+            }
+            Integer index = dictionary.get(value);
+            if (null != index) {
+                writeVarint(index);
+                return;
+            }
+            index = dictionary.size() + 1;
+            dictionary.put(value, index);
+            writeVarint(index);
+            writeString(value);
+        }
+
+        private void ensureCapacity(int extra) {
+            if (size + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+            }
+        }
+
+        void drainTo(FileChannel channel) throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, size);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            size = 0;
+        }
+
+        private static long zigzag(long value) {
+            return (value << 1) ^ (value >> 63);
+        }
+
+    }
+
+
+    // ------------------------------- 解码 -----------------------------------
+
+    /**
+     * 快照解码
+     */
+    private static class Decoder {
+
+        private final ByteBuffer buffer;
+        private long previousStart;
+        private final List<String> dictionary = new ArrayList<>();
+
+        Decoder(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        /**
+         * 读取一块事件,读取到结束块时返回空列表
+         */
+        List<CalendarEvent> readBlock() throws IOException {
+            int count = (int) readVarint();
+            if (count < 0 || count > BLOCK_SIZE) {
+                throw new IOException("Invalid snapshot block size " + count);
+            }
+            if (0 == count) {
+                return new ArrayList<>(0);
+            }
+            List<CalendarEvent> block = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                CalendarEvent event = new CalendarEvent();
+                event.setTitle(readString());
+                block.add(event);
+            }
+            for (int i = 0; i < count; i++) {
+                block.get(i).setDescription(readString());
+            }
+            for (int i = 0; i < count; i++) {
+                block.get(i).setEventLocation(readString());
+            }
+            for (int i = 0; i < count; i++) {
+                previousStart += unzigzag(readVarint());
+                block.get(i).setStart(previousStart);
+            }
+            for (int i = 0; i < count; i++) {
+                CalendarEvent event = block.get(i);
+                event.setEnd(event.getStart() + unzigzag(readVarint()));
+            }
+            for (int i = 0; i < count; i++) {
+                block.get(i).setDuration(readDictionary());
+            }
+            for (int i = 0; i < count; i++) {
+                block.get(i).setRRule(readDictionary());
+            }
+            for (int i = 0; i < count; i++) {
+                block.get(i).setRDate(readString());
+            }
+            for (int i = 0; i < count; i++) {
+                block.get(i).setEventTimeZone(readDictionary());
+            }
+            for (int i = 0; i < count; i++) {
+                block.get(i).setEventEndTimeZone(readDictionary());
+            }
+            for (int i = 0; i < count; i++) {
+                block.get(i).setOrganizer(readDictionary());
+            }
+            for (int i = 0; i < count; i++) {
+                block.get(i).setDisplayColor((int) unzigzag(readVarint()));
+            }
+            for (int i = 0; i < count; i++) {
+                CalendarEvent event = block.get(i);
+                event.setAllDay((int) readVarint());
+                event.setStatus((int) readVarint());
+                event.setAccessLevel((int) readVarint());
+                event.setAvailability((int) readVarint());
+            }
+
+            readVarint();
+            for (int i = 0; i < count; i++) {
+                CalendarEvent event = block.get(i);
+                event.setAdvanceTime(-2);
+                int reminderCount = (int) readVarint();
+                for (int j = 0; j < reminderCount; j++) {
+                    int minutes = (int) unzigzag(readVarint());
+                    event.addReminder(minutes, (int) readVarint());
+                }
+                // 重复事件在系统日历中只保存持续时间
+                if (null != event.getDuration() && event.getEnd() <= event.getStart()) {
+                    event.setEnd(event.getStart() + RecurrenceIterator.parseDuration(event.getDuration()));
+                }
+            }
+            return block;
+        }
+
+        private long readVarint() throws IOException {
+            long result = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = buffer.get();
+                result |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return result;
+                }
+            }
+            throw new IOException("Malformed varint");
+        }
+
+        private String readString() throws IOException {
+            int length = (int) readVarint() - 1;
+            if (length < 0) {
+                return null;
+            }
+            if (length > buffer.remaining()) {
+                throw new IOException("Malformed string");
+            }
+            byte[] utf8 = new byte[length];
+            buffer.get(utf8);
+            return new String(utf8, StandardCharsets.UTF_8);
+        }
+
+        private String readDictionary() throws IOException {
+            int index = (int) readVarint();
+            if (0 == index) {
+                return null;
+            }
+            if (index <= dictionary.size()) {
+                return dictionary.get(index - 1);
+            }
+            if (index != dictionary.size() + 1) {
+                throw new IOException("Malformed dictionary index " + index);
+            }
+            String value = readString();
+            dictionary.add(value);
+            return value;
+        }
+
+        private static long unzigzag(long value) {
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+    }
+
+}
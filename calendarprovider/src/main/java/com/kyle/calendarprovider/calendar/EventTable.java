@@ -0,0 +1,472 @@
+package com.kyle.calendarprovider.calendar;
+
+import android.database.Cursor;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 列式存储的日历事件查询结果
+ * <p>
+ * 与{@link CalendarEvent}列表相比,每列使用一个基本类型数组保存,字符串通过表内的字典去重后只保存编号,
+ * 适合在内存中长期持有大量事件
+ * 单行访问通过{@link Row}视图进行,视图可以移动到任意行重复使用
+ * 查询结果中不存在的列保持默认值(字符串为null),不包含事件提醒
+ *
+ * @see CalendarProviderManager#queryAccountEventTable(android.content.Context, long)
+ */
+public final class EventTable {
+
+    // ----------------------- 标志位 -----------------------
+    private static final int ALL_DAY = 1;
+    private static final int HAS_ALARM = 1 << 1;
+    private static final int HAS_ATTENDEE_DATA = 1 << 2;
+    private static final int STATUS_SHIFT = 4;
+    private static final int ACCESS_LEVEL_SHIFT = 8;
+    private static final int AVAILABILITY_SHIFT = 12;
+    private static final int FIELD_MASK = 0xF;
+
+    private final int size;
+
+    private final long[] ids;
+    private final long[] calIDs;
+    private final long[] starts;
+    private final long[] ends;
+    private final long[] lastDates;
+    private final int[] displayColors;
+    /**
+     * 全天、提醒、参与者标志以及状态、访问级别、可用性(各占4位)
+     */
+    private final int[] flags;
+
+    // ----------------------- 字符串列(字典中的编号,0表示null) -----------------------
+    private final int[] titles;
+    private final int[] descriptions;
+    private final int[] eventLocations;
+    private final int[] durations;
+    private final int[] eventTimeZones;
+    private final int[] eventEndTimeZones;
+    private final int[] rRules;
+    private final int[] rDates;
+    private final int[] organizers;
+    private final int[] isOrganizers;
+
+    /**
+     * 字符串字典,编号0为null
+     */
+    private final String[] strings;
+
+    private EventTable(int size, Builder builder) {
+        this.size = size;
+        this.ids = Arrays.copyOf(builder.ids, size);
+        this.calIDs = Arrays.copyOf(builder.calIDs, size);
+        this.starts = Arrays.copyOf(builder.starts, size);
+        this.ends = Arrays.copyOf(builder.ends, size);
+        this.lastDates = Arrays.copyOf(builder.lastDates, size);
+        this.displayColors = Arrays.copyOf(builder.displayColors, size);
+        this.flags = Arrays.copyOf(builder.flags, size);
+        this.titles = Arrays.copyOf(builder.titles, size);
+        this.descriptions = Arrays.copyOf(builder.descriptions, size);
+        this.eventLocations = Arrays.copyOf(builder.eventLocations, size);
+        this.durations = Arrays.copyOf(builder.durations, size);
+        this.eventTimeZones = Arrays.copyOf(builder.eventTimeZones, size);
+        this.eventEndTimeZones = Arrays.copyOf(builder.eventEndTimeZones, size);
+        this.rRules = Arrays.copyOf(builder.rRules, size);
+        this.rDates = Arrays.copyOf(builder.rDates, size);
+        this.organizers = Arrays.copyOf(builder.organizers, size);
+        this.isOrganizers = Arrays.copyOf(builder.isOrganizers, size);
+        this.strings = builder.dictionary.toArray();
+    }
+
+    /**
+     * 从事件查询结果中建立
+     * <p>
+     * 从Cursor当前位置之后开始读取所有行,此方法不会关闭Cursor
+     */
+    static EventTable build(Cursor cursor) {
+        Builder builder = new Builder(cursor);
+        while (cursor.moveToNext()) {
+            builder.add(cursor);
+        }
+        return new EventTable(builder.size, builder);
+    }
+
+    /**
+     * @return 事件数
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 创建指向指定行的视图
+     */
+    public Row getRow(int position) {
+        Row row = new Row();
+        row.moveTo(position);
+        return row;
+    }
+
+    /**
+     * @return 指定开始时间之后(包含)的第一个事件所在行,查询结果按开始时间排序时可用于二分查找;不存在则返回size()
+     */
+    public int lowerBound(long start) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (starts[mid] < start) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    // ----------------------- 按行访问 -----------------------
+
+    public long getId(int position) {
+        return ids[position];
+    }
+
+    public long getCalID(int position) {
+        return calIDs[position];
+    }
+
+    public String getTitle(int position) {
+        return strings[titles[position]];
+    }
+
+    public String getDescription(int position) {
+        return strings[descriptions[position]];
+    }
+
+    public String getEventLocation(int position) {
+        return strings[eventLocations[position]];
+    }
+
+    public int getDisplayColor(int position) {
+        return displayColors[position];
+    }
+
+    public int getStatus(int position) {
+        return flags[position] >>> STATUS_SHIFT & FIELD_MASK;
+    }
+
+    public long getStart(int position) {
+        return starts[position];
+    }
+
+    public long getEnd(int position) {
+        return ends[position];
+    }
+
+    public String getDuration(int position) {
+        return strings[durations[position]];
+    }
+
+    public String getEventTimeZone(int position) {
+        return strings[eventTimeZones[position]];
+    }
+
+    public String getEventEndTimeZone(int position) {
+        return strings[eventEndTimeZones[position]];
+    }
+
+    public int getAllDay(int position) {
+        return (flags[position] & ALL_DAY) != 0 ? 1 : 0;
+    }
+
+    public int getAccessLevel(int position) {
+        return flags[position] >>> ACCESS_LEVEL_SHIFT & FIELD_MASK;
+    }
+
+    public int getAvailability(int position) {
+        return flags[position] >>> AVAILABILITY_SHIFT & FIELD_MASK;
+    }
+
+    public int getHasAlarm(int position) {
+        return (flags[position] & HAS_ALARM) != 0 ? 1 : 0;
+    }
+
+    public String getRRule(int position) {
+        return strings[rRules[position]];
+    }
+
+    public String getRDate(int position) {
+        return strings[rDates[position]];
+    }
+
+    public int getHasAttendeeData(int position) {
+        return (flags[position] & HAS_ATTENDEE_DATA) != 0 ? 1 : 0;
+    }
+
+    public long getLastDate(int position) {
+        return lastDates[position];
+    }
+
+    public String getOrganizer(int position) {
+        return strings[organizers[position]];
+    }
+
+    public String getIsOrganizer(int position) {
+        return strings[isOrganizers[position]];
+    }
+
+    /**
+     * 单行视图
+     * <p>
+     * 视图只保存行号,所有属性都从表中读取,可通过{@link #moveTo(int)}移动到其他行重复使用
+     */
+    public final class Row {
+
+        private int position;
+
+        private Row() {
+        }
+
+        /**
+         * 移动到指定行
+         *
+         * @throws IndexOutOfBoundsException 行号超出范围
+         */
+        public Row moveTo(int position) {
+            if (position < 0 || position >= size) {
+                throw new IndexOutOfBoundsException("position: " + position + ", size: " + size);
+            }
+            this.position = position;
+            return this;
+        }
+
+        public int getPosition() {
+            return position;
+        }
+
+        public long getId() {
+            return ids[position];
+        }
+
+        public long getCalID() {
+            return calIDs[position];
+        }
+
+        public String getTitle() {
+            return EventTable.this.getTitle(position);
+        }
+
+        public String getDescription() {
+            return EventTable.this.getDescription(position);
+        }
+
+        public String getEventLocation() {
+            return EventTable.this.getEventLocation(position);
+        }
+
+        public int getDisplayColor() {
+            return displayColors[position];
+        }
+
+        public int getStatus() {
+            return EventTable.this.getStatus(position);
+        }
+
+        public long getStart() {
+            return starts[position];
+        }
+
+        public long getEnd() {
+            return ends[position];
+        }
+
+        public String getDuration() {
+            return EventTable.this.getDuration(position);
+        }
+
+        public String getEventTimeZone() {
+            return EventTable.this.getEventTimeZone(position);
+        }
+
+        public String getEventEndTimeZone() {
+            return EventTable.this.getEventEndTimeZone(position);
+        }
+
+        public int getAllDay() {
+            return EventTable.this.getAllDay(position);
+        }
+
+        public int getAccessLevel() {
+            return EventTable.this.getAccessLevel(position);
+        }
+
+        public int getAvailability() {
+            return EventTable.this.getAvailability(position);
+        }
+
+        public int getHasAlarm() {
+            return EventTable.this.getHasAlarm(position);
+        }
+
+        public String getRRule() {
+            return EventTable.this.getRRule(position);
+        }
+
+        public String getRDate() {
+            return EventTable.this.getRDate(position);
+        }
+
+        public int getHasAttendeeData() {
+            return EventTable.this.getHasAttendeeData(position);
+        }
+
+        public long getLastDate() {
+            return lastDates[position];
+        }
+
+        public String getOrganizer() {
+            return EventTable.this.getOrganizer(position);
+        }
+
+        public String getIsOrganizer() {
+            return EventTable.this.getIsOrganizer(position);
+        }
+
+    }
+
+    /**
+     * 字符串字典
+     */
+    private static class Dictionary {
+
+        private final Map<String, Integer> indexes = new HashMap<>();
+        private String[] strings = new String[16];
+        private int size = 1;
+
+        int indexOf(String value) {
+            if (null == value) {
+                return 0;
+            }
+            Integer index = indexes.get(value);
+            if (null == index) {
+                index = size;
+                if (size == strings.length) {
+                    strings = Arrays.copyOf(strings, size * 2);
+                }
+                strings[size++] = value;
+                indexes.put(value, index);
+            }
+            return index;
+        }
+
+        String[] toArray() {
+            return Arrays.copyOf(strings, size);
+        }
+
+    }
+
+    /**
+     * 从Cursor中逐行读取各列
+     */
+    private static class Builder {
+
+        /**
+         * 各列的索引
+         */
+        private final EventRowMapper columns;
+
+        private final Dictionary dictionary = new Dictionary();
+        private int size;
+
+        private long[] ids;
+        private long[] calIDs;
+        private long[] starts;
+        private long[] ends;
+        private long[] lastDates;
+        private int[] displayColors;
+        private int[] flags;
+        private int[] titles;
+        private int[] descriptions;
+        private int[] eventLocations;
+        private int[] durations;
+        private int[] eventTimeZones;
+        private int[] eventEndTimeZones;
+        private int[] rRules;
+        private int[] rDates;
+        private int[] organizers;
+        private int[] isOrganizers;
+
+        Builder(Cursor cursor) {
+            columns = new EventRowMapper(cursor);
+
+            allocate(Math.max(16, cursor.getCount()));
+        }
+
+        private void allocate(int capacity) {
+            ids = null == ids ? new long[capacity] : Arrays.copyOf(ids, capacity);
+            calIDs = null == calIDs ? new long[capacity] : Arrays.copyOf(calIDs, capacity);
+            starts = null == starts ? new long[capacity] : Arrays.copyOf(starts, capacity);
+            ends = null == ends ? new long[capacity] : Arrays.copyOf(ends, capacity);
+            lastDates = null == lastDates ? new long[capacity] : Arrays.copyOf(lastDates, capacity);
+            displayColors = grow(displayColors, capacity);
+            flags = grow(flags, capacity);
+            titles = grow(titles, capacity);
+            descriptions = grow(descriptions, capacity);
+            eventLocations = grow(eventLocations, capacity);
+            durations = grow(durations, capacity);
+            eventTimeZones = grow(eventTimeZones, capacity);
+            eventEndTimeZones = grow(eventEndTimeZones, capacity);
+            rRules = grow(rRules, capacity);
+            rDates = grow(rDates, capacity);
+            organizers = grow(organizers, capacity);
+            isOrganizers = grow(isOrganizers, capacity);
+        }
+
+        private static int[] grow(int[] array, int capacity) {
+            return null == array ? new int[capacity] : Arrays.copyOf(array, capacity);
+        }
+
+        void add(Cursor cursor) {
+            if (size == ids.length) {
+                allocate(size * 2);
+            }
+            int i = size++;
+            ids[i] = getLong(cursor, columns.idIndex);
+            calIDs[i] = getLong(cursor, columns.calIDIndex);
+            starts[i] = getLong(cursor, columns.startIndex);
+            ends[i] = getLong(cursor, columns.endIndex);
+            lastDates[i] = getLong(cursor, columns.lastDateIndex);
+            displayColors[i] = getInt(cursor, columns.displayColorIndex);
+            flags[i] = (getInt(cursor, columns.allDayIndex) != 0 ? ALL_DAY : 0)
+                    | (getInt(cursor, columns.hasAlarmIndex) != 0 ? HAS_ALARM : 0)
+                    | (getInt(cursor, columns.hasAttendeeDataIndex) != 0 ? HAS_ATTENDEE_DATA : 0)
+                    | (getInt(cursor, columns.statusIndex) & FIELD_MASK) << STATUS_SHIFT
+                    | (getInt(cursor, columns.accessLevelIndex) & FIELD_MASK) << ACCESS_LEVEL_SHIFT
+                    | (getInt(cursor, columns.availabilityIndex) & FIELD_MASK) << AVAILABILITY_SHIFT;
+            titles[i] = getString(cursor, columns.titleIndex);
+            descriptions[i] = getString(cursor, columns.descriptionIndex);
+            eventLocations[i] = getString(cursor, columns.eventLocationIndex);
+            durations[i] = getString(cursor, columns.durationIndex);
+            eventTimeZones[i] = getString(cursor, columns.eventTimeZoneIndex);
+            eventEndTimeZones[i] = getString(cursor, columns.eventEndTimeZoneIndex);
+            rRules[i] = getString(cursor, columns.rRuleIndex);
+            rDates[i] = getString(cursor, columns.rDateIndex);
+            organizers[i] = getString(cursor, columns.organizerIndex);
+            isOrganizers[i] = getString(cursor, columns.isOrganizerIndex);
+        }
+
+        private static long getLong(Cursor cursor, int index) {
+            return index >= 0 ? cursor.getLong(index) : 0;
+        }
+
+        private static int getInt(Cursor cursor, int index) {
+            return index >= 0 ? cursor.getInt(index) : 0;
+        }
+
+        private int getString(Cursor cursor, int index) {
+            return index >= 0 ? dictionary.indexOf(cursor.getString(index)) : 0;
+        }
+
+    }
+
+}
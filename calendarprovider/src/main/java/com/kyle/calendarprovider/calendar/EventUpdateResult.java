@@ -0,0 +1,60 @@
+package com.kyle.calendarprovider.calendar;
+
+/**
+ * 日历事件更新结果
+ * <p>
+ * 事件和提醒在同一个批次中更新,事件不存在时整个批次不会生效
+ *
+ * @see CalendarProviderManager#updateCalendarEventAtomically(android.content.Context, long, CalendarEvent)
+ */
+public final class EventUpdateResult {
+
+    static final EventUpdateResult NOTHING_CHANGED = new EventUpdateResult(0, 0, 0);
+    static final EventUpdateResult FAILED = new EventUpdateResult(-1, 0, 0);
+    static final EventUpdateResult PERMISSION_DENY = new EventUpdateResult(-2, 0, 0);
+
+    private final int code;
+    private final int eventCount;
+    private final int reminderCount;
+
+    EventUpdateResult(int code, int eventCount, int reminderCount) {
+        this.code = code;
+        this.eventCount = eventCount;
+        this.reminderCount = reminderCount;
+    }
+
+    /**
+     * @return 0: success  -1: failed(事件不存在或批次执行失败)  -2: permission deny
+     */
+    public int getCode() {
+        return code;
+    }
+
+    public boolean isSuccess() {
+        return 0 == code;
+    }
+
+    /**
+     * @return 匹配的事件数
+     */
+    public int getEventCount() {
+        return eventCount;
+    }
+
+    /**
+     * @return 删除和插入的提醒数
+     */
+    public int getReminderCount() {
+        return reminderCount;
+    }
+
+    @Override
+    public String toString() {
+        return "EventUpdateResult{" +
+                "code=" + code +
+                ", eventCount=" + eventCount +
+                ", reminderCount=" + reminderCount +
+                '}';
+    }
+
+}
@@ -0,0 +1,101 @@
+package com.kyle.calendarprovider.calendar;
+
+import android.content.ContentValues;
+import android.provider.CalendarContract;
+
+import com.kyle.calendarprovider.Util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 写入事件时不随事件变化的列
+ * <p>
+ * 日历账户、时区、访问级别、状态、提醒以及忙碌状态对同一日历账户和时区下的所有事件都相同,
+ * 只组装一次,之后每个事件复制一份再写入自己的列
+ * 模板创建后不再修改,可在多个线程中同时使用
+ * <p>
+ * 默认时区取自{@link Util#getTimeZoneID()},默认时区改变后重新创建模板
+ */
+final class EventValuesTemplate {
+
+    /**
+     * 不包含日历账户(更新事件时使用)
+     */
+    private static final long NO_CALENDAR = Long.MIN_VALUE;
+
+    /**
+     * 缓存的最大模板数(每个日历账户一个,更新事件另用一个)
+     */
+    private static final int CACHE_SIZE = 8;
+
+    /**
+     * 按日历账户缓存的模板,默认时区变化时重新创建
+     */
+    private static final Map<Long, EventValuesTemplate> CACHE =
+            new LinkedHashMap<Long, EventValuesTemplate>(CACHE_SIZE, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, EventValuesTemplate> eldest) {
+                    return size() > CACHE_SIZE;
+                }
+            };
+
+    private final String timeZone;
+    private final ContentValues values;
+
+    private EventValuesTemplate(long calID, String timeZone) {
+        this.timeZone = timeZone;
+
+        values = new ContentValues();
+        if (NO_CALENDAR != calID) {
+            // 事件要插入到的日历账户
+            values.put(CalendarContract.Events.CALENDAR_ID, calID);
+        }
+        // 事件时区
+        values.put(CalendarContract.Events.EVENT_TIMEZONE, timeZone);
+        // 定义事件的显示，默认即可
+        values.put(CalendarContract.Events.ACCESS_LEVEL, CalendarContract.Events.ACCESS_DEFAULT);
+        // 事件的状态
+        values.put(CalendarContract.Events.STATUS, 0);
+        // 设置事件提醒警报可用
+        values.put(CalendarContract.Events.HAS_ALARM, 1);
+        // 设置事件忙
+        values.put(CalendarContract.Events.AVAILABILITY, CalendarContract.Events.AVAILABILITY_BUSY);
+    }
+
+    /**
+     * 插入事件使用的模板,使用默认时区
+     *
+     * @param calID 事件要插入到的日历账户
+     */
+    static EventValuesTemplate forInsert(long calID) {
+        return obtain(calID);
+    }
+
+    /**
+     * 更新事件使用的模板(不包含日历账户),使用默认时区
+     */
+    static EventValuesTemplate forUpdate() {
+        return obtain(NO_CALENDAR);
+    }
+
+    private static EventValuesTemplate obtain(long calID) {
+        String timeZone = Util.getTimeZoneID();
+        synchronized (CACHE) {
+            EventValuesTemplate template = CACHE.get(calID);
+            if (null == template || !template.timeZone.equals(timeZone)) {
+                template = new EventValuesTemplate(calID, timeZone);
+                CACHE.put(calID, template);
+            }
+            return template;
+        }
+    }
+
+    /**
+     * @return 模板的副本,可继续写入事件自己的列
+     */
+    ContentValues newValues() {
+        return new ContentValues(values);
+    }
+
+}
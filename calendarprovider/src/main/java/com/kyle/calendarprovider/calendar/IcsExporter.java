@@ -0,0 +1,263 @@
+package com.kyle.calendarprovider.calendar;
+
+import android.content.Context;
+
+import com.kyle.calendarprovider.Util;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.List;
+
+import static com.kyle.calendarprovider.Util.checkContextNull;
+
+/**
+ * iCalendar(.ics)文件导出
+ * <p>
+ * 通过{@link CalendarEventIterator}逐批读取事件(提醒按批次一次性查询),每个事件直接写为VEVENT/VALARM,
+ * 不会组装完整的事件列表,内存占用与事件数量无关
+ * <p>
+ * 时间统一以UTC时间导出,提醒统一导出为DISPLAY类型,只导出提前触发的提醒
+ */
+public final class IcsExporter {
+
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+    /**
+     * 每行最多的字节数(不包括换行符)
+     */
+    private static final int MAX_LINE_OCTETS = 75;
+    private static final String PRODID = "-//kyle//CalendarProviderManager//CN";
+
+    private final Writer writer;
+    /**
+     * 当前行
+     */
+    private final StringBuilder line = new StringBuilder(256);
+    /**
+     * 写入时复制当前行的缓冲区,每个折行片段只调用一次Writer
+     */
+    private char[] chars = new char[256];
+    /**
+     * 导出时间(DTSTAMP)
+     */
+    private final String stamp;
+
+    IcsExporter(Writer writer) {
+        this.writer = writer;
+        appendDateTime(System.currentTimeMillis(), false);
+        this.stamp = line.toString();
+        line.setLength(0);
+    }
+
+    /**
+     * 导出指定日历账户下的所有事件
+     * <p>
+     * 以UTF-8编码写入,此方法不会关闭输出流
+     *
+     * @return 导出的事件数  failed : -1  permission deny : -2
+     * @throws IOException 写入失败
+     */
+    public static int exportEvents(Context context, long calID, OutputStream out) throws IOException {
+        checkContextNull(context);
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        int count = exportEvents(CalendarSession.wrap(context), calID, writer);
+        writer.flush();
+        return count;
+    }
+
+    /**
+     * 在会话中导出指定日历账户下的所有事件
+     * <p>
+     * 推荐传入带缓冲的Writer,此方法不会关闭Writer
+     *
+     * @return 导出的事件数  failed : -1  permission deny : -2
+     * @throws IOException 写入失败
+     */
+    public static int exportEvents(CalendarSession session, long calID, Writer writer) throws IOException {
+        if (!CalendarPermission.canRead(session.context)) {
+            return -2;
+        }
+        try (CalendarEventIterator iterator = CalendarProviderManager.queryAccountEventIterator(
+                session, calID, EventField.ALL)) {
+            if (null == iterator) {
+                return -1;
+            }
+            return new IcsExporter(writer).run(iterator);
+        }
+    }
+
+    /**
+     * 将事件写为完整的VCALENDAR
+     *
+     * @return 导出的事件数
+     */
+    int run(Iterator<CalendarEvent> iterator) throws IOException {
+        writeLine("BEGIN:VCALENDAR");
+        writeLine("VERSION:2.0");
+        line.append("PRODID:").append(PRODID);
+        flushLine();
+
+        int count = 0;
+        while (iterator.hasNext()) {
+            writeEvent(iterator.next());
+            count++;
+        }
+
+        writeLine("END:VCALENDAR");
+        return count;
+    }
+
+    private void writeEvent(CalendarEvent event) throws IOException {
+        writeLine("BEGIN:VEVENT");
+
+        line.append("UID:").append(event.getId()).append('-').append(event.getCalID())
+                .append("@calendarprovider");
+        flushLine();
+        line.append("DTSTAMP:").append(stamp);
+        flushLine();
+
+        boolean allDay = 0 != event.getAllDay();
+        line.append(allDay ? "DTSTART;VALUE=DATE:" : "DTSTART:");
+        appendDateTime(event.getStart(), allDay);
+        flushLine();
+        if (null != event.getDuration()) {
+            line.append("DURATION:").append(event.getDuration());
+            flushLine();
+        } else if (event.getEnd() > event.getStart()) {
+            line.append(allDay ? "DTEND;VALUE=DATE:" : "DTEND:");
+            appendDateTime(event.getEnd(), allDay);
+            flushLine();
+        }
+
+        writeText("SUMMARY", event.getTitle());
+        writeText("DESCRIPTION", event.getDescription());
+        writeText("LOCATION", event.getEventLocation());
+        if (null != event.getRRule()) {
+            line.append("RRULE:").append(event.getRRule());
+            flushLine();
+        }
+        if (null != event.getRDate()) {
+            line.append("RDATE:").append(event.getRDate());
+            flushLine();
+        }
+
+        List<CalendarEvent.EventReminders> reminders = event.getReminders();
+        if (null != reminders) {
+            for (CalendarEvent.EventReminders reminder : reminders) {
+                // 使用系统默认提醒时间的提醒(-1)无法表示
+                if (reminder.getReminderMinute() < 0) {
+                    continue;
+                }
+                writeLine("BEGIN:VALARM");
+                writeLine("ACTION:DISPLAY");
+                line.append("TRIGGER:-PT").append(reminder.getReminderMinute()).append('M');
+                flushLine();
+                writeText("DESCRIPTION", null == event.getTitle() ? "Reminder" : event.getTitle());
+                writeLine("END:VALARM");
+            }
+        }
+
+        writeLine("END:VEVENT");
+    }
+
+    private void writeText(String name, String value) throws IOException {
+        if (null == value) {
+            return;
+        }
+        line.append(name).append(':');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\':
+                case ';':
+                case ',':
+                    line.append('\\').append(c);
+                    break;
+                case '\n':
+                    line.append("\\n");
+                    break;
+                case '\r':
+                    break;
+                default:
+                    line.append(c);
+                    break;
+            }
+        }
+        flushLine();
+    }
+
+    /**
+     * 追加UTC时间
+     *
+     * @param date true: yyyyMMdd  false: yyyyMMddTHHmmssZ
+     */
+    private void appendDateTime(long time, boolean date) {
+        long epochDay = time >= 0 ? time / DAY_MILLIS : (time + 1) / DAY_MILLIS - 1;
+        int civil = Util.civilFromEpochDay(epochDay);
+        appendDigits(civil / 10000, 4);
+        appendDigits(civil / 100 % 100, 2);
+        appendDigits(civil % 100, 2);
+        if (date) {
+            return;
+        }
+        int seconds = (int) ((time - epochDay * DAY_MILLIS) / 1000);
+        line.append('T');
+        appendDigits(seconds / 3600, 2);
+        appendDigits(seconds / 60 % 60, 2);
+        appendDigits(seconds % 60, 2);
+        line.append('Z');
+    }
+
+    private void appendDigits(int value, int width) {
+        for (int divisor = width == 4 ? 1000 : 10; divisor > 0; divisor /= 10) {
+            line.append((char) ('0' + value / divisor % 10));
+        }
+    }
+
+    private void writeLine(String content) throws IOException {
+        line.append(content);
+        flushLine();
+    }
+
+    /**
+     * 写入当前行,超过75个字节时折行(不会拆分多字节字符)
+     */
+    private void flushLine() throws IOException {
+        int length = line.length();
+        if (chars.length < length) {
+            chars = new char[Math.max(length, chars.length * 2)];
+        }
+        line.getChars(0, length, chars, 0);
+
+        int octets = 0;
+        int segment = 0;
+        for (int i = 0; i < length; i++) {
+            char c = chars[i];
+            int size;
+            if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(chars[i + 1])) {
+                size = 4;
+            } else {
+                size = c < 0x80 ? 1 : (c < 0x800 ? 2 : 3);
+            }
+            if (octets + size > MAX_LINE_OCTETS) {
+                writer.write(chars, segment, i - segment);
+                writer.write("\r\n ");
+                segment = i;
+                octets = 1;
+            }
+            if (4 == size) {
+                i++;
+            }
+            octets += size;
+        }
+        writer.write(chars, segment, length - segment);
+        writer.write("\r\n");
+        line.setLength(0);
+    }
+
+}
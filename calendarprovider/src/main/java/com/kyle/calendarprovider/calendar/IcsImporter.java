@@ -0,0 +1,525 @@
+package com.kyle.calendarprovider.calendar;
+
+import android.content.Context;
+import android.provider.CalendarContract;
+
+import com.kyle.calendarprovider.Util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TimeZone;
+
+import static com.kyle.calendarprovider.Util.checkContextNull;
+
+/**
+ * iCalendar(.ics)文件导入
+ * <p>
+ * 逐行读取并解析文件(处理折行和转义),每解析出{@link CalendarProviderManager#BATCH_SIZE}个事件
+ * 就通过{@link CalendarProviderManager#addCalendarEvents(CalendarSession, List)}批量写入,
+ * 内存中最多只保留一批事件,与文件大小无关
+ * <p>
+ * 支持的VEVENT属性：SUMMARY、DESCRIPTION、LOCATION、DTSTART、DTEND、DURATION、RRULE、VALARM(TRIGGER、ACTION)
+ * TIP: TZID只支持系统时区ID(不解析VTIMEZONE),全天事件按默认时区的当天0点导入,
+ * 缺少DTSTART或重复规则格式错误的事件会被跳过
+ */
+public final class IcsImporter {
+
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+
+    private final BufferedReader reader;
+    /**
+     * 已经读取但还未处理的下一物理行
+     */
+    private String pending;
+
+    // ----------------------- 当前事件 -----------------------
+    private String title;
+    private String description;
+    private String location;
+    private long start;
+    private long end;
+    private String duration;
+    private String rRule;
+    private boolean hasStart;
+    private boolean hasEnd;
+    private boolean allDay;
+    /**
+     * 提醒(提前的分钟数, 提醒方式)对
+     */
+    private final List<int[]> alarms = new ArrayList<>();
+
+    // ----------------------- 当前提醒 -----------------------
+    private String trigger;
+    private boolean triggerAbsolute;
+    private boolean triggerRelatedEnd;
+    private String action;
+
+    private IcsImporter(InputStream in) {
+        // 按字节读取,拼接折行后再按UTF-8解码(折行可能位于多字节字符中间)
+        this.reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.ISO_8859_1));
+    }
+
+    /**
+     * 从iCalendar文件导入事件到日历账户
+     * <p>
+     * 此方法不会关闭输入流
+     *
+     * @return 导入的事件数  permission deny : -2
+     * @throws IOException 读取失败
+     */
+    public static int importEvents(Context context, InputStream in) throws IOException {
+        checkContextNull(context);
+
+        try (CalendarSession session = CalendarSession.open(context)) {
+            return importEvents(session, in);
+        }
+    }
+
+    /**
+     * 在会话中从iCalendar文件导入事件到日历账户
+     *
+     * @return 导入的事件数  permission deny : -2
+     * @throws IOException 读取失败
+     * @see #importEvents(Context, InputStream)
+     */
+    public static int importEvents(CalendarSession session, InputStream in) throws IOException {
+        return new IcsImporter(in).run(session);
+    }
+
+    /**
+     * 解析iCalendar文件中的所有事件(不写入日历账户)
+     * <p>
+     * 此方法不会关闭输入流
+     *
+     * @throws IOException 读取失败
+     */
+    static List<CalendarEvent> parse(InputStream in) throws IOException {
+        IcsImporter importer = new IcsImporter(in);
+        List<CalendarEvent> events = new ArrayList<>();
+        CalendarEvent event;
+        while (null != (event = importer.nextEvent())) {
+            events.add(event);
+        }
+        return events;
+    }
+
+    private int run(CalendarSession session) throws IOException {
+        List<CalendarEvent> batch = new ArrayList<>(CalendarProviderManager.BATCH_SIZE);
+        int imported = 0;
+        CalendarEvent event;
+        while (null != (event = nextEvent())) {
+            batch.add(event);
+            if (batch.size() == CalendarProviderManager.BATCH_SIZE) {
+                int count = flush(session, batch);
+                if (count < 0) {
+                    return count;
+                }
+                imported += count;
+            }
+        }
+
+        int count = flush(session, batch);
+        return count < 0 ? count : imported + count;
+    }
+
+    /**
+     * 读取下一个事件,缺少必要属性或格式错误的事件会被跳过
+     *
+     * @return 文件结束时返回null
+     */
+    private CalendarEvent nextEvent() throws IOException {
+        boolean inEvent = false;
+        boolean inAlarm = false;
+        // 嵌套在VEVENT中的其他组件(VALARM除外)
+        int skipDepth = 0;
+
+        String line;
+        while (null != (line = readLine())) {
+            int colon = indexOfValue(line);
+            if (colon < 0) {
+                continue;
+            }
+            int semicolon = line.indexOf(';');
+            int nameEnd = semicolon >= 0 && semicolon < colon ? semicolon : colon;
+            String name = line.substring(0, nameEnd).toUpperCase();
+            String params = nameEnd < colon ? line.substring(nameEnd + 1, colon) : "";
+            String value = line.substring(colon + 1);
+
+            if ("BEGIN".equals(name)) {
+                String component = value.trim().toUpperCase();
+                if (!inEvent) {
+                    if ("VEVENT".equals(component)) {
+                        inEvent = true;
+                        resetEvent();
+                    }
+                } else if (!inAlarm && 0 == skipDepth && "VALARM".equals(component)) {
+                    inAlarm = true;
+                    resetAlarm();
+                } else {
+                    skipDepth++;
+                }
+                continue;
+            }
+            if ("END".equals(name)) {
+                if (!inEvent) {
+                    continue;
+                }
+                if (skipDepth > 0) {
+                    skipDepth--;
+                } else if (inAlarm) {
+                    inAlarm = false;
+                    endAlarm();
+                } else {
+                    inEvent = false;
+                    CalendarEvent event = endEvent();
+                    if (null != event) {
+                        return event;
+                    }
+                }
+                continue;
+            }
+
+            if (!inEvent || skipDepth > 0) {
+                continue;
+            }
+            if (inAlarm) {
+                alarmProperty(name, params, value);
+            } else {
+                eventProperty(name, params, value);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 写入一批事件并清空
+     *
+     * @return 写入成功的事件数  permission deny : -2
+     */
+    private static int flush(CalendarSession session, List<CalendarEvent> batch) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        long[] eventIDs = CalendarProviderManager.addCalendarEvents(session, batch);
+        batch.clear();
+        if (null == eventIDs) {
+            return -2;
+        }
+        int count = 0;
+        for (long eventID : eventIDs) {
+            if (eventID >= 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 读取一个逻辑行(将以空格或制表符开始的后续行拼接到前一行),并按UTF-8解码
+     */
+    private String readLine() throws IOException {
+        String line = null != pending ? pending : reader.readLine();
+        pending = null;
+        while (null != line && line.isEmpty()) {
+            line = reader.readLine();
+        }
+        if (null == line) {
+            return null;
+        }
+
+        StringBuilder unfolded = null;
+        String next;
+        while (null != (next = reader.readLine())
+                && !next.isEmpty() && (next.charAt(0) == ' ' || next.charAt(0) == '\t')) {
+            if (null == unfolded) {
+                unfolded = new StringBuilder(line);
+            }
+            unfolded.append(next, 1, next.length());
+        }
+        pending = next;
+        return decode(null == unfolded ? line : unfolded.toString());
+    }
+
+    /**
+     * 将每个字符为一个字节的行按UTF-8解码
+     */
+    private static String decode(String line) {
+        for (int i = 0; i < line.length(); i++) {
+            if (line.charAt(i) >= 0x80) {
+                return new String(line.getBytes(StandardCharsets.ISO_8859_1), StandardCharsets.UTF_8);
+            }
+        }
+        return line;
+    }
+
+    /**
+     * 属性名和参数之后的冒号位置(参数值中引号内的冒号不算)
+     */
+    private static int indexOfValue(String line) {
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (c == ':' && !quoted) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 获取参数值,不存在返回null
+     */
+    private static String getParam(String params, String key) {
+        int start = 0;
+        while (start < params.length()) {
+            int end = params.indexOf(';', start);
+            if (end < 0) {
+                end = params.length();
+            }
+            int equals = params.indexOf('=', start);
+            if (equals > start && equals < end
+                    && params.substring(start, equals).trim().equalsIgnoreCase(key)) {
+                String value = params.substring(equals + 1, end).trim();
+                if (value.length() >= 2 && value.charAt(0) == '"' && value.charAt(value.length() - 1) == '"') {
+                    value = value.substring(1, value.length() - 1);
+                }
+                return value;
+            }
+            start = end + 1;
+        }
+        return null;
+    }
+
+    private void resetEvent() {
+        title = null;
+        description = null;
+        location = null;
+        start = 0;
+        end = 0;
+        duration = null;
+        rRule = null;
+        hasStart = false;
+        hasEnd = false;
+        allDay = false;
+        alarms.clear();
+    }
+
+    private void eventProperty(String name, String params, String value) {
+        try {
+            switch (name) {
+                case "SUMMARY":
+                    title = unescape(value);
+                    break;
+                case "DESCRIPTION":
+                    description = unescape(value);
+                    break;
+                case "LOCATION":
+                    location = unescape(value);
+                    break;
+                case "DTSTART":
+                    start = parseDateTime(value, params);
+                    hasStart = true;
+                    allDay = value.length() == 8;
+                    break;
+                case "DTEND":
+                    end = parseDateTime(value, params);
+                    hasEnd = true;
+                    break;
+                case "DURATION":
+                    duration = value;
+                    break;
+                case "RRULE":
+                    rRule = value;
+                    break;
+                default:
+                    break;
+            }
+        } catch (IllegalArgumentException e) {
+            // 格式错误的时间会导致事件缺少DTSTART而被跳过
+        }
+    }
+
+    /**
+     * 组装当前事件
+     *
+     * @return 缺少必要属性或格式错误时返回null
+     */
+    private CalendarEvent endEvent() {
+        if (!hasStart) {
+            return null;
+        }
+        if (!hasEnd) {
+            if (null != duration) {
+                try {
+                    end = start + RecurrenceIterator.parseDuration(duration);
+                } catch (IllegalArgumentException e) {
+                    return null;
+                }
+            } else {
+                // 没有结束时间时,全天事件持续一天,其他事件没有持续时间
+                end = allDay ? start + DAY_MILLIS : start;
+            }
+        }
+        if (null != rRule && !RRule.isValid(rRule)) {
+            return null;
+        }
+
+        CalendarEvent.Builder builder = new CalendarEvent.Builder()
+                .title(title)
+                .description(description)
+                .eventLocation(location)
+                .time(start, end)
+                .rRule(rRule);
+        for (int[] alarm : alarms) {
+            builder.reminder(alarm[0], alarm[1]);
+        }
+        return builder.build();
+    }
+
+    private void resetAlarm() {
+        trigger = null;
+        triggerAbsolute = false;
+        triggerRelatedEnd = false;
+        action = null;
+    }
+
+    private void alarmProperty(String name, String params, String value) {
+        switch (name) {
+            case "TRIGGER":
+                trigger = value;
+                triggerAbsolute = "DATE-TIME".equalsIgnoreCase(getParam(params, "VALUE"));
+                triggerRelatedEnd = "END".equalsIgnoreCase(getParam(params, "RELATED"));
+                break;
+            case "ACTION":
+                action = value.trim().toUpperCase();
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * 将当前提醒转换为提前的分钟数,只支持在事件开始前(或开始时)触发的提醒
+     */
+    private void endAlarm() {
+        if (null == trigger) {
+            return;
+        }
+        long advance;
+        try {
+            if (triggerAbsolute) {
+                if (!hasStart) {
+                    return;
+                }
+                advance = start - parseDateTime(trigger, "");
+            } else {
+                advance = -RecurrenceIterator.parseDuration(trigger);
+                if (triggerRelatedEnd) {
+                    if (!hasStart || !hasEnd) {
+                        return;
+                    }
+                    advance -= end - start;
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            return;
+        }
+        if (advance < 0) {
+            return;
+        }
+        int method = "EMAIL".equals(action)
+                ? CalendarContract.Reminders.METHOD_EMAIL : CalendarContract.Reminders.METHOD_ALERT;
+        alarms.add(new int[]{(int) (advance / 60000), method});
+    }
+
+    /**
+     * 解析时间
+     * <p>
+     * yyyyMMdd: 默认时区当天0点  yyyyMMddTHHmmssZ: UTC时间  yyyyMMddTHHmmss: TZID指定时区(没有则为默认时区)的本地时间
+     *
+     * @throws IllegalArgumentException 格式错误
+     */
+    private static long parseDateTime(String value, String params) {
+        value = value.trim();
+        int length = value.length();
+        if (length != 8 && length != 15 && length != 16) {
+            throw new IllegalArgumentException("Invalid date " + value);
+        }
+        int year = parseDigits(value, 0, 4);
+        int month = parseDigits(value, 4, 6);
+        int day = parseDigits(value, 6, 8);
+        if (month < 1 || month > 12 || day < 1 || day > 31) {
+            throw new IllegalArgumentException("Invalid date " + value);
+        }
+        long local = Util.epochDayFromCivil(year, month, day) * DAY_MILLIS;
+        if (length > 8) {
+            if (value.charAt(8) != 'T' || (length == 16 && value.charAt(15) != 'Z')) {
+                throw new IllegalArgumentException("Invalid date " + value);
+            }
+            int hour = parseDigits(value, 9, 11);
+            int minute = parseDigits(value, 11, 13);
+            int second = parseDigits(value, 13, 15);
+            if (hour > 23 || minute > 59 || second > 60) {
+                throw new IllegalArgumentException("Invalid date " + value);
+            }
+            local += ((hour * 60L + minute) * 60 + second) * 1000;
+            if (length == 16) {
+                return local;
+            }
+        }
+
+        String tzid = length > 8 ? getParam(params, "TZID") : null;
+        if (null == tzid) {
+            return RRule.toUtc(local);
+        }
+        TimeZone zone = TimeZone.getTimeZone(tzid);
+        if ("GMT".equals(zone.getID()) && !"GMT".equalsIgnoreCase(tzid)) {
+            // 无法识别的时区按默认时区处理
+            return RRule.toUtc(local);
+        }
+        long guess = local - zone.getOffset(local);
+        return local - zone.getOffset(guess);
+    }
+
+    private static int parseDigits(String value, int from, int to) {
+        int result = 0;
+        for (int i = from; i < to; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new IllegalArgumentException("Invalid date " + value);
+            }
+            result = result * 10 + (c - '0');
+        }
+        return result;
+    }
+
+    /**
+     * 处理TEXT类型属性值中的转义字符
+     */
+    static String unescape(String value) {
+        int backslash = value.indexOf('\\');
+        if (backslash < 0) {
+            return value;
+        }
+        StringBuilder result = new StringBuilder(value.length());
+        result.append(value, 0, backslash);
+        for (int i = backslash; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                char next = value.charAt(++i);
+                result.append(next == 'n' || next == 'N' ? '\n' : next);
+            } else {
+                result.append(c);
+            }
+        }
+        return result.toString();
+    }
+
+}
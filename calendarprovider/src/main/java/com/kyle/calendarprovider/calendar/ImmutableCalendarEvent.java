@@ -0,0 +1,255 @@
+package com.kyle.calendarprovider.calendar;
+
+import android.provider.CalendarContract;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 通过{@link CalendarEvent.Builder}创建的日历事件
+ * <p>
+ * 所有属性都是final并且在构造方法中赋值,任何修改都会抛出IllegalStateException,可在多个线程中共享
+ * 构建器不提供的属性(ID、日历账户等)保持默认值
+ */
+final class ImmutableCalendarEvent extends CalendarEvent {
+
+    private final String title;
+    private final String description;
+    private final String eventLocation;
+    private final long start;
+    private final long end;
+    private final int advanceTime;
+    private final String rRule;
+    /**
+     * 按(提前的分钟数, 提醒方式)成对存放,长度为提醒数的两倍
+     */
+    private final int[] reminderValues;
+
+    ImmutableCalendarEvent(String title, String description, String eventLocation,
+                           long start, long end, int advanceTime, String rRule, int[] reminderValues) {
+        this.title = title;
+        this.description = description;
+        this.eventLocation = eventLocation;
+        this.start = start;
+        this.end = end;
+        this.advanceTime = advanceTime;
+        this.rRule = rRule;
+        this.reminderValues = reminderValues;
+    }
+
+    private static IllegalStateException frozen() {
+        return new IllegalStateException("CalendarEvent is frozen");
+    }
+
+    @Override
+    public boolean isFrozen() {
+        return true;
+    }
+
+    @Override
+    public String getTitle() {
+        return title;
+    }
+
+    @Override
+    public String getDescription() {
+        return description;
+    }
+
+    @Override
+    public String getEventLocation() {
+        return eventLocation;
+    }
+
+    @Override
+    public long getStart() {
+        return start;
+    }
+
+    @Override
+    public long getEnd() {
+        return end;
+    }
+
+    @Override
+    public int getAdvanceTime() {
+        return advanceTime;
+    }
+
+    @Override
+    public String getRRule() {
+        return rRule;
+    }
+
+    @Override
+    public int getReminderCount() {
+        return reminderValues.length / 2;
+    }
+
+    @Override
+    public int getReminderMinutes(int index) {
+        checkIndex(index);
+        return reminderValues[index * 2];
+    }
+
+    @Override
+    public int getReminderMethod(int index) {
+        checkIndex(index);
+        return reminderValues[index * 2 + 1];
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= getReminderCount()) {
+            throw new IndexOutOfBoundsException("index: " + index + ", size: " + getReminderCount());
+        }
+    }
+
+    @Override
+    int[] getReminderValues() {
+        if (reminderValues.length > 0) {
+            return reminderValues.clone();
+        }
+        if (-2 == advanceTime) {
+            return new int[0];
+        }
+        return new int[]{advanceTime, CalendarContract.Reminders.METHOD_ALERT};
+    }
+
+    // ----------------------- 所有修改都不允许 -----------------------
+
+    @Override
+    public void setAdvanceTime(int advanceTime) {
+        throw frozen();
+    }
+
+    @Override
+    public void addReminder(int minutes, int method) {
+        throw frozen();
+    }
+
+    @Override
+    public void clearReminders() {
+        throw frozen();
+    }
+
+    @Override
+    void setId(long id) {
+        throw frozen();
+    }
+
+    @Override
+    void setCalID(long calID) {
+        throw frozen();
+    }
+
+    @Override
+    void setTitle(String title) {
+        throw frozen();
+    }
+
+    @Override
+    void setDescription(String description) {
+        throw frozen();
+    }
+
+    @Override
+    void setEventLocation(String eventLocation) {
+        throw frozen();
+    }
+
+    @Override
+    void setDisplayColor(int displayColor) {
+        throw frozen();
+    }
+
+    @Override
+    void setStatus(int status) {
+        throw frozen();
+    }
+
+    @Override
+    void setStart(long start) {
+        throw frozen();
+    }
+
+    @Override
+    void setEnd(long end) {
+        throw frozen();
+    }
+
+    @Override
+    void setDuration(String duration) {
+        throw frozen();
+    }
+
+    @Override
+    void setEventTimeZone(String eventTimeZone) {
+        throw frozen();
+    }
+
+    @Override
+    void setEventEndTimeZone(String eventEndTimeZone) {
+        throw frozen();
+    }
+
+    @Override
+    void setAllDay(int allDay) {
+        throw frozen();
+    }
+
+    @Override
+    void setAccessLevel(int accessLevel) {
+        throw frozen();
+    }
+
+    @Override
+    void setAvailability(int availability) {
+        throw frozen();
+    }
+
+    @Override
+    void setHasAlarm(int hasAlarm) {
+        throw frozen();
+    }
+
+    @Override
+    void setRRule(String rRule) {
+        throw frozen();
+    }
+
+    @Override
+    void setRDate(String rDate) {
+        throw frozen();
+    }
+
+    @Override
+    void setHasAttendeeData(int hasAttendeeData) {
+        throw frozen();
+    }
+
+    @Override
+    void setLastDate(int lastDate) {
+        throw frozen();
+    }
+
+    @Override
+    void setOrganizer(String organizer) {
+        throw frozen();
+    }
+
+    @Override
+    void setIsOrganizer(String isOrganizer) {
+        throw frozen();
+    }
+
+    @Override
+    void setReminders(List<EventReminders> reminders) {
+        throw frozen();
+    }
+
+    @Override
+    void setLoadedFields(Set<EventField> loadedFields) {
+        throw frozen();
+    }
+
+}
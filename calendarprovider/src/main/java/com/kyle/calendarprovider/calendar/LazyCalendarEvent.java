@@ -0,0 +1,320 @@
+package com.kyle.calendarprovider.calendar;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 延迟读取的日历事件
+ * <p>
+ * 查询结果先复制到列式的{@link EventTable}中(字符串在表内去重),事件不引用Cursor及其CursorWindow,返回后即可关闭,
+ * 事件只保存所在的表和行号,每个属性在第一次调用getter时才从表中读取,之后直接返回读取的结果
+ * 事件提醒在第一次调用{@link #getReminders()}时才查询,此时会一次性查询同一批次(最多500个)中所有事件的提醒
+ * <p>
+ * TIP: 事件只用于读取;属性的读取和提醒的查询都没有同步,同一次查询返回的事件只能在一个线程中使用
+ * 表只在Java堆中,事件列表不再被引用后随GC释放
+ */
+final class LazyCalendarEvent extends CalendarEvent {
+
+    // ----------------------- 已解码的属性 -----------------------
+    private static final int ID = 1;
+    private static final int CAL_ID = 1 << 1;
+    private static final int TITLE = 1 << 2;
+    private static final int DESCRIPTION = 1 << 3;
+    private static final int EVENT_LOCATION = 1 << 4;
+    private static final int DISPLAY_COLOR = 1 << 5;
+    private static final int STATUS = 1 << 6;
+    private static final int START = 1 << 7;
+    private static final int END = 1 << 8;
+    private static final int DURATION = 1 << 9;
+    private static final int EVENT_TIME_ZONE = 1 << 10;
+    private static final int EVENT_END_TIME_ZONE = 1 << 11;
+    private static final int ALL_DAY = 1 << 12;
+    private static final int ACCESS_LEVEL = 1 << 13;
+    private static final int AVAILABILITY = 1 << 14;
+    private static final int HAS_ALARM = 1 << 15;
+    private static final int R_RULE = 1 << 16;
+    private static final int R_DATE = 1 << 17;
+    private static final int HAS_ATTENDEE_DATA = 1 << 18;
+    private static final int LAST_DATE = 1 << 19;
+    private static final int ORGANIZER = 1 << 20;
+    private static final int IS_ORGANIZER = 1 << 21;
+
+    private final Snapshot snapshot;
+    private final int position;
+    private int decoded;
+    /**
+     * 提醒是否已经查询
+     */
+    private boolean remindersLoaded;
+
+    private LazyCalendarEvent(Snapshot snapshot, int position) {
+        this.snapshot = snapshot;
+        this.position = position;
+    }
+
+    /**
+     * 为查询结果的每一行创建延迟读取的事件
+     * <p>
+     * 从Cursor的第一行开始读取所有行,此方法不会关闭Cursor,返回后可以立即关闭
+     */
+    static List<CalendarEvent> wrap(Context context, Cursor cursor, boolean withReminders) {
+        EventRowMapper mapper = new EventRowMapper(cursor);
+        cursor.moveToPosition(-1);
+        EventTable table = EventTable.build(cursor);
+
+        int count = table.size();
+        Snapshot snapshot = new Snapshot(context, table, count, withReminders);
+        List<CalendarEvent> events = new ArrayList<>(count);
+        for (int position = 0; position < count; position++) {
+            LazyCalendarEvent event = new LazyCalendarEvent(snapshot, position);
+            event.setLoadedFields(mapper.fields);
+            snapshot.events[position] = event;
+            events.add(event);
+        }
+        return events;
+    }
+
+    /**
+     * @return 属性是否是第一次读取(同时标记为已解码)
+     */
+    private boolean decode(int field) {
+        if ((decoded & field) != 0) {
+            return false;
+        }
+        decoded |= field;
+        return true;
+    }
+
+    @Override
+    public long getId() {
+        if (decode(ID)) {
+            setId(snapshot.table.getId(position));
+        }
+        return super.getId();
+    }
+
+    @Override
+    public long getCalID() {
+        if (decode(CAL_ID)) {
+            setCalID(snapshot.table.getCalID(position));
+        }
+        return super.getCalID();
+    }
+
+    @Override
+    public String getTitle() {
+        if (decode(TITLE)) {
+            setTitle(snapshot.table.getTitle(position));
+        }
+        return super.getTitle();
+    }
+
+    @Override
+    public String getDescription() {
+        if (decode(DESCRIPTION)) {
+            setDescription(snapshot.table.getDescription(position));
+        }
+        return super.getDescription();
+    }
+
+    @Override
+    public String getEventLocation() {
+        if (decode(EVENT_LOCATION)) {
+            setEventLocation(snapshot.table.getEventLocation(position));
+        }
+        return super.getEventLocation();
+    }
+
+    @Override
+    public int getDisplayColor() {
+        if (decode(DISPLAY_COLOR)) {
+            setDisplayColor(snapshot.table.getDisplayColor(position));
+        }
+        return super.getDisplayColor();
+    }
+
+    @Override
+    public int getStatus() {
+        if (decode(STATUS)) {
+            setStatus(snapshot.table.getStatus(position));
+        }
+        return super.getStatus();
+    }
+
+    @Override
+    public long getStart() {
+        if (decode(START)) {
+            setStart(snapshot.table.getStart(position));
+        }
+        return super.getStart();
+    }
+
+    @Override
+    public long getEnd() {
+        if (decode(END)) {
+            setEnd(snapshot.table.getEnd(position));
+        }
+        return super.getEnd();
+    }
+
+    @Override
+    public String getDuration() {
+        if (decode(DURATION)) {
+            setDuration(snapshot.table.getDuration(position));
+        }
+        return super.getDuration();
+    }
+
+    @Override
+    public String getEventTimeZone() {
+        if (decode(EVENT_TIME_ZONE)) {
+            setEventTimeZone(snapshot.table.getEventTimeZone(position));
+        }
+        return super.getEventTimeZone();
+    }
+
+    @Override
+    public String getEventEndTimeZone() {
+        if (decode(EVENT_END_TIME_ZONE)) {
+            setEventEndTimeZone(snapshot.table.getEventEndTimeZone(position));
+        }
+        return super.getEventEndTimeZone();
+    }
+
+    @Override
+    public int getAllDay() {
+        if (decode(ALL_DAY)) {
+            setAllDay(snapshot.table.getAllDay(position));
+        }
+        return super.getAllDay();
+    }
+
+    @Override
+    public int getAccessLevel() {
+        if (decode(ACCESS_LEVEL)) {
+            setAccessLevel(snapshot.table.getAccessLevel(position));
+        }
+        return super.getAccessLevel();
+    }
+
+    @Override
+    public int getAvailability() {
+        if (decode(AVAILABILITY)) {
+            setAvailability(snapshot.table.getAvailability(position));
+        }
+        return super.getAvailability();
+    }
+
+    @Override
+    public int getHasAlarm() {
+        if (decode(HAS_ALARM)) {
+            setHasAlarm(snapshot.table.getHasAlarm(position));
+        }
+        return super.getHasAlarm();
+    }
+
+    @Override
+    public String getRRule() {
+        if (decode(R_RULE)) {
+            setRRule(snapshot.table.getRRule(position));
+        }
+        return super.getRRule();
+    }
+
+    @Override
+    public String getRDate() {
+        if (decode(R_DATE)) {
+            setRDate(snapshot.table.getRDate(position));
+        }
+        return super.getRDate();
+    }
+
+    @Override
+    public int getHasAttendeeData() {
+        if (decode(HAS_ATTENDEE_DATA)) {
+            setHasAttendeeData(snapshot.table.getHasAttendeeData(position));
+        }
+        return super.getHasAttendeeData();
+    }
+
+    @Override
+    public int getLastDate() {
+        if (decode(LAST_DATE)) {
+            setLastDate((int) snapshot.table.getLastDate(position));
+        }
+        return super.getLastDate();
+    }
+
+    @Override
+    public String getOrganizer() {
+        if (decode(ORGANIZER)) {
+            setOrganizer(snapshot.table.getOrganizer(position));
+        }
+        return super.getOrganizer();
+    }
+
+    @Override
+    public String getIsOrganizer() {
+        if (decode(IS_ORGANIZER)) {
+            setIsOrganizer(snapshot.table.getIsOrganizer(position));
+        }
+        return super.getIsOrganizer();
+    }
+
+    @Override
+    public List<EventReminders> getReminders() {
+        snapshot.loadReminders(position);
+        return super.getReminders();
+    }
+
+    /**
+     * 同一次查询的所有事件共享的数据
+     */
+    private static class Snapshot {
+
+        /**
+         * Application Context,避免持有Activity
+         */
+        private final Context context;
+        private final EventTable table;
+        private final LazyCalendarEvent[] events;
+        private final boolean withReminders;
+
+        Snapshot(Context context, EventTable table, int count, boolean withReminders) {
+            this.context = context.getApplicationContext();
+            this.table = table;
+            this.events = new LazyCalendarEvent[count];
+            this.withReminders = withReminders;
+        }
+
+        /**
+         * 指定行的提醒还没有查询时,查询所在批次中所有事件的提醒
+         */
+        void loadReminders(int position) {
+            if (!withReminders || events[position].remindersLoaded) {
+                return;
+            }
+            int batchSize = CalendarProviderManager.BATCH_QUERY_SIZE;
+            int from = position / batchSize * batchSize;
+            int to = Math.min(events.length, from + batchSize);
+            for (int i = from; i < to; i++) {
+                events[i].remindersLoaded = true;
+            }
+            if (!CalendarPermission.canRead(context)) {
+                return;
+            }
+            try {
+                List<CalendarEvent> batch = Arrays.<CalendarEvent>asList(events).subList(from, to);
+                CalendarProviderManager.loadReminders(CalendarSession.wrap(context), batch);
+            } catch (SecurityException e) {
+                CalendarPermission.invalidate();
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,66 @@
+package com.kyle.calendarprovider.calendar;
+
+/**
+ * 事件查询统计
+ * <p>
+ * 查询时传入,查询结束后填充读取的事件数以及字符串去重的结果
+ *
+ * @see CalendarProviderManager#queryAccountEvent(CalendarSession, long, java.util.Set, QueryStats)
+ * @see CalendarEventIterator#getStats()
+ */
+public final class QueryStats {
+
+    private int rowCount;
+    private int pooledStringCount;
+    private int dedupedStringCount;
+    private long savedBytes;
+
+    public QueryStats() {
+    }
+
+    void record(int rowCount, StringPool pool) {
+        this.rowCount = rowCount;
+        this.pooledStringCount = pool.size();
+        this.dedupedStringCount = pool.getHitCount();
+        this.savedBytes = pool.getSavedBytes();
+    }
+
+    /**
+     * @return 读取的事件数
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * @return 字典中收录的字符串数
+     */
+    public int getPooledStringCount() {
+        return pooledStringCount;
+    }
+
+    /**
+     * @return 被替换为已收录实例的字符串数
+     */
+    public int getDedupedStringCount() {
+        return dedupedStringCount;
+    }
+
+    /**
+     * @return 去重节省的内存(估算值,单位字节)
+     */
+    public long getSavedBytes() {
+        return savedBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "QueryStats{" +
+                "rowCount=" + rowCount +
+                ", pooledStringCount=" + pooledStringCount +
+                ", dedupedStringCount=" + dedupedStringCount +
+                ", savedBytes=" + savedBytes +
+                '}';
+    }
+
+}
@@ -0,0 +1,567 @@
+package com.kyle.calendarprovider.calendar;
+
+import com.kyle.calendarprovider.Util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 编译后的事件重复规则(不可变)
+ * <p>
+ * 通过{@link #compile(String)}将RRULE字符串解析为此对象,解析结果按字符串缓存,
+ * 相同的重复规则只会解析一次(UNTIL为本地时间的规则在默认时区改变后重新解析)
+ * <p>
+ * 星期使用 0: 周日  1: 周一 ... 6: 周六 表示(与{@link Util#getDayOfWeek(long)}一致)
+ *
+ * @see RRuleConstant
+ */
+public final class RRule {
+
+    // ----------------------- 重复频率 -----------------------
+    public static final int SECONDLY = 1;
+    public static final int MINUTELY = 2;
+    public static final int HOURLY = 3;
+    public static final int DAILY = 4;
+    public static final int WEEKLY = 5;
+    public static final int MONTHLY = 6;
+    public static final int YEARLY = 7;
+
+    private static final String[] FREQ_NAMES = new String[]{
+            null, "SECONDLY", "MINUTELY", "HOURLY", "DAILY", "WEEKLY", "MONTHLY", "YEARLY"
+    };
+
+    private static final String[] WEEKDAY_NAMES = new String[]{"SU", "MO", "TU", "WE", "TH", "FR", "SA"};
+
+    /**
+     * 缓存的最大规则数
+     */
+    private static final int CACHE_SIZE = 256;
+
+    private static final Map<String, RRule> CACHE = new LinkedHashMap<String, RRule>(CACHE_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, RRule> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    private static final int[] EMPTY = new int[0];
+
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+
+    /**
+     * BYSETPOS之外的BYxxx部分
+     */
+    private static final int BY_PARTS = ((1 << 14) - (1 << 5)) & ~(1 << 10);
+
+    private final String rule;
+    /**
+     * 转换本地时间的UNTIL时使用的默认时区,UNTIL与时区无关时为null
+     */
+    private final String timeZoneID;
+
+    final int freq;
+    final int interval;
+    /**
+     * 发生次数,0表示不限制
+     */
+    final int count;
+    /**
+     * 终止时间(包含),无终止时间时为Long.MAX_VALUE
+     */
+    final long until;
+    /**
+     * 本地时间的UNTIL(未按时区转换),UNTIL为UTC时间或没有UNTIL时等于until
+     * <p>
+     * 按事件自己的时区展开时使用此值重新转换
+     */
+    final long localUntil;
+    final int wkst;
+    /**
+     * BYDAY: (序数 << 3) | 星期,序数为0表示每个星期几
+     */
+    final int[] byDay;
+    final int[] byMonthDay;
+    final int[] byYearDay;
+    final int[] byWeekNo;
+    final int[] byMonth;
+    final int[] bySetPos;
+    final int[] byHour;
+    final int[] byMinute;
+    final int[] bySecond;
+
+    private RRule(String rule, String timeZoneID, int freq, int interval, int count, long until,
+                  long localUntil, int wkst,
+                  int[] byDay, int[] byMonthDay, int[] byYearDay, int[] byWeekNo, int[] byMonth,
+                  int[] bySetPos, int[] byHour, int[] byMinute, int[] bySecond) {
+        this.rule = rule;
+        this.timeZoneID = timeZoneID;
+        this.freq = freq;
+        this.interval = interval;
+        this.count = count;
+        this.until = until;
+        this.localUntil = localUntil;
+        this.wkst = wkst;
+        this.byDay = byDay;
+        this.byMonthDay = byMonthDay;
+        this.byYearDay = byYearDay;
+        this.byWeekNo = byWeekNo;
+        this.byMonth = byMonth;
+        this.bySetPos = bySetPos;
+        this.byHour = byHour;
+        this.byMinute = byMinute;
+        this.bySecond = bySecond;
+    }
+
+    /**
+     * 编译重复规则
+     *
+     * @param rule 完整的重复规则,例:FREQ=WEEKLY;COUNT=10;WKST=SU;BYDAY=TU,TH
+     * @throws IllegalArgumentException 重复规则格式错误
+     */
+    public static RRule compile(String rule) {
+        if (null == rule) {
+            throw new IllegalArgumentException("rRule can not be null");
+        }
+        synchronized (CACHE) {
+            RRule compiled = CACHE.get(rule);
+            // 默认时区改变后,本地时间的UNTIL需要重新转换
+            if (null != compiled
+                    && (null == compiled.timeZoneID || compiled.timeZoneID.equals(Util.getTimeZoneID()))) {
+                return compiled;
+            }
+        }
+
+        RRule compiled = parse(rule);
+        synchronized (CACHE) {
+            CACHE.put(rule, compiled);
+        }
+        return compiled;
+    }
+
+    /**
+     * 检查重复规则是否合法
+     */
+    public static boolean isValid(String rule) {
+        try {
+            compile(rule);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static RRule parse(String rule) {
+        int freq = 0;
+        int interval = 1;
+        int count = 0;
+        long until = Long.MAX_VALUE;
+        long localUntil = Long.MAX_VALUE;
+        String timeZoneID = null;
+        int wkst = 1;
+        int[] byDay = EMPTY;
+        int[] byMonthDay = EMPTY;
+        int[] byYearDay = EMPTY;
+        int[] byWeekNo = EMPTY;
+        int[] byMonth = EMPTY;
+        int[] bySetPos = EMPTY;
+        int[] byHour = EMPTY;
+        int[] byMinute = EMPTY;
+        int[] bySecond = EMPTY;
+
+        // 已出现的部分,每个部分只能出现一次
+        int seen = 0;
+
+        int length = rule.length();
+        int start = 0;
+        while (start < length) {
+            int end = rule.indexOf(';', start);
+            if (end < 0) {
+                end = length;
+            }
+            int equals = rule.indexOf('=', start);
+            if (equals < 0 || equals >= end) {
+                throw invalid(rule, "missing '=' in part " + rule.substring(start, end));
+            }
+            String name = rule.substring(start, equals);
+            String value = rule.substring(equals + 1, end);
+            if (value.isEmpty()) {
+                throw invalid(rule, "empty value for " + name);
+            }
+
+            int bit;
+            switch (name) {
+                case "FREQ":
+                    bit = 1;
+                    freq = indexOf(FREQ_NAMES, value);
+                    if (freq <= 0) {
+                        throw invalid(rule, "unknown FREQ " + value);
+                    }
+                    break;
+                case "INTERVAL":
+                    bit = 1 << 1;
+                    interval = parseInt(rule, value, 1, Integer.MAX_VALUE, false);
+                    break;
+                case "COUNT":
+                    bit = 1 << 2;
+                    count = parseInt(rule, value, 1, Integer.MAX_VALUE, false);
+                    break;
+                case "UNTIL":
+                    bit = 1 << 3;
+                    until = parseUntil(rule, value);
+                    localUntil = until;
+                    if (value.charAt(value.length() - 1) != 'Z') {
+                        timeZoneID = Util.getTimeZoneID();
+                        until = toUtc(localUntil);
+                    }
+                    break;
+                case "WKST":
+                    bit = 1 << 4;
+                    wkst = indexOf(WEEKDAY_NAMES, value);
+                    if (wkst < 0) {
+                        throw invalid(rule, "unknown WKST " + value);
+                    }
+                    break;
+                case "BYDAY":
+                    bit = 1 << 5;
+                    byDay = parseByDay(rule, value);
+                    break;
+                case "BYMONTHDAY":
+                    bit = 1 << 6;
+                    byMonthDay = parseIntList(rule, value, -31, 31, true);
+                    break;
+                case "BYYEARDAY":
+                    bit = 1 << 7;
+                    byYearDay = parseIntList(rule, value, -366, 366, true);
+                    break;
+                case "BYWEEKNO":
+                    bit = 1 << 8;
+                    byWeekNo = parseIntList(rule, value, -53, 53, true);
+                    break;
+                case "BYMONTH":
+                    bit = 1 << 9;
+                    byMonth = parseIntList(rule, value, 1, 12, false);
+                    break;
+                case "BYSETPOS":
+                    bit = 1 << 10;
+                    bySetPos = parseIntList(rule, value, -366, 366, true);
+                    break;
+                case "BYHOUR":
+                    bit = 1 << 11;
+                    byHour = parseIntList(rule, value, 0, 23, false);
+                    break;
+                case "BYMINUTE":
+                    bit = 1 << 12;
+                    byMinute = parseIntList(rule, value, 0, 59, false);
+                    break;
+                case "BYSECOND":
+                    bit = 1 << 13;
+                    bySecond = parseIntList(rule, value, 0, 60, false);
+                    break;
+                default:
+                    throw invalid(rule, "unknown part " + name);
+            }
+            if ((seen & bit) != 0) {
+                throw invalid(rule, "duplicate part " + name);
+            }
+            seen |= bit;
+
+            start = end + 1;
+            if (end == length - 1) {
+                // 以';'结尾
+                throw invalid(rule, "trailing ';'");
+            }
+        }
+
+        // ----------------------- RFC 5545 约束 -----------------------
+        if (freq == 0) {
+            throw invalid(rule, "FREQ is required");
+        }
+        if (count > 0 && until != Long.MAX_VALUE) {
+            throw invalid(rule, "COUNT and UNTIL can not both be set");
+        }
+        if (byMonthDay.length > 0 && freq == WEEKLY) {
+            throw invalid(rule, "BYMONTHDAY can not be used with FREQ=WEEKLY");
+        }
+        if (byYearDay.length > 0 && (freq == DAILY || freq == WEEKLY || freq == MONTHLY)) {
+            throw invalid(rule, "BYYEARDAY can not be used with FREQ=" + FREQ_NAMES[freq]);
+        }
+        if (byWeekNo.length > 0 && freq != YEARLY) {
+            throw invalid(rule, "BYWEEKNO can only be used with FREQ=YEARLY");
+        }
+        if (freq != MONTHLY && freq != YEARLY) {
+            for (int day : byDay) {
+                if ((day >> 3) != 0) {
+                    throw invalid(rule, "BYDAY ordinals can only be used with FREQ=MONTHLY or YEARLY");
+                }
+            }
+        }
+        if (freq == YEARLY && byWeekNo.length > 0) {
+            for (int day : byDay) {
+                if ((day >> 3) != 0) {
+                    throw invalid(rule, "BYDAY ordinals can not be used with BYWEEKNO");
+                }
+            }
+        }
+        if (bySetPos.length > 0 && (seen & BY_PARTS) == 0) {
+            throw invalid(rule, "BYSETPOS requires another BYxxx part");
+        }
+
+        return new RRule(rule, timeZoneID, freq, interval, count, until, localUntil, wkst, byDay, byMonthDay,
+                byYearDay, byWeekNo, byMonth, bySetPos, byHour, byMinute, bySecond);
+    }
+
+    /**
+     * 解析终止时间
+     * <p>
+     * yyyyMMdd: 当天结束  yyyyMMddTHHmmssZ: UTC时间  yyyyMMddTHHmmss: 本地时间
+     *
+     * @return UTC时间,或未按时区转换的本地时间
+     */
+    private static long parseUntil(String rule, String value) {
+        int length = value.length();
+        if (length != 8 && length != 15 && length != 16) {
+            throw invalid(rule, "malformed UNTIL " + value);
+        }
+        int year = parseDigits(rule, value, 0, 4);
+        int month = parseDigits(rule, value, 4, 6);
+        int day = parseDigits(rule, value, 6, 8);
+        if (month < 1 || month > 12 || day < 1 || day > 31) {
+            throw invalid(rule, "malformed UNTIL " + value);
+        }
+        long epochDay = Util.epochDayFromCivil(year, month, day);
+        if (Util.civilFromEpochDay(epochDay) != year * 10000 + month * 100 + day) {
+            throw invalid(rule, "malformed UNTIL " + value);
+        }
+
+        long local;
+        if (length == 8) {
+            local = (epochDay + 1) * DAY_MILLIS - 1;
+        } else {
+            if (value.charAt(8) != 'T' || (length == 16 && value.charAt(15) != 'Z')) {
+                throw invalid(rule, "malformed UNTIL " + value);
+            }
+            int hour = parseDigits(rule, value, 9, 11);
+            int minute = parseDigits(rule, value, 11, 13);
+            int second = parseDigits(rule, value, 13, 15);
+            if (hour > 23 || minute > 59 || second > 60) {
+                throw invalid(rule, "malformed UNTIL " + value);
+            }
+            local = epochDay * DAY_MILLIS + ((hour * 60L + minute) * 60 + second) * 1000;
+        }
+        return local;
+    }
+
+    /**
+     * 将默认时区的本地时间转换为UTC时间
+     */
+    static long toUtc(long local) {
+        long guess = local - Util.getOffset(local);
+        return local - Util.getOffset(guess);
+    }
+
+    private static int[] parseByDay(String rule, String value) {
+        int[] result = new int[countItems(value)];
+        int index = 0;
+        int start = 0;
+        while (start <= value.length()) {
+            int end = value.indexOf(',', start);
+            if (end < 0) {
+                end = value.length();
+            }
+            if (end - start < 2) {
+                throw invalid(rule, "malformed BYDAY " + value);
+            }
+            int weekday = indexOf(WEEKDAY_NAMES, value.substring(end - 2, end));
+            if (weekday < 0) {
+                throw invalid(rule, "malformed BYDAY " + value);
+            }
+            int ordinal = 0;
+            if (end - start > 2) {
+                ordinal = parseInt(rule, value.substring(start, end - 2), -53, 53, true);
+                if (ordinal == 0) {
+                    throw invalid(rule, "malformed BYDAY " + value);
+                }
+            }
+            result[index++] = (ordinal << 3) | weekday;
+            start = end + 1;
+        }
+        return result;
+    }
+
+    private static int[] parseIntList(String rule, String value, int min, int max, boolean nonZero) {
+        int[] result = new int[countItems(value)];
+        int index = 0;
+        int start = 0;
+        while (start <= value.length()) {
+            int end = value.indexOf(',', start);
+            if (end < 0) {
+                end = value.length();
+            }
+            result[index++] = parseInt(rule, value.substring(start, end), min, max, nonZero);
+            start = end + 1;
+        }
+        return result;
+    }
+
+    /**
+     * 解析整数,只允许可选的正负号和数字(不允许空格)
+     */
+    private static int parseInt(String rule, String value, int min, int max, boolean nonZero) {
+        int length = value.length();
+        int i = 0;
+        boolean negative = false;
+        if (length > 0 && (value.charAt(0) == '+' || value.charAt(0) == '-')) {
+            negative = value.charAt(0) == '-';
+            i = 1;
+        }
+        if (i == length || length - i > 10) {
+            throw invalid(rule, "malformed number " + value);
+        }
+        long result = 0;
+        for (; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                throw invalid(rule, "malformed number " + value);
+            }
+            result = result * 10 + (c - '0');
+        }
+        if (negative) {
+            result = -result;
+        }
+        if (result < min || result > max || (nonZero && result == 0)) {
+            throw invalid(rule, "number out of range " + value);
+        }
+        return (int) result;
+    }
+
+    private static int parseDigits(String rule, String value, int start, int end) {
+        int result = 0;
+        for (int i = start; i < end; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                throw invalid(rule, "malformed UNTIL " + value);
+            }
+            result = result * 10 + (c - '0');
+        }
+        return result;
+    }
+
+    private static int countItems(String value) {
+        int count = 1;
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) == ',') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static int indexOf(String[] names, String value) {
+        for (int i = 0; i < names.length; i++) {
+            if (value.equals(names[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static IllegalArgumentException invalid(String rule, String reason) {
+        return new IllegalArgumentException("Invalid rRule \"" + rule + "\": " + reason);
+    }
+
+    // ----------------------- 规则属性 -----------------------
+
+    /**
+     * @return {@link #DAILY} {@link #WEEKLY} {@link #MONTHLY} {@link #YEARLY} ...
+     */
+    public int getFreq() {
+        return freq;
+    }
+
+    public int getInterval() {
+        return interval;
+    }
+
+    /**
+     * @return 发生次数,0表示不限制
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * @return 终止时间(包含),无终止时间时为Long.MAX_VALUE
+     */
+    public long getUntil() {
+        return until;
+    }
+
+    /**
+     * UNTIL是否为本地时间(按默认时区转换为{@link #getUntil()})
+     */
+    boolean hasLocalUntil() {
+        return null != timeZoneID;
+    }
+
+    public int getWkst() {
+        return wkst;
+    }
+
+    /**
+     * @return BYDAY中的星期,与{@link #getByDayOrdinals()}一一对应
+     */
+    public int[] getByDayWeekdays() {
+        int[] result = new int[byDay.length];
+        for (int i = 0; i < byDay.length; i++) {
+            result[i] = byDay[i] & 7;
+        }
+        return result;
+    }
+
+    /**
+     * @return BYDAY中的序数(0表示每个星期几)
+     */
+    public int[] getByDayOrdinals() {
+        int[] result = new int[byDay.length];
+        for (int i = 0; i < byDay.length; i++) {
+            result[i] = byDay[i] >> 3;
+        }
+        return result;
+    }
+
+    public int[] getByMonthDay() {
+        return byMonthDay.clone();
+    }
+
+    public int[] getByYearDay() {
+        return byYearDay.clone();
+    }
+
+    public int[] getByWeekNo() {
+        return byWeekNo.clone();
+    }
+
+    public int[] getByMonth() {
+        return byMonth.clone();
+    }
+
+    public int[] getBySetPos() {
+        return bySetPos.clone();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || (o instanceof RRule && rule.equals(((RRule) o).rule));
+    }
+
+    @Override
+    public int hashCode() {
+        return rule.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return rule;
+    }
+
+}
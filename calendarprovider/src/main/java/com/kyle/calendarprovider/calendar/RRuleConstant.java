@@ -102,7 +102,7 @@ class RRuleConstant {
     /**
      * 每月某天重复
      */
-    static final String REPEAT_CYCLE_MONTHLY = "FREQ=WEEKLY;INTERVAL=2;WKST=SU;BYMONTHDAY =";
+    static final String REPEAT_CYCLE_MONTHLY = "FREQ=MONTHLY;INTERVAL=1;WKST=SU;BYMONTHDAY=";
 
     /**
      * 每周重复 - 周一
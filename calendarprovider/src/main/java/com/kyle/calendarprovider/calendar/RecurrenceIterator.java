@@ -0,0 +1,603 @@
+package com.kyle.calendarprovider.calendar;
+
+import com.kyle.calendarprovider.Util;
+
+/**
+ * 重复事件展开(不依赖系统日历)
+ * <p>
+ * 按时间顺序逐个计算事件在指定时间段内的每次发生的开始/结束时间,
+ * 计算过程中不创建任何对象,同一个实例可通过reset方法重复用于多个事件
+ * <p>
+ * 重复规则按事件时区的本地时间展开(全天事件按UTC,未指定时区时按默认时区),
+ * 跨越夏令时时每次发生的本地时刻保持不变,每个时区的偏移量取自{@link Util#getOffset(String, long)}的转换表
+ * 支持FREQ=DAILY/WEEKLY/MONTHLY/YEARLY,以及COUNT、UNTIL、INTERVAL、WKST、
+ * BYDAY(含序数)、BYMONTHDAY、BYYEARDAY、BYWEEKNO、BYMONTH、BYSETPOS
+ * <p>
+ * 用法：
+ * <pre>
+ * RecurrenceIterator iterator = new RecurrenceIterator();
+ * iterator.reset(calendarEvent, windowBegin, windowEnd);
+ * while (iterator.next()) {
+ *     long begin = iterator.getBegin();
+ *     long end = iterator.getEnd();
+ * }
+ * </pre>
+ */
+public final class RecurrenceIterator {
+
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+
+    /**
+     * 连续没有任何发生的周期数上限(避免永远不会发生的规则无限循环)
+     */
+    private static final int MAX_EMPTY_PERIODS = 10000;
+
+    /**
+     * 当前周期内的候选日期(距1970-01-01的天数)
+     */
+    private final long[] days = new long[366];
+    private final boolean[] selected = new boolean[366];
+    private int dayCount;
+    private int dayIndex;
+
+    private RRule rule;
+    /**
+     * 展开使用的时区,null表示默认时区
+     */
+    private String timeZoneID;
+    /**
+     * 按展开时区转换后的终止时间
+     */
+    private long until;
+    private long start;
+    private long duration;
+    private long from;
+    private long to;
+
+    /**
+     * 开始时间在展开时区中的日期和时刻
+     */
+    private long startDay;
+    private long timeOfDay;
+    private int startYear;
+    private int startMonth;
+    private int startDayOfMonth;
+    private int startWeekday;
+    /**
+     * 第一个周期所在周的第一天(WEEKLY)
+     */
+    private long weekStart;
+    /**
+     * 可能发生的最后一天
+     */
+    private long lastDay;
+
+    private long period;
+    private int emitted;
+    private boolean done;
+
+    private long begin;
+    private long end;
+
+    /**
+     * 展开日历事件在[from, to)时间段内的发生
+     * <p>
+     * 持续时间优先使用事件的DURATION,否则使用结束时间 - 开始时间
+     * 全天事件按UTC展开,其它事件按事件的EVENT_TIMEZONE展开
+     *
+     * @throws IllegalArgumentException 事件的重复规则格式错误或不支持
+     */
+    public void reset(CalendarEvent calendarEvent, long from, long to) {
+        long duration;
+        if (null != calendarEvent.getDuration()) {
+            duration = parseDuration(calendarEvent.getDuration());
+        } else {
+            duration = Math.max(0, calendarEvent.getEnd() - calendarEvent.getStart());
+        }
+
+        RRule rule = null;
+        if (null != calendarEvent.getRRule()) {
+            rule = RRule.compile(CalendarProviderManager.getFullRRuleForRRule(calendarEvent.getRRule(),
+                    calendarEvent.getStart(), calendarEvent.getEnd()));
+        }
+        String timeZoneID = 1 == calendarEvent.getAllDay() ? "UTC" : calendarEvent.getEventTimeZone();
+        reset(calendarEvent.getStart(), duration, rule, timeZoneID, from, to);
+    }
+
+    /**
+     * 按默认时区展开重复规则在[from, to)时间段内的发生
+     *
+     * @param start    第一次发生的开始时间
+     * @param duration 每次发生的持续时间
+     * @param rule     重复规则,{@code null}表示只发生一次
+     * @throws IllegalArgumentException 重复规则不支持
+     */
+    public void reset(long start, long duration, RRule rule, long from, long to) {
+        reset(start, duration, rule, null, from, to);
+    }
+
+    /**
+     * 按指定时区展开重复规则在[from, to)时间段内的发生
+     *
+     * @param start      第一次发生的开始时间
+     * @param duration   每次发生的持续时间
+     * @param rule       重复规则,{@code null}表示只发生一次
+     * @param timeZoneID 展开使用的时区,{@code null}表示默认时区
+     * @throws IllegalArgumentException 重复规则不支持
+     */
+    public void reset(long start, long duration, RRule rule, String timeZoneID, long from, long to) {
+        if (null != rule && (rule.freq < RRule.DAILY || rule.byHour.length > 0
+                || rule.byMinute.length > 0 || rule.bySecond.length > 0)) {
+            throw new IllegalArgumentException("Unsupported rRule " + rule);
+        }
+
+        this.rule = rule;
+        this.timeZoneID = timeZoneID;
+        this.start = start;
+        this.duration = duration;
+        this.from = from;
+        this.to = to;
+        this.dayCount = 0;
+        this.dayIndex = 0;
+        this.emitted = 0;
+        this.done = false;
+
+        long local = start + offset(start);
+        startDay = floorDiv(local, DAY_MILLIS);
+        timeOfDay = local - startDay * DAY_MILLIS;
+
+        if (null == rule) {
+            return;
+        }
+
+        int date = Util.civilFromEpochDay(startDay);
+        startYear = date / 10000;
+        startMonth = date / 100 % 100;
+        startDayOfMonth = date % 100;
+        startWeekday = weekday(startDay);
+        weekStart = startDay - floorMod(startWeekday - rule.wkst, 7);
+        // 本地时间的UNTIL按展开时区重新转换
+        until = null != timeZoneID && rule.hasLocalUntil() ? toUtc(rule.localUntil) : rule.until;
+
+        long bound = Math.min(to, until);
+        lastDay = bound == Long.MAX_VALUE ? Long.MAX_VALUE : localDay(bound) + 1;
+
+        // 没有COUNT时直接跳到时间段开始前的周期
+        period = rule.count > 0 || from <= start ? 0 : firstPeriod(localDay(from - duration) - 1);
+    }
+
+    /**
+     * 移动到下一次发生
+     *
+     * @return 时间段内没有更多的发生时返回false
+     */
+    public boolean next() {
+        if (done) {
+            return false;
+        }
+
+        if (null == rule) {
+            done = true;
+            begin = start;
+            end = start + duration;
+            return begin < to && (end > from || begin >= from);
+        }
+
+        while (true) {
+            while (dayIndex < dayCount) {
+                long day = days[dayIndex++];
+                if (day < startDay) {
+                    continue;
+                }
+                long occurrenceBegin = toUtc(day * DAY_MILLIS + timeOfDay);
+                if (occurrenceBegin > until || occurrenceBegin >= to
+                        || (rule.count > 0 && ++emitted > rule.count)) {
+                    done = true;
+                    return false;
+                }
+                long occurrenceEnd = occurrenceBegin + duration;
+                if (occurrenceEnd > from || occurrenceBegin >= from) {
+                    begin = occurrenceBegin;
+                    end = occurrenceEnd;
+                    return true;
+                }
+            }
+
+            if (!nextPeriod()) {
+                done = true;
+                return false;
+            }
+        }
+    }
+
+    /**
+     * @return 当前发生的开始时间
+     */
+    public long getBegin() {
+        return begin;
+    }
+
+    /**
+     * @return 当前发生的结束时间
+     */
+    public long getEnd() {
+        return end;
+    }
+
+    /**
+     * 展开下一个有发生的周期
+     */
+    private boolean nextPeriod() {
+        dayCount = 0;
+        dayIndex = 0;
+        for (int empty = 0; empty < MAX_EMPTY_PERIODS; empty++) {
+            long periodStart = periodStartDay(period);
+            if (periodStart > lastDay) {
+                return false;
+            }
+            switch (rule.freq) {
+                case RRule.DAILY:
+                    expandDaily(periodStart);
+                    break;
+                case RRule.WEEKLY:
+                    expandWeekly(periodStart);
+                    break;
+                case RRule.MONTHLY:
+                    expandMonthly(periodStart);
+                    break;
+                default:
+                    expandYearly(periodStart);
+                    break;
+            }
+            period++;
+            if (rule.bySetPos.length > 0) {
+                applySetPos();
+            }
+            if (dayCount > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private long periodStartDay(long period) {
+        long step = period * rule.interval;
+        switch (rule.freq) {
+            case RRule.DAILY:
+                return startDay + step;
+            case RRule.WEEKLY:
+                return weekStart + 7 * step;
+            case RRule.MONTHLY:
+                long month = startYear * 12L + startMonth - 1 + step;
+                return Util.epochDayFromCivil((int) floorDiv(month, 12), (int) floorMod(month, 12) + 1, 1);
+            default:
+                return Util.epochDayFromCivil((int) (startYear + step), 1, 1);
+        }
+    }
+
+    /**
+     * 计算包含指定日期的周期
+     */
+    private long firstPeriod(long day) {
+        long periods;
+        switch (rule.freq) {
+            case RRule.DAILY:
+                periods = (day - startDay) / rule.interval;
+                break;
+            case RRule.WEEKLY:
+                periods = (day - weekStart) / (7L * rule.interval);
+                break;
+            case RRule.MONTHLY:
+                int date = Util.civilFromEpochDay(day);
+                periods = ((date / 10000 - startYear) * 12L + date / 100 % 100 - startMonth) / rule.interval;
+                break;
+            default:
+                periods = (Util.civilFromEpochDay(day) / 10000 - startYear) / rule.interval;
+                break;
+        }
+        return Math.max(0, periods);
+    }
+
+    private void expandDaily(long day) {
+        int date = Util.civilFromEpochDay(day);
+        int month = date / 100 % 100;
+        int dayOfMonth = date % 100;
+        if (matchesMonth(month)
+                && (rule.byMonthDay.length == 0
+                || matchesMonthDay(dayOfMonth, monthLength(date / 10000, month)))
+                && (rule.byDay.length == 0 || matchesWeekday(weekday(day)))) {
+            days[dayCount++] = day;
+        }
+    }
+
+    private void expandWeekly(long periodStart) {
+        for (int i = 0; i < 7; i++) {
+            long day = periodStart + i;
+            int weekday = weekday(day);
+            if (rule.byDay.length == 0 ? weekday != startWeekday : !matchesWeekday(weekday)) {
+                continue;
+            }
+            if (rule.byMonth.length > 0 && !matchesMonth(Util.civilFromEpochDay(day) / 100 % 100)) {
+                continue;
+            }
+            days[dayCount++] = day;
+        }
+    }
+
+    private void expandMonthly(long firstDay) {
+        int date = Util.civilFromEpochDay(firstDay);
+        int month = date / 100 % 100;
+        if (!matchesMonth(month)) {
+            return;
+        }
+        int length = monthLength(date / 10000, month);
+        boolean byDefault = rule.byMonthDay.length == 0 && rule.byDay.length == 0;
+        for (int dayOfMonth = 1; dayOfMonth <= length; dayOfMonth++) {
+            if (byDefault ? dayOfMonth == startDayOfMonth
+                    : matchesDayInMonth(firstDay + dayOfMonth - 1, dayOfMonth, length)) {
+                days[dayCount++] = firstDay + dayOfMonth - 1;
+            }
+        }
+    }
+
+    private void expandYearly(long firstDay) {
+        int year = Util.civilFromEpochDay(firstDay) / 10000;
+        int yearLength = (int) (Util.epochDayFromCivil(year + 1, 1, 1) - firstDay);
+
+        boolean byMonth = rule.byMonth.length > 0;
+        boolean byWeekNo = rule.byWeekNo.length > 0;
+        boolean byDefault = rule.byMonthDay.length == 0 && rule.byDay.length == 0
+                && rule.byYearDay.length == 0 && !byWeekNo;
+
+        // 第一周的开始(相对于1月1日的天数,第一周至少包含4天)
+        int firstWeekStart = 0;
+        int weekCount = 0;
+        if (byWeekNo) {
+            firstWeekStart = firstWeekStart(firstDay);
+            weekCount = (yearLength + firstWeekStart(firstDay + yearLength) - firstWeekStart) / 7;
+        }
+
+        long monthFirstDay = firstDay;
+        for (int month = 1; month <= 12; month++) {
+            int monthLength = monthLength(year, month);
+            if (!byMonth || matchesMonth(month)) {
+                for (int dayOfMonth = 1; dayOfMonth <= monthLength; dayOfMonth++) {
+                    long day = monthFirstDay + dayOfMonth - 1;
+                    int dayOfYear = (int) (day - firstDay);
+                    boolean matches;
+                    if (byDefault) {
+                        matches = dayOfMonth == startDayOfMonth && (byMonth || month == startMonth);
+                    } else {
+                        matches = (rule.byYearDay.length == 0 || matchesYearDay(dayOfYear, yearLength))
+                                && (rule.byMonthDay.length == 0 || matchesMonthDay(dayOfMonth, monthLength))
+                                && (!byWeekNo || matchesWeekNo(dayOfYear, firstWeekStart, weekCount));
+                        if (matches) {
+                            if (rule.byDay.length > 0) {
+                                matches = byMonth
+                                        ? matchesDay(weekday(day), dayOfMonth - 1, monthLength)
+                                        : matchesDay(weekday(day), dayOfYear, yearLength);
+                            } else if (byWeekNo && rule.byYearDay.length == 0 && rule.byMonthDay.length == 0) {
+                                matches = weekday(day) == startWeekday;
+                            }
+                        }
+                    }
+                    if (matches) {
+                        days[dayCount++] = day;
+                    }
+                }
+            }
+            monthFirstDay += monthLength;
+        }
+    }
+
+    private boolean matchesDayInMonth(long day, int dayOfMonth, int length) {
+        return (rule.byMonthDay.length == 0 || matchesMonthDay(dayOfMonth, length))
+                && (rule.byDay.length == 0 || matchesDay(weekday(day), dayOfMonth - 1, length));
+    }
+
+    private boolean matchesMonth(int month) {
+        if (rule.byMonth.length == 0) {
+            return true;
+        }
+        for (int byMonth : rule.byMonth) {
+            if (byMonth == month) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean matchesMonthDay(int dayOfMonth, int length) {
+        for (int byMonthDay : rule.byMonthDay) {
+            if (byMonthDay == dayOfMonth || byMonthDay == dayOfMonth - length - 1) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param dayOfYear 从0开始
+     */
+    private boolean matchesYearDay(int dayOfYear, int length) {
+        for (int byYearDay : rule.byYearDay) {
+            if (byYearDay == dayOfYear + 1 || byYearDay == dayOfYear - length) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean matchesWeekNo(int dayOfYear, int firstWeekStart, int weekCount) {
+        int weekNo = (int) floorDiv(dayOfYear - firstWeekStart, 7) + 1;
+        if (weekNo < 1 || weekNo > weekCount) {
+            return false;
+        }
+        for (int byWeekNo : rule.byWeekNo) {
+            if (byWeekNo == weekNo || byWeekNo == weekNo - weekCount - 1) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean matchesWeekday(int weekday) {
+        for (int byDay : rule.byDay) {
+            if ((byDay & 7) == weekday) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 按BYDAY(含序数)匹配
+     *
+     * @param index  在月(年)中从0开始的位置
+     * @param length 月(年)的天数
+     */
+    private boolean matchesDay(int weekday, int index, int length) {
+        int ordinal = index / 7 + 1;
+        int ordinalFromEnd = -((length - 1 - index) / 7 + 1);
+        for (int byDay : rule.byDay) {
+            if ((byDay & 7) == weekday) {
+                int byOrdinal = byDay >> 3;
+                if (byOrdinal == 0 || byOrdinal == ordinal || byOrdinal == ordinalFromEnd) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void applySetPos() {
+        for (int i = 0; i < dayCount; i++) {
+            selected[i] = false;
+        }
+        for (int setPos : rule.bySetPos) {
+            int index = setPos > 0 ? setPos - 1 : dayCount + setPos;
+            if (index >= 0 && index < dayCount) {
+                selected[index] = true;
+            }
+        }
+        int count = 0;
+        for (int i = 0; i < dayCount; i++) {
+            if (selected[i]) {
+                days[count++] = days[i];
+            }
+        }
+        dayCount = count;
+    }
+
+    /**
+     * 指定年第一周开始相对于1月1日的天数
+     */
+    private int firstWeekStart(long januaryFirst) {
+        int offset = (int) floorMod(weekday(januaryFirst) - rule.wkst, 7);
+        return offset > 3 ? 7 - offset : -offset;
+    }
+
+    /**
+     * 指定时间在展开时区中的偏移量
+     */
+    private int offset(long time) {
+        return null == timeZoneID ? Util.getOffset(time) : Util.getOffset(timeZoneID, time);
+    }
+
+    /**
+     * 将展开时区的本地时间转换为UTC时间
+     */
+    private long toUtc(long local) {
+        long guess = local - offset(local);
+        return local - offset(guess);
+    }
+
+    private long localDay(long time) {
+        return floorDiv(time + offset(time), DAY_MILLIS);
+    }
+
+    private static int weekday(long day) {
+        // 1970-01-01是周四
+        return (int) floorMod(day + 4, 7);
+    }
+
+    private static int monthLength(int year, int month) {
+        return month == 12 ? 31
+                : (int) (Util.epochDayFromCivil(year, month + 1, 1) - Util.epochDayFromCivil(year, month, 1));
+    }
+
+    private static long floorDiv(long x, long y) {
+        long q = x / y;
+        if ((x % y != 0) && ((x ^ y) < 0)) {
+            q--;
+        }
+        return q;
+    }
+
+    private static long floorMod(long x, long y) {
+        return x - floorDiv(x, y) * y;
+    }
+
+    /**
+     * 解析事件持续时间(RFC 5545 DURATION)
+     * <p>
+     * 例：P3600S  PT1H30M  P1D  P1W
+     *
+     * @return duration in ms
+     * @throws IllegalArgumentException 格式错误
+     */
+    public static long parseDuration(String duration) {
+        int length = duration.length();
+        int i = 0;
+        boolean negative = false;
+        if (i < length && (duration.charAt(i) == '+' || duration.charAt(i) == '-')) {
+            negative = duration.charAt(i) == '-';
+            i++;
+        }
+        if (i >= length || duration.charAt(i) != 'P') {
+            throw new IllegalArgumentException("Invalid duration " + duration);
+        }
+        i++;
+
+        long seconds = 0;
+        long value = -1;
+        for (; i < length; i++) {
+            char c = duration.charAt(i);
+            if (c >= '0' && c <= '9') {
+                value = (value < 0 ? 0 : value * 10) + (c - '0');
+                continue;
+            }
+            if (c == 'T' && value < 0) {
+                continue;
+            }
+            if (value < 0) {
+                throw new IllegalArgumentException("Invalid duration " + duration);
+            }
+            switch (c) {
+                case 'W':
+                    seconds += value * 7 * 24 * 60 * 60;
+                    break;
+                case 'D':
+                    seconds += value * 24 * 60 * 60;
+                    break;
+                case 'H':
+                    seconds += value * 60 * 60;
+                    break;
+                case 'M':
+                    seconds += value * 60;
+                    break;
+                case 'S':
+                    seconds += value;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Invalid duration " + duration);
+            }
+            value = -1;
+        }
+        if (value >= 0) {
+            throw new IllegalArgumentException("Invalid duration " + duration);
+        }
+        return (negative ? -seconds : seconds) * 1000;
+    }
+
+}
@@ -0,0 +1,71 @@
+package com.kyle.calendarprovider.calendar;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 单次查询内的字符串去重
+ * <p>
+ * 时区、组织者等列在大量事件中只有少数几种取值,重复的值统一引用同一个String实例,
+ * 读取Cursor时产生的新String随即可以被回收
+ * 字典大小和可收录的字符串长度都有上限,避免唯一值(例如描述)撑大字典;字典已满后只复用已收录的值
+ */
+class StringPool {
+
+    /**
+     * 最多收录的字符串数
+     */
+    static final int MAX_ENTRIES = 256;
+    /**
+     * 可收录的最大字符串长度
+     */
+    static final int MAX_LENGTH = 128;
+
+    /**
+     * 估算String对象(对象头、字段以及字符数组头)的固定大小
+     */
+    private static final int STRING_OVERHEAD_BYTES = 40;
+
+    private final Map<String, String> pool = new HashMap<>();
+
+    /**
+     * 复用的字符串数
+     */
+    private int hitCount;
+    /**
+     * 估算的节省字节数
+     */
+    private long savedBytes;
+
+    /**
+     * @return 已收录的相同字符串,未收录时尝试收录并返回自身
+     */
+    String intern(String value) {
+        if (null == value || value.length() > MAX_LENGTH) {
+            return value;
+        }
+        String pooled = pool.get(value);
+        if (null != pooled) {
+            hitCount++;
+            savedBytes += STRING_OVERHEAD_BYTES + 2L * value.length();
+            return pooled;
+        }
+        if (pool.size() < MAX_ENTRIES) {
+            pool.put(value, value);
+        }
+        return value;
+    }
+
+    int getHitCount() {
+        return hitCount;
+    }
+
+    long getSavedBytes() {
+        return savedBytes;
+    }
+
+    int size() {
+        return pool.size();
+    }
+
+}
@@ -0,0 +1,151 @@
+package com.kyle.calendarprovider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 日期计算,与SimpleDateFormat/Calendar的结果对比
+ */
+public class UtilTest {
+
+    private static final long HOUR = 60 * 60 * 1000L;
+
+    private static final String[] ZONES = {
+            "UTC", "Asia/Shanghai", "America/New_York", "Europe/London",
+            "Australia/Lord_Howe", "Asia/Kolkata", "Pacific/Apia", "America/Sao_Paulo"
+    };
+
+    private TimeZone defaultZone;
+
+    @Before
+    public void setUp() {
+        defaultZone = TimeZone.getDefault();
+    }
+
+    @After
+    public void tearDown() {
+        TimeZone.setDefault(defaultZone);
+    }
+
+    private static long utc(int year, int month, int day, int hour, int minute) {
+        return Util.epochDayFromCivil(year, month, day) * 24 * HOUR + hour * HOUR + minute * 60 * 1000L;
+    }
+
+    @Test
+    public void leapDay() {
+        assertEquals(20200229, Util.civilFromEpochDay(Util.epochDayFromCivil(2020, 2, 29)));
+        assertEquals(20200301, Util.civilFromEpochDay(Util.epochDayFromCivil(2020, 2, 29) + 1));
+        assertEquals(20000229, Util.civilFromEpochDay(Util.epochDayFromCivil(2000, 2, 29)));
+        // 2100年不是闰年
+        assertEquals(21000301, Util.civilFromEpochDay(Util.epochDayFromCivil(2100, 2, 28) + 1));
+        assertEquals(0, Util.epochDayFromCivil(1970, 1, 1));
+        assertEquals(19690228, Util.civilFromEpochDay(Util.epochDayFromCivil(1969, 3, 1) - 1));
+
+        TimeZone.setDefault(TimeZone.getTimeZone("Asia/Shanghai"));
+        // 2020-02-29 23:30 +08:00
+        long time = utc(2020, 2, 29, 15, 30);
+        assertEquals(20200229, Util.getCivilDate(time));
+        assertEquals(29, Util.getDayOfMonth(time));
+        assertEquals(6, Util.getDayOfWeek(time));
+        assertEquals("SA", Util.getWeekForDate(time));
+        assertEquals("20200229T235959Z", Util.getFinalRRuleMode(time));
+        assertEquals(20200301, Util.getCivilDate(time + HOUR));
+    }
+
+    @Test
+    public void followsDefaultZoneChange() {
+        long time = utc(2019, 6, 1, 20, 0);
+        TimeZone.setDefault(TimeZone.getTimeZone("Asia/Shanghai"));
+        assertEquals("Asia/Shanghai", Util.getTimeZoneID());
+        assertEquals(8 * HOUR, Util.getOffset(time));
+        assertEquals(20190602, Util.getCivilDate(time));
+
+        // 不需要手动清除缓存
+        TimeZone.setDefault(TimeZone.getTimeZone("America/New_York"));
+        assertEquals("America/New_York", Util.getTimeZoneID());
+        assertEquals(-4 * HOUR, Util.getOffset(time));
+        assertEquals(20190601, Util.getCivilDate(time));
+    }
+
+    @Test
+    public void daylightSavingTransitionDay() {
+        TimeZone.setDefault(TimeZone.getTimeZone("America/New_York"));
+        // 2019-03-10 02:00 EST -> 03:00 EDT, 这一天只有23小时
+        long midnight = utc(2019, 3, 10, 5, 0);
+        long transition = utc(2019, 3, 10, 7, 0);
+        assertEquals(-5 * HOUR, Util.getOffset(transition - 1));
+        assertEquals(-4 * HOUR, Util.getOffset(transition));
+        assertEquals(20190309, Util.getCivilDate(midnight - 1));
+        assertEquals(20190310, Util.getCivilDate(midnight));
+        assertEquals(20190310, Util.getCivilDate(midnight + 23 * HOUR - 1));
+        assertEquals(20190311, Util.getCivilDate(midnight + 23 * HOUR));
+        assertEquals(0, Util.getDayOfWeek(transition));
+
+        // 2019-11-03 02:00 EDT -> 01:00 EST, 这一天有25小时
+        midnight = utc(2019, 11, 3, 4, 0);
+        transition = utc(2019, 11, 3, 6, 0);
+        assertEquals(-4 * HOUR, Util.getOffset(transition - 1));
+        assertEquals(-5 * HOUR, Util.getOffset(transition));
+        assertEquals(20191103, Util.getCivilDate(midnight));
+        assertEquals(20191103, Util.getCivilDate(midnight + 25 * HOUR - 1));
+        assertEquals(20191104, Util.getCivilDate(midnight + 25 * HOUR));
+    }
+
+    @Test
+    public void matchesCalendarInAllZones() {
+        Random random = new Random(8);
+        long from = utc(1900, 1, 1, 0, 0);
+        long to = utc(2100, 1, 1, 0, 0);
+        for (String id : ZONES) {
+            TimeZone zone = TimeZone.getTimeZone(id);
+            TimeZone.setDefault(zone);
+            SimpleDateFormat format = new SimpleDateFormat("yyyyMMdd", Locale.US);
+            Calendar calendar = Calendar.getInstance();
+            for (int i = 0; i < 20000; i++) {
+                // 一半取最近几年(偏移量转换表的范围),一半取整个范围
+                long time = i % 2 == 0
+                        ? System.currentTimeMillis() + (long) ((random.nextDouble() - 0.5) * 20 * 365 * 24 * HOUR)
+                        : from + (long) (random.nextDouble() * (to - from));
+                Date date = new Date(time);
+                calendar.setTime(date);
+                String message = id + " " + time;
+                assertEquals(message, zone.getOffset(time), Util.getOffset(time));
+                assertEquals(message, Integer.parseInt(format.format(date)), Util.getCivilDate(time));
+                assertEquals(message, calendar.get(Calendar.DAY_OF_WEEK) - 1, Util.getDayOfWeek(time));
+                assertEquals(message, calendar.get(Calendar.DAY_OF_MONTH), Util.getDayOfMonth(time));
+            }
+        }
+    }
+
+    @Test
+    public void transitionsMatchCalendar() {
+        // 每个时区在转换时刻前后逐分钟对比
+        for (String id : ZONES) {
+            TimeZone zone = TimeZone.getTimeZone(id);
+            TimeZone.setDefault(zone);
+            SimpleDateFormat format = new SimpleDateFormat("yyyyMMdd", Locale.US);
+            long start = System.currentTimeMillis() - 5 * 365 * 24 * HOUR;
+            long end = System.currentTimeMillis() + 5 * 365 * 24 * HOUR;
+            for (long time = start; time < end; time += HOUR) {
+                if (zone.getOffset(time) == zone.getOffset(time + HOUR)) {
+                    continue;
+                }
+                for (long t = time - HOUR; t < time + 2 * HOUR; t += 60 * 1000L) {
+                    assertEquals(id + " " + t, zone.getOffset(t), Util.getOffset(t));
+                    assertEquals(id + " " + t, Integer.parseInt(format.format(new Date(t))), Util.getCivilDate(t));
+                }
+            }
+        }
+    }
+
+}
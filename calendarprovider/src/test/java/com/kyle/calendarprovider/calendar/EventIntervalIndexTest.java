@@ -0,0 +1,108 @@
+package com.kyle.calendarprovider.calendar;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 事件时间段索引
+ */
+public class EventIntervalIndexTest {
+
+    private static EventIntervalIndex index(long[][] instances) {
+        int size = instances.length;
+        long[] begins = new long[size];
+        long[] ends = new long[size];
+        long[] eventIDs = new long[size];
+        String[] titles = new String[size];
+        for (int i = 0; i < size; i++) {
+            begins[i] = instances[i][0];
+            ends[i] = instances[i][1];
+            eventIDs[i] = instances[i][2];
+            titles[i] = "event " + instances[i][2];
+        }
+        return EventIntervalIndex.build(size, begins, ends, eventIDs, titles);
+    }
+
+    @Test
+    public void overlapIsHalfOpenAtBothBoundaries() {
+        EventIntervalIndex index = index(new long[][]{{10, 20, 1}});
+        // 首尾相接不算重叠
+        assertFalse(index.hasOverlapping(20, 30));
+        assertFalse(index.hasOverlapping(0, 10));
+        assertTrue(index.hasOverlapping(19, 30));
+        assertTrue(index.hasOverlapping(0, 11));
+        assertTrue(index.hasOverlapping(12, 15));
+        assertTrue(index.hasOverlapping(0, 100));
+        assertArrayEquals(new long[0], index.findOverlapping(20, 30));
+        assertArrayEquals(new long[]{1}, index.findOverlapping(19, 20));
+    }
+
+    @Test
+    public void findsOverlappingInBeginOrder() {
+        // 输入未排序
+        EventIntervalIndex index = index(new long[][]{
+                {30, 40, 3}, {0, 100, 1}, {10, 20, 2}, {40, 50, 4}, {60, 70, 5}});
+        assertEquals(5, index.size());
+        assertArrayEquals(new long[]{1, 3}, index.findOverlapping(20, 40));
+        assertArrayEquals(new long[]{1, 3, 4}, index.findOverlapping(20, 41));
+        assertArrayEquals(new long[]{1}, index.findOverlapping(50, 60));
+        assertArrayEquals(new long[0], index.findOverlapping(100, 200));
+    }
+
+    @Test
+    public void containsDuplicate() {
+        EventIntervalIndex index = index(new long[][]{{10, 20, 1}, {10, 30, 2}, {10, 20, 3}});
+        assertTrue(index.containsDuplicate(10, 20, "event 1"));
+        assertTrue(index.containsDuplicate(10, 20, "event 3"));
+        assertTrue(index.containsDuplicate(10, 30, "event 2"));
+        assertFalse(index.containsDuplicate(10, 30, "event 1"));
+        assertFalse(index.containsDuplicate(11, 20, "event 1"));
+        assertFalse(index.containsDuplicate(10, 20, null));
+    }
+
+    @Test
+    public void emptyIndex() {
+        EventIntervalIndex index = index(new long[0][]);
+        assertEquals(0, index.size());
+        assertFalse(index.hasOverlapping(Long.MIN_VALUE, Long.MAX_VALUE));
+        assertFalse(index.containsDuplicate(0, 0, null));
+    }
+
+    @Test
+    public void matchesLinearScan() {
+        Random random = new Random(11);
+        long[][] instances = new long[2000][];
+        for (int i = 0; i < instances.length; i++) {
+            long begin = random.nextInt(100000);
+            instances[i] = new long[]{begin, begin + random.nextInt(500), i};
+        }
+        EventIntervalIndex index = index(instances);
+
+        for (int i = 0; i < 1000; i++) {
+            long begin = random.nextInt(101000) - 500;
+            long end = begin + random.nextInt(1000);
+            long[] expected = new long[instances.length];
+            int count = 0;
+            for (long[] instance : instances) {
+                if (instance[0] < end && instance[1] > begin) {
+                    expected[count++] = instance[2];
+                }
+            }
+            long[] actual = index.findOverlapping(begin, end);
+            // 开始时间相同的实例顺序不确定
+            long[] expectedIDs = Arrays.copyOf(expected, count);
+            Arrays.sort(expectedIDs);
+            Arrays.sort(actual);
+            assertArrayEquals(begin + " " + end, expectedIDs, actual);
+            assertEquals(count > 0, index.hasOverlapping(begin, end));
+        }
+    }
+
+}
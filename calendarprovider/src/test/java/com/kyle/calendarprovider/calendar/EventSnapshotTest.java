@@ -0,0 +1,167 @@
+package com.kyle.calendarprovider.calendar;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 快照编码与解码,以及与iCalendar导出相比的文件大小
+ */
+public class EventSnapshotTest {
+
+    private static final String[] TIME_ZONES = {"Asia/Shanghai", "Europe/Berlin", "America/New_York"};
+    private static final String[] RULES = {null, null, "FREQ=WEEKLY;BYDAY=MO", "FREQ=DAILY;COUNT=10"};
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("snapshot", ".bin");
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    private static List<CalendarEvent> events(int count) {
+        List<CalendarEvent> events = new ArrayList<>(count);
+        long start = 1546300800000L;
+        for (int i = 0; i < count; i++) {
+            CalendarEvent event = new CalendarEvent();
+            event.setId(i);
+            event.setCalID(1);
+            event.setTitle("Shift " + i);
+            event.setDescription(i % 4 == 0 ? null : "Description of shift " + i);
+            event.setEventLocation("Building " + i % 5);
+            event.setStart(start + i * 1800000L);
+            event.setEnd(start + i * 1800000L + 3600000L);
+            event.setRRule(RULES[i % RULES.length]);
+            event.setEventTimeZone(TIME_ZONES[i % TIME_ZONES.length]);
+            event.setOrganizer("owner" + i % 3 + "@example.com");
+            event.setDisplayColor(0xFF3F51B5);
+            event.setAvailability(i % 2);
+
+            CalendarEvent.EventReminders reminder = new CalendarEvent.EventReminders();
+            reminder.setReminderMinute(i % 2 == 0 ? 15 : 60);
+            reminder.setReminderMethod(1);
+            event.setReminders(Collections.singletonList(reminder));
+            events.add(event);
+        }
+        return events;
+    }
+
+    private int write(List<CalendarEvent> events) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            return EventSnapshot.write(events.iterator(), out.getChannel());
+        }
+    }
+
+    /**
+     * @return 文件头中的事件数与解码的事件数不一致时返回-1
+     */
+    private int read(List<CalendarEvent> events) throws IOException {
+        try (FileInputStream in = new FileInputStream(file)) {
+            FileChannel channel = in.getChannel();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            assertEquals(0x4B435331, buffer.getInt());
+            assertEquals(1, buffer.getInt());
+            int count = buffer.getInt();
+            return count == EventSnapshot.verify(buffer, events) ? count : -1;
+        }
+    }
+
+    @Test
+    public void roundTrip() throws IOException {
+        // 跨越多个数据块
+        List<CalendarEvent> events = events(1234);
+        assertEquals(events.size(), write(events));
+
+        List<CalendarEvent> decoded = new ArrayList<>();
+        assertEquals(events.size(), read(decoded));
+        assertEquals(events.size(), decoded.size());
+        for (int i = 0; i < events.size(); i++) {
+            CalendarEvent expected = events.get(i);
+            CalendarEvent actual = decoded.get(i);
+            assertEquals(expected.getTitle(), actual.getTitle());
+            assertEquals(expected.getDescription(), actual.getDescription());
+            assertEquals(expected.getEventLocation(), actual.getEventLocation());
+            assertEquals(expected.getStart(), actual.getStart());
+            assertEquals(expected.getEnd(), actual.getEnd());
+            assertEquals(expected.getRRule(), actual.getRRule());
+            assertEquals(expected.getEventTimeZone(), actual.getEventTimeZone());
+            assertEquals(expected.getOrganizer(), actual.getOrganizer());
+            assertEquals(expected.getDisplayColor(), actual.getDisplayColor());
+            assertEquals(expected.getAvailability(), actual.getAvailability());
+            assertEquals(1, actual.getReminderCount());
+            assertEquals(expected.getReminders().get(0).getReminderMinute(), actual.getReminderMinutes(0));
+        }
+    }
+
+    @Test
+    public void emptySnapshot() throws IOException {
+        assertEquals(0, write(new ArrayList<CalendarEvent>()));
+        assertEquals(0, read(new ArrayList<CalendarEvent>()));
+    }
+
+    @Test
+    public void detectsTruncatedSnapshot() throws IOException {
+        write(events(1234));
+        byte[] bytes = new byte[(int) file.length()];
+        try (FileInputStream in = new FileInputStream(file)) {
+            assertEquals(bytes.length, in.read(bytes));
+        }
+
+        // 在末尾、中间或第一个数据块开始处截断
+        for (int length : new int[]{bytes.length - 1, bytes.length / 2, 13}) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes, 12, length - 12);
+            boolean rejected;
+            try {
+                rejected = 1234 != EventSnapshot.verify(buffer, null);
+            } catch (IOException | BufferUnderflowException e) {
+                rejected = true;
+            }
+            assertTrue("length " + length, rejected);
+        }
+        // 结束块之后还有数据
+        byte[] trailing = Arrays.copyOf(bytes, bytes.length + 1);
+        assertEquals(-1, EventSnapshot.verify(ByteBuffer.wrap(trailing, 12, trailing.length - 12), null));
+    }
+
+    @Test
+    public void smallerThanIcsExport() throws IOException {
+        int count = 10000;
+        List<CalendarEvent> events = events(count);
+        assertEquals(count, write(events));
+        assertEquals(count, read(null));
+
+        // 同样的事件导出为iCalendar时的大小
+        ByteArrayOutputStream ics = new ByteArrayOutputStream();
+        Writer writer = new OutputStreamWriter(ics, StandardCharsets.UTF_8);
+        new IcsExporter(writer).run(events.iterator());
+        writer.flush();
+
+        assertTrue(file.length() < ics.size());
+    }
+
+}
@@ -0,0 +1,170 @@
+package com.kyle.calendarprovider.calendar;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * iCalendar文件导出(与{@link IcsImporter}往返)
+ */
+public class IcsExporterTest {
+
+    private static final long HOUR = 60 * 60 * 1000L;
+
+    private TimeZone defaultZone;
+
+    @Before
+    public void setUp() {
+        defaultZone = TimeZone.getDefault();
+        TimeZone.setDefault(TimeZone.getTimeZone("Asia/Shanghai"));
+    }
+
+    @After
+    public void tearDown() {
+        TimeZone.setDefault(defaultZone);
+    }
+
+    private static CalendarEvent event(long id, String title, String description, long start) {
+        CalendarEvent event = new CalendarEvent();
+        event.setId(id);
+        event.setCalID(1);
+        event.setTitle(title);
+        event.setDescription(description);
+        event.setEventLocation("Room " + id % 10);
+        event.setStart(start);
+        event.setEnd(start + HOUR);
+        event.setRRule(id % 3 == 0 ? "FREQ=WEEKLY;BYDAY=MO" : null);
+
+        CalendarEvent.EventReminders reminder = new CalendarEvent.EventReminders();
+        reminder.setReminderEventID(id);
+        reminder.setReminderMinute(15);
+        event.setReminders(Collections.singletonList(reminder));
+        return event;
+    }
+
+    private static byte[] export(List<CalendarEvent> events) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        assertEquals(events.size(), new IcsExporter(writer).run(events.iterator()));
+        writer.flush();
+        return out.toByteArray();
+    }
+
+    @Test
+    public void roundTripsThroughImporter() throws IOException {
+        List<CalendarEvent> events = new ArrayList<>();
+        events.add(event(1, "Weekly sync, team; all", "line one\nline two \\ end", 1559361600000L));
+        StringBuilder longText = new StringBuilder();
+        for (int i = 0; i < 40; i++) {
+            longText.append("会议纪要😀");
+        }
+        events.add(event(2, "长标题" + longText, longText.toString(), 1559365200000L));
+        events.add(event(3, null, null, 1559368800000L));
+
+        List<CalendarEvent> imported = IcsImporter.parse(new ByteArrayInputStream(export(events)));
+        assertEquals(events.size(), imported.size());
+        for (int i = 0; i < events.size(); i++) {
+            CalendarEvent expected = events.get(i);
+            CalendarEvent actual = imported.get(i);
+            assertEquals(expected.getTitle(), actual.getTitle());
+            assertEquals(expected.getDescription(), actual.getDescription());
+            assertEquals(expected.getEventLocation(), actual.getEventLocation());
+            assertEquals(expected.getStart(), actual.getStart());
+            assertEquals(expected.getEnd(), actual.getEnd());
+            assertEquals(expected.getRRule(), actual.getRRule());
+            assertEquals(1, actual.getReminderCount());
+            assertEquals(15, actual.getReminderMinutes(0));
+        }
+    }
+
+    @Test
+    public void foldsLinesAt75Octets() throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            text.append(i % 2 == 0 ? "中" : "a😀");
+        }
+        byte[] ics = export(Collections.singletonList(event(1, text.toString(), text.toString(), 0)));
+
+        int lineStart = 0;
+        for (int i = 0; i < ics.length; i++) {
+            if (ics[i] == '\r') {
+                assertEquals('\n', ics[i + 1]);
+                assertTrue("line of " + (i - lineStart) + " octets", i - lineStart <= 75);
+                lineStart = i + 2;
+            }
+        }
+        // 折行不会拆分多字节字符
+        String decoded = new String(ics, StandardCharsets.UTF_8);
+        assertTrue(!decoded.contains("�"));
+    }
+
+    @Test
+    public void streamsEventsFromIterator() throws IOException {
+        final int count = 100000;
+        final long start = 1559361600000L;
+        final String description = "Description with, some; escapes\nand a second line";
+        // 按需创建事件,与逐批读取时一样不保留完整的事件列表
+        Iterator<CalendarEvent> events = new Iterator<CalendarEvent>() {
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                return index < count;
+            }
+
+            @Override
+            public CalendarEvent next() {
+                index++;
+                return event(index, "Event " + index, description, start + index * HOUR);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+        CountingOutputStream out = new CountingOutputStream();
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+
+        assertEquals(count, new IcsExporter(writer).run(events));
+        writer.flush();
+        assertTrue(out.bytes > count * 100L);
+    }
+
+    /**
+     * 只统计写入的字节数
+     */
+    private static class CountingOutputStream extends OutputStream {
+
+        long bytes;
+
+        @Override
+        public void write(int b) {
+            bytes++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            bytes += len;
+        }
+
+    }
+
+}
@@ -0,0 +1,214 @@
+package com.kyle.calendarprovider.calendar;
+
+import android.provider.CalendarContract;
+
+import com.kyle.calendarprovider.Util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * iCalendar文件解析(折行、转义、时间、提醒)
+ */
+public class IcsImporterTest {
+
+    private static final long HOUR = 60 * 60 * 1000L;
+    private static final long DAY = 24 * HOUR;
+
+    private TimeZone defaultZone;
+
+    @Before
+    public void setUp() {
+        defaultZone = TimeZone.getDefault();
+        TimeZone.setDefault(TimeZone.getTimeZone("Asia/Shanghai"));
+    }
+
+    @After
+    public void tearDown() {
+        TimeZone.setDefault(defaultZone);
+    }
+
+    private static List<CalendarEvent> parse(String... lines) throws IOException {
+        StringBuilder ics = new StringBuilder();
+        for (String line : lines) {
+            ics.append(line).append("\r\n");
+        }
+        return parse(ics.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static List<CalendarEvent> parse(byte[] ics) throws IOException {
+        return IcsImporter.parse(new ByteArrayInputStream(ics));
+    }
+
+    private static long utc(int year, int month, int day, int hour, int minute) {
+        return Util.epochDayFromCivil(year, month, day) * DAY + hour * HOUR + minute * 60000L;
+    }
+
+    @Test
+    public void unescapesText() throws IOException {
+        assertEquals("a, b; c\nd\\e", IcsImporter.unescape("a\\, b\\; c\\nd\\\\e"));
+        assertEquals("line\nbreak", IcsImporter.unescape("line\\Nbreak"));
+        assertEquals("plain", IcsImporter.unescape("plain"));
+        assertEquals("trailing\\", IcsImporter.unescape("trailing\\"));
+
+        List<CalendarEvent> events = parse(
+                "BEGIN:VCALENDAR",
+                "BEGIN:VEVENT",
+                "SUMMARY:Lunch\\, then review\\; bring notes",
+                "DESCRIPTION:first\\nsecond",
+                "LOCATION:Room 1\\, floor 2",
+                "DTSTART:20190601T040000Z",
+                "END:VEVENT",
+                "END:VCALENDAR");
+        assertEquals(1, events.size());
+        assertEquals("Lunch, then review; bring notes", events.get(0).getTitle());
+        assertEquals("first\nsecond", events.get(0).getDescription());
+        assertEquals("Room 1, floor 2", events.get(0).getEventLocation());
+    }
+
+    @Test
+    public void unfoldsLines() throws IOException {
+        List<CalendarEvent> events = parse(
+                "BEGIN:VEVENT",
+                "SUMMARY:周例会",
+                "DESCRIPTION:这是一段很长的描述,",
+                " 在空格处折行",
+                "\t并在制表符处继续",
+                "DTSTART:20190601T040000Z",
+                "END:VEVENT");
+        assertEquals(1, events.size());
+        assertEquals("周例会", events.get(0).getTitle());
+        assertEquals("这是一段很长的描述,在空格处折行并在制表符处继续", events.get(0).getDescription());
+    }
+
+    @Test
+    public void unfoldsLinesSplitInsideUtf8Sequence() throws IOException {
+        byte[] summary = "SUMMARY:会议室预订".getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write("BEGIN:VEVENT\r\n".getBytes(StandardCharsets.UTF_8));
+        // "会"的三个字节被折行分开
+        out.write(summary, 0, 9);
+        out.write(new byte[]{'\r', '\n', ' '});
+        out.write(summary, 9, summary.length - 9);
+        out.write("\r\nDTSTART:20190601T040000Z\r\nEND:VEVENT\r\n".getBytes(StandardCharsets.UTF_8));
+
+        List<CalendarEvent> events = parse(out.toByteArray());
+        assertEquals(1, events.size());
+        assertEquals("会议室预订", events.get(0).getTitle());
+    }
+
+    @Test
+    public void parsesTimes() throws IOException {
+        List<CalendarEvent> events = parse(
+                "BEGIN:VEVENT",
+                "DTSTART:20190601T040000Z",
+                "DTEND:20190601T050000Z",
+                "END:VEVENT",
+                "BEGIN:VEVENT",
+                "DTSTART;TZID=\"America/New_York\":20190601T090000",
+                "DURATION:PT1H30M",
+                "END:VEVENT",
+                "BEGIN:VEVENT",
+                "DTSTART:20190601T120000",
+                "END:VEVENT",
+                "BEGIN:VEVENT",
+                "DTSTART;VALUE=DATE:20190601",
+                "END:VEVENT");
+        assertEquals(4, events.size());
+
+        assertEquals(utc(2019, 6, 1, 4, 0), events.get(0).getStart());
+        assertEquals(utc(2019, 6, 1, 5, 0), events.get(0).getEnd());
+        // 纽约夏令时 -04:00
+        assertEquals(utc(2019, 6, 1, 13, 0), events.get(1).getStart());
+        assertEquals(utc(2019, 6, 1, 14, 30), events.get(1).getEnd());
+        // 默认时区 +08:00, 没有结束时间
+        assertEquals(utc(2019, 6, 1, 4, 0), events.get(2).getStart());
+        assertEquals(events.get(2).getStart(), events.get(2).getEnd());
+        // 全天事件持续一天
+        assertEquals(utc(2019, 5, 31, 16, 0), events.get(3).getStart());
+        assertEquals(DAY, events.get(3).getEnd() - events.get(3).getStart());
+    }
+
+    @Test
+    public void parsesAlarms() throws IOException {
+        List<CalendarEvent> events = parse(
+                "BEGIN:VEVENT",
+                "SUMMARY:Review",
+                "DTSTART:20190601T040000Z",
+                "DTEND:20190601T050000Z",
+                "BEGIN:VALARM",
+                "TRIGGER:-PT15M",
+                "ACTION:DISPLAY",
+                "END:VALARM",
+                "BEGIN:VALARM",
+                "TRIGGER;VALUE=DATE-TIME:20190531T040000Z",
+                "ACTION:EMAIL",
+                "END:VALARM",
+                "BEGIN:VALARM",
+                "TRIGGER;RELATED=END:-PT90M",
+                "ACTION:DISPLAY",
+                "END:VALARM",
+                "BEGIN:VALARM",
+                "TRIGGER:PT5M",
+                "ACTION:DISPLAY",
+                "END:VALARM",
+                "END:VEVENT");
+        CalendarEvent event = events.get(0);
+        // 事件开始后触发的提醒不支持
+        assertEquals(3, event.getReminderCount());
+        assertEquals(15, event.getReminderMinutes(0));
+        assertEquals(CalendarContract.Reminders.METHOD_ALERT, event.getReminderMethod(0));
+        assertEquals(24 * 60, event.getReminderMinutes(1));
+        assertEquals(CalendarContract.Reminders.METHOD_EMAIL, event.getReminderMethod(1));
+        assertEquals(30, event.getReminderMinutes(2));
+    }
+
+    @Test
+    public void skipsInvalidEventsAndOtherComponents() throws IOException {
+        List<CalendarEvent> events = parse(
+                "BEGIN:VCALENDAR",
+                "BEGIN:VTIMEZONE",
+                "TZID:Asia/Shanghai",
+                "DTSTART:19700101T000000",
+                "END:VTIMEZONE",
+                "BEGIN:VEVENT",
+                "SUMMARY:no start",
+                "END:VEVENT",
+                "BEGIN:VEVENT",
+                "SUMMARY:bad start",
+                "DTSTART:2019-06-01",
+                "END:VEVENT",
+                "BEGIN:VEVENT",
+                "SUMMARY:bad rule",
+                "DTSTART:20190601T040000Z",
+                "RRULE:FREQ=WEEKLY;BYMONTHDAY=1",
+                "END:VEVENT",
+                "BEGIN:VTODO",
+                "SUMMARY:todo",
+                "DTSTART:20190601T040000Z",
+                "END:VTODO",
+                "BEGIN:VEVENT",
+                "SUMMARY;LANGUAGE=en:kept",
+                "X-PARAM;X-NOTE=\"a:b\":ignored",
+                "DTSTART:20190601T040000Z",
+                "RRULE:FREQ=WEEKLY;BYDAY=SA",
+                "END:VEVENT",
+                "END:VCALENDAR");
+        assertEquals(1, events.size());
+        assertEquals("kept", events.get(0).getTitle());
+        assertEquals("FREQ=WEEKLY;BYDAY=SA", events.get(0).getRRule());
+        assertNull(events.get(0).getDescription());
+    }
+
+}
@@ -0,0 +1,136 @@
+package com.kyle.calendarprovider.calendar;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 完整重复规则的组装,多线程同时组装时结果不受影响
+ */
+public class RRuleAssemblyTest {
+
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+
+    private static final String[] TEMPLATES = {
+            RRuleConstant.REPEAT_WEEKLY_BY_MO,
+            RRuleConstant.REPEAT_WEEKLY_BY_SU,
+            RRuleConstant.REPEAT_CYCLE_WEEKLY,
+            RRuleConstant.REPEAT_CYCLE_MONTHLY,
+            RRuleConstant.REPEAT_CYCLE_DAILY_FOREVER,
+    };
+
+    private static final int CASES = 4096;
+    private static final int ROUNDS = 20000;
+
+    private TimeZone defaultZone;
+
+    private final String[] rules = new String[CASES];
+    private final long[] begins = new long[CASES];
+    private final long[] ends = new long[CASES];
+    private final String[] expected = new String[CASES];
+
+    @Before
+    public void setUp() {
+        defaultZone = TimeZone.getDefault();
+        TimeZone.setDefault(TimeZone.getTimeZone("Asia/Shanghai"));
+
+        Random random = new Random(7);
+        long base = time(2019, 1, 1, 0);
+        for (int i = 0; i < CASES; i++) {
+            rules[i] = TEMPLATES[random.nextInt(TEMPLATES.length)];
+            begins[i] = base + (long) (random.nextDouble() * 365 * DAY);
+            ends[i] = begins[i] + (long) (random.nextDouble() * 3 * 365 * DAY);
+            expected[i] = CalendarProviderManager.getFullRRuleForRRule(rules[i], begins[i], ends[i]);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        TimeZone.setDefault(defaultZone);
+    }
+
+    @Test
+    public void assemblesTemplates() {
+        // 2019-03-06 10:00 +08:00 (周三) 至 2019-12-31 10:00 +08:00
+        long begin = time(2019, 3, 6, 10);
+        long end = time(2019, 12, 31, 10);
+        assertEquals("FREQ=WEEKLY;INTERVAL=1;WKST=MO;BYDAY=FR;UNTIL=20191231T235959Z",
+                CalendarProviderManager.getFullRRuleForRRule(RRuleConstant.REPEAT_WEEKLY_BY_FR, begin, end));
+        assertEquals("FREQ=WEEKLY;INTERVAL=1;WKST=SU;BYDAY=WE;UNTIL=20191231T235959Z",
+                CalendarProviderManager.getFullRRuleForRRule(RRuleConstant.REPEAT_CYCLE_WEEKLY, begin, end));
+        assertEquals("FREQ=MONTHLY;INTERVAL=1;WKST=SU;BYMONTHDAY=6;UNTIL=20191231T235959Z",
+                CalendarProviderManager.getFullRRuleForRRule(RRuleConstant.REPEAT_CYCLE_MONTHLY, begin, end));
+        assertEquals(RRuleConstant.REPEAT_CYCLE_DAILY_FOREVER,
+                CalendarProviderManager.getFullRRuleForRRule(RRuleConstant.REPEAT_CYCLE_DAILY_FOREVER, begin, end));
+        for (String rule : expected) {
+            RRule.compile(rule);
+        }
+    }
+
+    @Test
+    public void concurrentAssemblyMatchesSingleThreaded() throws Exception {
+        for (int threads : new int[]{1, 4, 8}) {
+            assertEquals(threads + " threads", 0, run(threads));
+        }
+    }
+
+    /**
+     * 默认时区(Asia/Shanghai)中的时间
+     */
+    private static long time(int year, int month, int day, int hour) {
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("Asia/Shanghai"));
+        calendar.clear();
+        calendar.set(year, month - 1, day, hour, 0, 0);
+        return calendar.getTimeInMillis();
+    }
+
+    /**
+     * 每个线程组装ROUNDS个规则并与单线程的结果比较
+     *
+     * @return 不一致的规则数
+     */
+    private long run(int threads) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Long>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                final int offset = t * 997;
+                results.add(executor.submit(new Callable<Long>() {
+                    @Override
+                    public Long call() {
+                        long mismatches = 0;
+                        for (int i = 0; i < ROUNDS; i++) {
+                            int index = (i + offset) % CASES;
+                            String rule = CalendarProviderManager.getFullRRuleForRRule(
+                                    rules[index], begins[index], ends[index]);
+                            if (!expected[index].equals(rule)) {
+                                mismatches++;
+                            }
+                        }
+                        return mismatches;
+                    }
+                }));
+            }
+            long mismatches = 0;
+            for (Future<Long> result : results) {
+                mismatches += result.get();
+            }
+            return mismatches;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+}
@@ -0,0 +1,176 @@
+package com.kyle.calendarprovider.calendar;
+
+import com.kyle.calendarprovider.Util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 重复规则的解析与校验
+ */
+public class RRuleTest {
+
+    private static final String[] ACCEPTED = {
+            "FREQ=DAILY",
+            "FREQ=DAILY;INTERVAL=1",
+            "FREQ=WEEKLY;COUNT=10;WKST=SU;BYDAY=TU,TH",
+            "FREQ=WEEKLY;INTERVAL=1;WKST=MO;BYDAY=MO;UNTIL=20191231T235959Z",
+            "FREQ=MONTHLY;BYDAY=-1FR",
+            "FREQ=MONTHLY;BYDAY=+2MO,-2SU",
+            "FREQ=MONTHLY;BYMONTHDAY=31",
+            "FREQ=MONTHLY;BYMONTHDAY=-1,1,15",
+            "FREQ=MONTHLY;BYDAY=MO,TU,WE,TH,FR;BYSETPOS=-1",
+            "FREQ=YEARLY;BYMONTH=2;BYMONTHDAY=29",
+            "FREQ=YEARLY;BYMONTH=11;BYDAY=1TU",
+            "FREQ=YEARLY;BYYEARDAY=1,-1",
+            "FREQ=YEARLY;BYWEEKNO=20;BYDAY=MO",
+            "FREQ=YEARLY;UNTIL=20201231",
+            "FREQ=HOURLY;INTERVAL=3;BYHOUR=9,12,15",
+            "FREQ=MINUTELY;BYSECOND=60",
+    };
+
+    private static final String[] REJECTED = {
+            "",
+            "INTERVAL=2",
+            "FREQ=FORTNIGHTLY",
+            "FREQ=DAILY;",
+            "FREQ=DAILY;;COUNT=2",
+            "FREQ=DAILY;COUNT",
+            "FREQ=DAILY;COUNT=",
+            "FREQ=DAILY;COUNT=0",
+            "FREQ=DAILY;COUNT=-1",
+            "FREQ=DAILY;COUNT= 5",
+            "FREQ=DAILY;COUNT=99999999999",
+            "FREQ=DAILY;INTERVAL=0",
+            "FREQ=DAILY;FREQ=WEEKLY",
+            "FREQ=DAILY;COUNT=3;UNTIL=20191231",
+            "FREQ=DAILY;FOO=BAR",
+            "freq=daily",
+            "FREQ=WEEKLY;BYMONTHDAY=1",
+            "FREQ=WEEKLY;BYDAY=1MO",
+            "FREQ=MONTHLY;BYYEARDAY=100",
+            "FREQ=MONTHLY;BYWEEKNO=1",
+            "FREQ=MONTHLY;BYMONTHDAY=0",
+            "FREQ=MONTHLY;BYMONTHDAY=32",
+            "FREQ=MONTHLY;BYDAY=0MO",
+            "FREQ=MONTHLY;BYDAY=XX",
+            "FREQ=MONTHLY;BYDAY=MO,",
+            "FREQ=MONTHLY;BYSETPOS=1",
+            "FREQ=YEARLY;BYMONTH=13",
+            "FREQ=YEARLY;BYWEEKNO=1;BYDAY=1MO",
+            "FREQ=DAILY;WKST=XX",
+            "FREQ=DAILY;BYHOUR=24",
+            "FREQ=DAILY;UNTIL=2019123",
+            "FREQ=DAILY;UNTIL=20190230",
+            "FREQ=DAILY;UNTIL=20191231X235959Z",
+            "FREQ=DAILY;UNTIL=20191231T245959Z",
+            "FREQ=DAILY;UNTIL=20191231T235959Y",
+    };
+
+    private TimeZone defaultZone;
+
+    @Before
+    public void setUp() {
+        defaultZone = TimeZone.getDefault();
+    }
+
+    @After
+    public void tearDown() {
+        TimeZone.setDefault(defaultZone);
+    }
+
+    @Test
+    public void acceptsValidRules() {
+        for (String rule : ACCEPTED) {
+            assertTrue(rule, RRule.isValid(rule));
+        }
+    }
+
+    @Test
+    public void rejectsInvalidRules() {
+        for (String rule : REJECTED) {
+            assertFalse(rule, RRule.isValid(rule));
+        }
+        assertFalse(RRule.isValid(null));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void compileThrowsForInvalidRule() {
+        RRule.compile("FREQ=WEEKLY;BYMONTHDAY=1");
+    }
+
+    @Test
+    public void acceptsLibraryConstants() {
+        assertTrue(RRule.isValid(RRuleConstant.REPEAT_CYCLE_DAILY_FOREVER));
+        assertTrue(RRule.isValid(RRuleConstant.REPEAT_CYCLE_WEEKLY + "MO"));
+        assertTrue(RRule.isValid(RRuleConstant.REPEAT_CYCLE_MONTHLY + "15"));
+        assertTrue(RRule.isValid(RRuleConstant.REPEAT_WEEKLY_BY_FR + "20191231T235959Z"));
+        assertTrue(RRule.isValid(RRuleConstant.REPEAT_YEARLY_FIRST_AND_LAST_FOREVER));
+    }
+
+    @Test
+    public void parsesParts() {
+        RRule rule = RRule.compile("FREQ=MONTHLY;INTERVAL=2;COUNT=6;WKST=MO;BYDAY=-1FR,2MO,TU;BYSETPOS=1,-1");
+        assertEquals(RRule.MONTHLY, rule.getFreq());
+        assertEquals(2, rule.getInterval());
+        assertEquals(6, rule.getCount());
+        assertEquals(Long.MAX_VALUE, rule.getUntil());
+        assertEquals(1, rule.getWkst());
+        assertArrayEquals(new int[]{5, 1, 2}, rule.getByDayWeekdays());
+        assertArrayEquals(new int[]{-1, 2, 0}, rule.getByDayOrdinals());
+        assertArrayEquals(new int[]{1, -1}, rule.getBySetPos());
+
+        RRule daily = RRule.compile("FREQ=DAILY");
+        assertEquals(1, daily.getInterval());
+        assertEquals(0, daily.getCount());
+        assertEquals(1, daily.getWkst());
+    }
+
+    @Test
+    public void parsesUntil() {
+        // UTC时间
+        assertEquals(Util.epochDayFromCivil(2019, 12, 31) * 86400000L + 86399000L,
+                RRule.compile("FREQ=DAILY;UNTIL=20191231T235959Z").getUntil());
+
+        // 日期和本地时间按默认时区转换
+        TimeZone.setDefault(TimeZone.getTimeZone("Asia/Shanghai"));
+        long dayEnd = Util.epochDayFromCivil(2020, 3, 1) * 86400000L - 8 * 3600000L - 1;
+        assertEquals(dayEnd, RRule.compile("FREQ=DAILY;UNTIL=20200229").getUntil());
+        assertEquals(dayEnd - 999, RRule.compile("FREQ=DAILY;UNTIL=20200229T235959").getUntil());
+    }
+
+    @Test
+    public void cachesCompiledRules() {
+        String rule = "FREQ=WEEKLY;BYDAY=MO,WE;COUNT=4";
+        assertSame(RRule.compile(rule), RRule.compile(rule));
+    }
+
+    @Test
+    public void recompilesLocalUntilAfterZoneChange() {
+        String local = "FREQ=DAILY;UNTIL=20190601T120000";
+        String utc = "FREQ=DAILY;UNTIL=20190601T120000Z";
+
+        TimeZone.setDefault(TimeZone.getTimeZone("Asia/Shanghai"));
+        RRule shanghai = RRule.compile(local);
+        RRule utcRule = RRule.compile(utc);
+
+        TimeZone.setDefault(TimeZone.getTimeZone("Europe/Berlin"));
+        RRule berlin = RRule.compile(local);
+        assertNotSame(shanghai, berlin);
+        // 上海 +08:00, 柏林夏令时 +02:00
+        assertEquals(6 * 3600000L, berlin.getUntil() - shanghai.getUntil());
+        // UTC时间的UNTIL与时区无关,继续使用缓存
+        assertSame(utcRule, RRule.compile(utc));
+    }
+
+}
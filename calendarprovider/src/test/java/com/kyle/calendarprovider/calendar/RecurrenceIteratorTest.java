@@ -0,0 +1,233 @@
+package com.kyle.calendarprovider.calendar;
+
+import com.kyle.calendarprovider.Util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 重复事件展开,在America/New_York时区中按本地时间检查
+ */
+public class RecurrenceIteratorTest {
+
+    private static final long HOUR = 60 * 60 * 1000L;
+    private static final long DAY = 24 * HOUR;
+
+    private TimeZone defaultZone;
+
+    @Before
+    public void setUp() {
+        defaultZone = TimeZone.getDefault();
+        TimeZone.setDefault(TimeZone.getTimeZone("America/New_York"));
+    }
+
+    @After
+    public void tearDown() {
+        TimeZone.setDefault(defaultZone);
+    }
+
+    /**
+     * 默认时区的本地时间
+     */
+    private static long local(int year, int month, int day, int hour) {
+        return RRule.toUtc(Util.epochDayFromCivil(year, month, day) * DAY + hour * HOUR);
+    }
+
+    /**
+     * @return 每次发生的本地日期(yyyyMMdd)
+     */
+    private static List<Integer> dates(long start, String rule, long from, long to) {
+        RecurrenceIterator iterator = new RecurrenceIterator();
+        iterator.reset(start, HOUR, RRule.compile(rule), from, to);
+        List<Integer> dates = new ArrayList<>();
+        while (iterator.next()) {
+            dates.add(Util.getCivilDate(iterator.getBegin()));
+        }
+        return dates;
+    }
+
+    private static List<Integer> list(int... dates) {
+        List<Integer> list = new ArrayList<>();
+        for (int date : dates) {
+            list.add(date);
+        }
+        return list;
+    }
+
+    @Test
+    public void monthlyByMonthDay31SkipsShortMonths() {
+        long start = local(2019, 1, 31, 9);
+        assertEquals(list(20190131, 20190331, 20190531, 20190731, 20190831, 20191031, 20191231),
+                dates(start, "FREQ=MONTHLY;BYMONTHDAY=31;COUNT=7", start, Long.MAX_VALUE));
+    }
+
+    @Test
+    public void monthlyLastDayOfMonth() {
+        long start = local(2020, 1, 31, 9);
+        assertEquals(list(20200131, 20200229, 20200331, 20200430),
+                dates(start, "FREQ=MONTHLY;BYMONTHDAY=-1;COUNT=4", start, Long.MAX_VALUE));
+    }
+
+    @Test
+    public void yearlyByMonthByDay() {
+        // 每年三月的每个周四
+        long start = local(1997, 3, 13, 9);
+        assertEquals(list(19970313, 19970320, 19970327, 19980305, 19980312, 19980319, 19980326,
+                19990304, 19990311, 19990318, 19990325),
+                dates(start, "FREQ=YEARLY;BYMONTH=3;BYDAY=TH;COUNT=11", start, Long.MAX_VALUE));
+
+        // 每年五月的最后一个周一
+        start = local(2019, 5, 27, 9);
+        assertEquals(list(20190527, 20200525, 20210531),
+                dates(start, "FREQ=YEARLY;BYMONTH=5;BYDAY=-1MO;COUNT=3", start, Long.MAX_VALUE));
+    }
+
+    @Test
+    public void yearlyLeapDay() {
+        long start = local(2020, 2, 29, 9);
+        assertEquals(list(20200229, 20240229, 20280229),
+                dates(start, "FREQ=YEARLY;BYMONTH=2;BYMONTHDAY=29;COUNT=3", start, Long.MAX_VALUE));
+    }
+
+    @Test
+    public void monthlyLastWeekdayWithSetPos() {
+        long start = local(2019, 8, 30, 9);
+        assertEquals(list(20190830, 20190930, 20191031, 20191129),
+                dates(start, "FREQ=MONTHLY;BYDAY=MO,TU,WE,TH,FR;BYSETPOS=-1;COUNT=4", start, Long.MAX_VALUE));
+    }
+
+    @Test
+    public void dailyKeepsLocalTimeAcrossDaylightSaving() {
+        long start = local(2019, 3, 8, 9);
+        RecurrenceIterator iterator = new RecurrenceIterator();
+        iterator.reset(start, HOUR, RRule.compile("FREQ=DAILY;COUNT=5"), start, Long.MAX_VALUE);
+        for (int day = 8; day < 13; day++) {
+            assertTrue(iterator.next());
+            assertEquals(local(2019, 3, day, 9), iterator.getBegin());
+            assertEquals(local(2019, 3, day, 10), iterator.getEnd());
+        }
+        assertTrue(!iterator.next());
+    }
+
+    @Test
+    public void untilIsInclusive() {
+        long start = local(2019, 6, 1, 9);
+        assertEquals(list(20190601, 20190603, 20190605),
+                dates(start, "FREQ=DAILY;INTERVAL=2;UNTIL=20190605T090000", start, Long.MAX_VALUE));
+    }
+
+    @Test
+    public void windowIncludesOverlappingOccurrences() {
+        long start = local(2019, 6, 1, 9);
+        // 6月3日的发生在10:00结束,与窗口重叠
+        long from = local(2019, 6, 3, 9) + HOUR / 2;
+        long to = local(2019, 6, 5, 9);
+        assertEquals(list(20190603, 20190604), dates(start, "FREQ=DAILY", from, to));
+        // 恰好在窗口开始时结束的发生不包含
+        assertEquals(list(20190604), dates(start, "FREQ=DAILY", local(2019, 6, 3, 10), to));
+    }
+
+    @Test
+    public void singleOccurrenceWithoutRule() {
+        long start = local(2019, 6, 1, 9);
+        RecurrenceIterator iterator = new RecurrenceIterator();
+        iterator.reset(start, HOUR, null, start - DAY, start + DAY);
+        assertTrue(iterator.next());
+        assertEquals(start, iterator.getBegin());
+        assertTrue(!iterator.next());
+
+        iterator.reset(start, HOUR, null, start + HOUR, start + DAY);
+        assertTrue(!iterator.next());
+    }
+
+    private static CalendarEvent event(long start, long end, String rule, String timeZoneID, int allDay) {
+        CalendarEvent event = new CalendarEvent();
+        event.setStart(start);
+        event.setEnd(end);
+        event.setRRule(rule);
+        event.setEventTimeZone(timeZoneID);
+        event.setAllDay(allDay);
+        return event;
+    }
+
+    private static List<Long> begins(CalendarEvent event) {
+        RecurrenceIterator iterator = new RecurrenceIterator();
+        iterator.reset(event, event.getStart(), Long.MAX_VALUE);
+        List<Long> begins = new ArrayList<>();
+        while (iterator.next()) {
+            begins.add(iterator.getBegin());
+        }
+        return begins;
+    }
+
+    @Test
+    public void allDayEventExpandsInUtc() {
+        // 2019-11-01 UTC全天,纽约11月3日结束夏令时,全天事件不受影响
+        long start = Util.epochDayFromCivil(2019, 11, 1) * DAY;
+        List<Long> begins = begins(event(start, start + DAY, "FREQ=DAILY;UNTIL=20191105",
+                "America/New_York", 1));
+        assertEquals(5, begins.size());
+        for (int i = 0; i < begins.size(); i++) {
+            assertEquals(start + i * DAY, (long) begins.get(i));
+        }
+    }
+
+    @Test
+    public void timedEventExpandsInItsOwnZone() {
+        // 柏林 2019-10-25 09:00 +02:00, 10月27日结束夏令时(纽约11月3日)
+        long start = Util.epochDayFromCivil(2019, 10, 25) * DAY + 7 * HOUR;
+        List<Long> begins = begins(event(start, start + HOUR, "FREQ=DAILY;COUNT=4", "Europe/Berlin", 0));
+        List<Long> expected = new ArrayList<>();
+        expected.add(start);
+        expected.add(start + DAY);
+        expected.add(start + 2 * DAY + HOUR);
+        expected.add(start + 3 * DAY + HOUR);
+        assertEquals(expected, begins);
+
+        // 本地时间的UNTIL也按柏林时间转换: 10月27日 08:59:59 +01:00 之前只有两次发生
+        begins = begins(event(start, start + HOUR, "FREQ=DAILY;UNTIL=20191027T085959", "Europe/Berlin", 0));
+        assertEquals(2, begins.size());
+    }
+
+    @Test
+    public void parsesDuration() {
+        assertEquals(3600000L, RecurrenceIterator.parseDuration("PT1H"));
+        assertEquals(3600000L, RecurrenceIterator.parseDuration("P3600S"));
+        assertEquals(DAY + 30 * 60000L, RecurrenceIterator.parseDuration("P1DT30M"));
+        assertEquals(7 * DAY, RecurrenceIterator.parseDuration("P1W"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsSubDailyRules() {
+        new RecurrenceIterator().reset(0, HOUR, RRule.compile("FREQ=HOURLY"), 0, DAY);
+    }
+
+    @Test
+    public void dailyForeverForOneYearOf10kEvents() {
+        int events = 10000;
+        long from = local(2020, 1, 1, 0);
+        long to = local(2021, 1, 1, 0);
+        RRule rule = RRule.compile(RRuleConstant.REPEAT_CYCLE_DAILY_FOREVER);
+        RecurrenceIterator iterator = new RecurrenceIterator();
+
+        long occurrences = 0;
+        for (int i = 0; i < events; i++) {
+            // 事件从2019年开始,展开时跳过窗口之前的周期;每天01:00 - 11:59之间开始,不跨越窗口边界
+            iterator.reset(local(2019, 1, 1, 1) + i % 600 * 60000L, HOUR, rule, from, to);
+            while (iterator.next()) {
+                occurrences++;
+            }
+        }
+        // 2020年是闰年
+        assertEquals(events * 366L, occurrences);
+    }
+
+}